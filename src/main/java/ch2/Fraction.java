@@ -15,92 +15,406 @@
  */
 package ch2;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.Objects;
+import java.util.Optional;
 
 public class Fraction implements Comparable<Fraction> {
 
+    enum Tier {
+        INT, LONG, BIG
+    }
+
     static int divisor(int left, int right) throws ArithmeticException {
         if (right == 0) {
             throw new ArithmeticException("right should be non 0 number.");
         }
-        final int large = positive(left);
-        final int small = positive(right);
-        if (large < small) {
-            return divisor(small, large);
-        } else if (small == 1) {
-            return 1;
-        }
-        final int quotient = large / small;
-        final int surplus = large - small * quotient;
-        if (surplus == 0) {
-            return small;
-        } else {
-            return divisor(small, surplus);
-        }
+        return Gcd.of(left, right);
     }
 
     static int positive(int value) {
         return value < 0? -value:value;
     }
 
-    private static int arithmeticValue(int num, int den, boolean pos) {
-        return (pos? 1:-1) * num * den;
-    }
-
     static int power(int num, int time) {
+        if (time < 0) {
+            throw new ArithmeticException("negative argument is not allowed[" + time + "].");
+        }
         int result = 1;
-        for (int i = 0; i < time; i++) {
-            result *= num;
+        int base = num;
+        for (int rest = time; ; base = Math.multiplyExact(base, base)) {
+            if ((rest & 1) != 0) {
+                result = Math.multiplyExact(result, base);
+            }
+            rest >>>= 1;
+            if (rest == 0) {
+                return result;
+            }
         }
-        return result;
+    }
+
+    static long power(long num, long time) {
+        if (time < 0) {
+            throw new ArithmeticException("negative argument is not allowed[" + time + "].");
+        }
+        long result = 1;
+        long base = num;
+        for (long rest = time; ; base = Math.multiplyExact(base, base)) {
+            if ((rest & 1) != 0) {
+                result = Math.multiplyExact(result, base);
+            }
+            rest >>>= 1;
+            if (rest == 0) {
+                return result;
+            }
+        }
+    }
+
+    private static boolean fitsInLong(BigInteger value) {
+        return value.bitLength() < Long.SIZE;
+    }
+
+    private static BigInteger unsigned(long magnitude) {
+        return magnitude < 0? BigInteger.valueOf(magnitude).add(BigInteger.ONE.shiftLeft(Long.SIZE)):
+                BigInteger.valueOf(magnitude);
+    }
+
+    // (double) n / d is correctly rounded when both operands are exact doubles.
+    static final long EXACT_DOUBLE_MASK = ~((1L << 53) - 1);
+
+    private static final long EXACT_FLOAT_MASK = ~((1L << 24) - 1);
+
+    private static final int DOUBLE_LOWEST_EXPONENT = -1074;
+
+    private static final int FLOAT_LOWEST_EXPONENT = -149;
+
+    static double toDouble(long numerator, long denominator) {
+        if (((Math.abs(numerator) | denominator) & EXACT_DOUBLE_MASK) == 0) {
+            return (double) numerator / denominator;
+        } else if ((denominator & (denominator - 1)) == 0) {
+            return Math.scalb((double) numerator, -Long.numberOfTrailingZeros(denominator));
+        }
+        final double magnitude = quotient(BigInteger.valueOf(numerator).abs(), BigInteger.valueOf(denominator),
+                53, DOUBLE_LOWEST_EXPONENT);
+        return numerator < 0? -magnitude:magnitude;
+    }
+
+    static float toFloat(long numerator, long denominator) {
+        if (((Math.abs(numerator) | denominator) & EXACT_FLOAT_MASK) == 0) {
+            return (float) numerator / denominator;
+        } else if ((denominator & (denominator - 1)) == 0) {
+            return Math.scalb((float) numerator, -Long.numberOfTrailingZeros(denominator));
+        }
+        final float magnitude = (float) quotient(BigInteger.valueOf(numerator).abs(), BigInteger.valueOf(denominator),
+                24, FLOAT_LOWEST_EXPONENT);
+        return numerator < 0? -magnitude:magnitude;
+    }
+
+    // numerator / denominator rounded half-even to the given significand bits, where no bit may be below
+    // 2^lowestExponent (subnormals). The quotient carries two guard bits plus the remainder as sticky bit.
+    private static double quotient(BigInteger numerator, BigInteger denominator, int precision, int lowestExponent) {
+        if (numerator.signum() == 0) {
+            return 0.0;
+        }
+        final int shift = precision + 2 - (numerator.bitLength() - denominator.bitLength());
+        final BigInteger[] division = shift >= 0? numerator.shiftLeft(shift).divideAndRemainder(denominator):
+                numerator.divideAndRemainder(denominator.shiftLeft(-shift));
+        final long quotient = division[0].longValue();
+        final int unit = Math.max(division[0].bitLength() - shift - precision, lowestExponent);
+        final int drop = unit + shift;
+        if (drop > Long.SIZE - 1) {
+            return 0.0;
+        }
+        long kept = quotient >>> drop;
+        final long rest = quotient & ((1L << drop) - 1);
+        final long half = 1L << (drop - 1);
+        if (rest > half || rest == half && (division[1].signum() != 0 || (kept & 1) != 0)) {
+            kept++;
+        }
+        return Math.scalb((double) kept, unit);
+    }
+
+    private static final int INTEGER_LOW = -128;
+
+    private static final int INTEGER_HIGH = Math.max(Integer.getInteger("ch2.Fraction.cache.integers", 1024), 127);
+
+    private static final int SMALL = Math.min(Math.max(Integer.getInteger("ch2.Fraction.cache.small", 16), 1), 127);
+
+    private static final Fraction[] INTEGERS = new Fraction[INTEGER_HIGH - INTEGER_LOW + 1];
+
+    private static final Fraction[][] SMALLS = new Fraction[SMALL + 1][];
+
+    private static final FractionCache CACHE;
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++) {
+            INTEGERS[i] = new Fraction(i + INTEGER_LOW);
+        }
+        for (int den = 1; den <= SMALL; den++) {
+            SMALLS[den] = new Fraction[SMALL * 2 + 1];
+            for (int num = -SMALL; num <= SMALL; num++) {
+                final Fraction reduced = new Fraction(num, den);
+                SMALLS[den][num + SMALL] = reduced.denominator == 1?
+                        INTEGERS[(int) reduced.longNumerator() - INTEGER_LOW]:
+                        reduced.denominator == den? reduced:
+                        SMALLS[(int) reduced.denominator][(int) reduced.longNumerator() + SMALL];
+            }
+        }
+        final int size = Integer.getInteger("ch2.Fraction.cache.size", 0);
+        CACHE = size > 0? new FractionCache(size):null;
+    }
+
+    public static Fraction valueOf(int value) {
+        if (value >= INTEGER_LOW && value <= INTEGER_HIGH) {
+            return INTEGERS[value - INTEGER_LOW];
+        }
+        return new Fraction(value);
+    }
+
+    public static Fraction of(long numerator, long denominator) {
+        long num = numerator;
+        long den = denominator;
+        if (den < 0 && den != Long.MIN_VALUE && num != Long.MIN_VALUE) {
+            num = -num;
+            den = -den;
+        }
+        if (den == 1 && num >= INTEGER_LOW && num <= INTEGER_HIGH) {
+            return INTEGERS[(int) num - INTEGER_LOW];
+        } else if (den > 0 && den <= SMALL && num >= -SMALL && num <= SMALL) {
+            return SMALLS[(int) den][(int) num + SMALL];
+        } else if (CACHE != null && den != 0) {
+            return CACHE.get(num, den);
+        }
+        return canonical(new Fraction(num, den));
+    }
+
+    static Fraction ofReduced(long numerator, long denominator) {
+        if (numerator == Long.MIN_VALUE) {
+            // its magnitude 2^63 needs the big form, which the constructor takes care of.
+            return new Fraction(numerator, denominator);
+        }
+        return canonical(new Fraction(Math.abs(numerator), denominator, numerator >= 0));
+    }
+
+    // compares the 128-bit cross products, so it neither overflows nor allocates.
+    static int compare(long leftNumerator, long leftDenominator, long rightNumerator, long rightDenominator) {
+        final long leftHigh = multiplyHigh(leftNumerator, rightDenominator);
+        final long rightHigh = multiplyHigh(rightNumerator, leftDenominator);
+        if (leftHigh != rightHigh) {
+            return leftHigh < rightHigh? -1:1;
+        }
+        return Long.compareUnsigned(leftNumerator * rightDenominator, rightNumerator * leftDenominator);
+    }
+
+    // Math.multiplyHigh is not available until Java 9.
+    static long multiplyHigh(long left, long right) {
+        final long leftHigh = left >> 32;
+        final long leftLow = left & 0xFFFFFFFFL;
+        final long rightHigh = right >> 32;
+        final long rightLow = right & 0xFFFFFFFFL;
+        final long lowProduct = leftLow * rightLow;
+        final long middle = leftHigh * rightLow + (lowProduct >>> 32);
+        final long carry = (middle & 0xFFFFFFFFL) + leftLow * rightHigh;
+        return leftHigh * rightHigh + (middle >> 32) + (carry >> 32);
+    }
+
+    static Fraction canonical(Fraction reduced) {
+        if (reduced.isBig() || reduced.denominator > SMALL) {
+            return reduced;
+        } else if (reduced.denominator == 1) {
+            return reduced.numerator > INTEGER_HIGH || !reduced.positive && reduced.numerator > -INTEGER_LOW?
+                    reduced:INTEGERS[(int) reduced.longNumerator() - INTEGER_LOW];
+        } else if (reduced.numerator <= SMALL) {
+            return SMALLS[(int) reduced.denominator][(int) reduced.longNumerator() + SMALL];
+        }
+        return reduced;
+    }
+
+    public static Optional<FractionCache> internCache() {
+        return Optional.ofNullable(CACHE);
     }
 
     private final boolean positive;
-    private final int numerator;
-    private final int denominator;
+    private final long numerator;
+    private final long denominator;
+    private final BigInteger bigNumerator;
+    private final BigInteger bigDenominator;
 
     public Fraction(int numerator) {
-        int pos = positive(numerator);
-        this.numerator = pos;
+        this.numerator = Math.abs((long) numerator);
         this.denominator = 1;
-        this.positive = pos == numerator;
+        this.positive = numerator >= 0;
+        this.bigNumerator = null;
+        this.bigDenominator = null;
     }
 
     public Fraction(int numerator, int denominator) {
-        int divisor = divisor(numerator, denominator);
-        this.numerator = positive(numerator) / divisor;
-        this.denominator = positive(denominator) / divisor;
-        this.positive =
-                (numerator > 0 && denominator > 0) ||
-                (numerator < 0 && denominator < 0);
+        this((long) numerator, (long) denominator);
     }
 
-    private Fraction(int numerator, int denominator, boolean positive) {
-        int divisor = divisor(numerator, denominator);
-        this.numerator = positive(numerator) / divisor;
-        this.denominator = positive(denominator) / divisor;
-        this.positive = (positive && numerator > 0) || (!positive && numerator < 0);
+    public Fraction(long numerator, long denominator) {
+        if (denominator == 0) {
+            throw new ArithmeticException("denominator should be non 0 number.");
+        }
+        final long num = Math.abs(numerator);
+        final long den = Math.abs(denominator);
+        final long divisor = numerator == 0? den:Gcd.binary(num, den);
+        final long reducedNum = Long.divideUnsigned(num, divisor);
+        final long reducedDen = Long.divideUnsigned(den, divisor);
+        this.positive = numerator == 0 || (numerator < 0) == (denominator < 0);
+        if (reducedNum < 0 || reducedDen < 0) {
+            this.numerator = 0;
+            this.denominator = 0;
+            this.bigNumerator = unsigned(reducedNum);
+            this.bigDenominator = unsigned(reducedDen);
+        } else {
+            this.numerator = reducedNum;
+            this.denominator = reducedDen;
+            this.bigNumerator = null;
+            this.bigDenominator = null;
+        }
+    }
+
+    public Fraction(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0) {
+            throw new ArithmeticException("denominator should be non 0 number.");
+        }
+        final BigInteger num = numerator.abs();
+        final BigInteger den = denominator.abs();
+        final BigInteger divisor = numerator.signum() == 0? den:Gcd.of(num, den);
+        final BigInteger reducedNum = num.divide(divisor);
+        final BigInteger reducedDen = den.divide(divisor);
+        this.positive = numerator.signum() == 0 || numerator.signum() == denominator.signum();
+        if (fitsInLong(reducedNum) && fitsInLong(reducedDen)) {
+            this.numerator = reducedNum.longValue();
+            this.denominator = reducedDen.longValue();
+            this.bigNumerator = null;
+            this.bigDenominator = null;
+        } else {
+            this.numerator = 0;
+            this.denominator = 0;
+            this.bigNumerator = reducedNum;
+            this.bigDenominator = reducedDen;
+        }
+    }
+
+    // numerator and denominator are already reduced, so no GCD is needed.
+    private Fraction(long numerator, long denominator, boolean positive) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.positive = positive;
+        this.bigNumerator = null;
+        this.bigDenominator = null;
+    }
+
+    private Fraction(BigInteger numerator, BigInteger denominator, boolean positive) {
+        this.positive = positive;
+        if (fitsInLong(numerator) && fitsInLong(denominator)) {
+            this.numerator = numerator.longValue();
+            this.denominator = denominator.longValue();
+            this.bigNumerator = null;
+            this.bigDenominator = null;
+        } else {
+            this.numerator = 0;
+            this.denominator = 0;
+            this.bigNumerator = numerator;
+            this.bigDenominator = denominator;
+        }
+    }
+
+    private Fraction(Fraction magnitude, boolean positive) {
+        this.numerator = magnitude.numerator;
+        this.denominator = magnitude.denominator;
+        this.bigNumerator = magnitude.bigNumerator;
+        this.bigDenominator = magnitude.bigDenominator;
+        this.positive = positive || magnitude.isZero();
+    }
+
+    Tier tier() {
+        if (bigNumerator != null) {
+            return Tier.BIG;
+        } else if (((numerator | denominator) >>> 31) == 0) {
+            return Tier.INT;
+        } else {
+            return Tier.LONG;
+        }
+    }
+
+    boolean isBig() {
+        return bigNumerator != null;
+    }
+
+    private boolean isZero() {
+        return bigNumerator == null && numerator == 0;
+    }
+
+    private static boolean bothInt(Fraction left, Fraction right) {
+        return left.bigNumerator == null && right.bigNumerator == null &&
+                ((left.numerator | left.denominator | right.numerator | right.denominator) >>> 31) == 0;
+    }
+
+    long longNumerator() {
+        return positive? numerator:-numerator;
+    }
+
+    long longDenominator() {
+        return denominator;
+    }
+
+    BigInteger bigNumerator() {
+        final BigInteger magnitude = isBig()? bigNumerator:BigInteger.valueOf(numerator);
+        return positive? magnitude:magnitude.negate();
+    }
+
+    BigInteger bigDenominator() {
+        return isBig()? bigDenominator:BigInteger.valueOf(denominator);
     }
 
     public Fraction plus(int value) {
-        return plus(new Fraction(denominator * value, denominator));
+        return plus(valueOf(value));
     }
 
     public Fraction plus(Fraction other) {
-        final int newNumerator = arithmeticValue(this.numerator, other.denominator, this.positive)
-                + arithmeticValue(other.numerator, this.denominator, other.positive);
-        final int newDenominator = this.denominator * other.denominator;
-        return new Fraction(newNumerator, newDenominator);
+        if (bothInt(this, other)) {
+            // each cross product stays under 2^62, so neither the products nor their sum can overflow.
+            return of(longNumerator() * other.denominator + other.longNumerator() * denominator,
+                    denominator * other.denominator);
+        } else if (!isBig() && !other.isBig()) {
+            try {
+                return of(
+                        Math.addExact(
+                                Math.multiplyExact(longNumerator(), other.denominator),
+                                Math.multiplyExact(other.longNumerator(), denominator)),
+                        Math.multiplyExact(denominator, other.denominator));
+            } catch (ArithmeticException overflow) {
+                // falls through to BigInteger tier.
+            }
+        }
+        return new Fraction(
+                bigNumerator().multiply(other.bigDenominator()).add(other.bigNumerator().multiply(bigDenominator())),
+                bigDenominator().multiply(other.bigDenominator()));
     }
 
     public Fraction multiply(int value) {
-        return new Fraction(numerator * value, denominator, positive);
+        return multiply(valueOf(value));
     }
 
     public Fraction multiply(Fraction other) {
-        return new Fraction(numerator * other.numerator,
-                denominator * other.denominator,
-                !(positive ^ other.positive));
+        if (bothInt(this, other)) {
+            return of(longNumerator() * other.longNumerator(), denominator * other.denominator);
+        } else if (!isBig() && !other.isBig()) {
+            try {
+                return of(
+                        Math.multiplyExact(longNumerator(), other.longNumerator()),
+                        Math.multiplyExact(denominator, other.denominator));
+            } catch (ArithmeticException overflow) {
+                // falls through to BigInteger tier.
+            }
+        }
+        return new Fraction(bigNumerator().multiply(other.bigNumerator()),
+                bigDenominator().multiply(other.bigDenominator()));
     }
 
     public Fraction minus(Fraction other) {
@@ -108,15 +422,19 @@ public class Fraction implements Comparable<Fraction> {
     }
 
     public Fraction toNegative() {
-        return new Fraction(numerator, denominator, !positive);
+        return isBig()? new Fraction(this, !positive):of(-longNumerator(), denominator);
     }
 
     public Fraction minus(int value) {
-        return plus(-value);
+        return plus(valueOf(value).toNegative());
     }
 
     public Fraction transpose() {
-        return new Fraction(denominator, numerator, positive);
+        if (isZero()) {
+            throw new ArithmeticException("0 cannot be transposed.");
+        }
+        return isBig()? new Fraction(bigDenominator(), bigNumerator()):
+                of(positive? denominator:-denominator, numerator);
     }
 
     public Fraction divide(Fraction other) {
@@ -124,35 +442,165 @@ public class Fraction implements Comparable<Fraction> {
     }
 
     public Fraction divide(int value) {
-        return divide(new Fraction(value));
+        return divide(valueOf(value));
     }
 
     @Override
     public int compareTo(Fraction other) {
         Fraction o = Objects.requireNonNull(other);
-        return Integer.compare(numerator * o.denominator, o.numerator * denominator);
+        if (positive != o.positive) {
+            return positive? 1:-1;
+        }
+        if (bothInt(this, o)) {
+            return Long.compare(longNumerator() * o.denominator, o.longNumerator() * denominator);
+        } else if (!isBig() && !o.isBig()) {
+            return compare(longNumerator(), denominator, o.longNumerator(), o.denominator);
+        }
+        return bigNumerator().multiply(o.bigDenominator()).compareTo(o.bigNumerator().multiply(bigDenominator()));
     }
 
     public int compareTo(int other) {
-        return Integer.compare(numerator * (positive? 1:-1), other * denominator);
+        if (isBig()) {
+            return compareTo(valueOf(other));
+        }
+        return compare(longNumerator(), denominator, other, 1L);
     }
 
     public Fraction power(int time) {
-        if (time < 0) {
-            throw new ArithmeticException("negative argument is not allowed[" + time + "].");
+        return time < 0? transpose().power(-(long) time):power((long) time);
+    }
+
+    // numerator and denominator are coprime, so are their powers: the result needs no reduction.
+    private Fraction power(long time) {
+        final boolean sign = positive || (time & 1) == 0 || isZero();
+        if (!isBig()) {
+            try {
+                return canonical(new Fraction(power(numerator, time), power(denominator, time), sign));
+            } catch (ArithmeticException overflow) {
+                // falls through to BigInteger tier.
+            }
+        }
+        if (time > Integer.MAX_VALUE) {
+            throw new ArithmeticException("exponent is too large[" + time + "].");
+        }
+        final BigInteger num = isBig()? bigNumerator:BigInteger.valueOf(numerator);
+        final BigInteger den = isBig()? bigDenominator:BigInteger.valueOf(denominator);
+        return new Fraction(num.pow((int) time), den.pow((int) time), sign);
+    }
+
+    // the closest fraction whose denominator does not exceed maxDenominator: the last continued fraction
+    // convergent within the bound or the best semiconvergent after it.
+    public Fraction approximate(long maxDenominator) {
+        if (maxDenominator < 1) {
+            throw new IllegalArgumentException("maxDenominator should be positive[" + maxDenominator + "].");
+        } else if (!isBig()) {
+            return denominator <= maxDenominator? this:approximate(longNumerator(), denominator, maxDenominator);
+        } else if (bigDenominator.compareTo(BigInteger.valueOf(maxDenominator)) <= 0) {
+            return this;
         }
-        return new Fraction(power(numerator, time), power(denominator, time), time % 2 == 0 || positive);
+        final Fraction magnitude = approximate(bigNumerator, bigDenominator, maxDenominator);
+        return positive? magnitude:magnitude.toNegative();
+    }
+
+    // numerator / denominator need not be reduced, but denominator should be positive. As numerator = p1 n + p0 d
+    // and denominator = q1 n + q0 d throughout the expansion, the distances of the two candidates are d / q1 and
+    // (n - k d) / (q0 + k q1) over the same denominator, so they compare without computing the differences.
+    static Fraction approximate(long numerator, long denominator, long maxDenominator) {
+        if (numerator == Long.MIN_VALUE) {
+            return approximate(BigInteger.valueOf(numerator).negate(), BigInteger.valueOf(denominator), maxDenominator)
+                    .toNegative();
+        }
+        long p0 = 0, q0 = 1, p1 = 1, q1 = 0;
+        long n = Math.abs(numerator);
+        long d = denominator;
+        while (d != 0) {
+            final long a = n / d;
+            if (q1 != 0 && a > (maxDenominator - q0) / q1) {
+                break;
+            }
+            final long p2 = p0 + a * p1;
+            final long q2 = q0 + a * q1;
+            p0 = p1;
+            q0 = q1;
+            p1 = p2;
+            q1 = q2;
+            final long rest = n - a * d;
+            n = d;
+            d = rest;
+        }
+        final long sign = numerator < 0? -1:1;
+        if (d == 0) {
+            return ofReduced(sign * p1, q1);
+        }
+        final long k = (maxDenominator - q0) / q1;
+        return compare(d, q1, n - k * d, q0 + k * q1) <= 0? ofReduced(sign * p1, q1):
+                ofReduced(sign * (p0 + k * p1), q0 + k * q1);
+    }
+
+    private static Fraction approximate(BigInteger numerator, BigInteger denominator, long maxDenominator) {
+        final BigInteger max = BigInteger.valueOf(maxDenominator);
+        BigInteger p0 = BigInteger.ZERO, q0 = BigInteger.ONE, p1 = BigInteger.ONE, q1 = BigInteger.ZERO;
+        BigInteger n = numerator;
+        BigInteger d = denominator;
+        while (d.signum() != 0) {
+            final BigInteger[] division = n.divideAndRemainder(d);
+            final BigInteger a = division[0];
+            if (q1.signum() != 0 && a.compareTo(max.subtract(q0).divide(q1)) > 0) {
+                break;
+            }
+            final BigInteger p2 = p0.add(a.multiply(p1));
+            final BigInteger q2 = q0.add(a.multiply(q1));
+            p0 = p1;
+            q0 = q1;
+            p1 = p2;
+            q1 = q2;
+            n = d;
+            d = division[1];
+        }
+        if (d.signum() == 0) {
+            return new Fraction(p1, q1, true);
+        }
+        final BigInteger k = max.subtract(q0).divide(q1);
+        final BigInteger semiDenominator = q0.add(k.multiply(q1));
+        return d.multiply(semiDenominator).compareTo(n.subtract(k.multiply(d)).multiply(q1)) <= 0?
+                new Fraction(p1, q1, true):new Fraction(p0.add(k.multiply(p1)), semiDenominator, true);
     }
 
     public boolean isInt() {
-        return denominator == 1;
+        return isBig()? bigDenominator.equals(BigInteger.ONE):denominator == 1;
     }
 
     public int asInt() {
-        if (denominator != 1) {
+        if (!isInt()) {
             throw new ArithmeticException(toString() + " is not integer.");
+        } else if (isBig() || numerator > Integer.MAX_VALUE + (positive? 0L:1L)) {
+            throw new ArithmeticException(toString() + " is out of int range.");
         }
-        return positive? numerator:-numerator;
+        return (int) longNumerator();
+    }
+
+    public double doubleValue() {
+        if (!isBig()) {
+            return toDouble(longNumerator(), denominator);
+        }
+        final double magnitude = quotient(bigNumerator, bigDenominator, 53, DOUBLE_LOWEST_EXPONENT);
+        return positive? magnitude:-magnitude;
+    }
+
+    public float floatValue() {
+        if (!isBig()) {
+            return toFloat(longNumerator(), denominator);
+        }
+        final float magnitude = (float) quotient(bigNumerator, bigDenominator, 24, FLOAT_LOWEST_EXPONENT);
+        return positive? magnitude:-magnitude;
+    }
+
+    // throws ArithmeticException for an unlimited context when the decimal expansion does not terminate.
+    public BigDecimal toBigDecimal(MathContext context) {
+        if (!isBig() && denominator == 1) {
+            return new BigDecimal(longNumerator(), context);
+        }
+        return new BigDecimal(bigNumerator()).divide(new BigDecimal(bigDenominator()), context);
     }
 
     @Override
@@ -165,6 +613,8 @@ public class Fraction implements Comparable<Fraction> {
         if (denominator != fraction.denominator) return false;
         if (numerator != fraction.numerator) return false;
         if (positive != fraction.positive) return false;
+        if (!Objects.equals(bigNumerator, fraction.bigNumerator)) return false;
+        if (!Objects.equals(bigDenominator, fraction.bigDenominator)) return false;
 
         return true;
     }
@@ -172,13 +622,15 @@ public class Fraction implements Comparable<Fraction> {
     @Override
     public int hashCode() {
         int result = (positive ? 1 : 0);
-        result = 31 * result + numerator;
-        result = 31 * result + denominator;
+        result = 31 * result + Long.hashCode(numerator);
+        result = 31 * result + Long.hashCode(denominator);
+        result = 31 * result + Objects.hashCode(bigNumerator);
+        result = 31 * result + Objects.hashCode(bigDenominator);
         return result;
     }
 
     @Override
     public String toString() {
-        return (positive? "":"-") + numerator + "/" + denominator;
+        return FractionCodec.format(this, new StringBuilder(24)).toString();
     }
 }
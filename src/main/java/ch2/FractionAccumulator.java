@@ -0,0 +1,263 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.math.BigInteger;
+import java.util.stream.Collector;
+
+/**
+ * Mutable sum or product of fractions that keeps its numerator and denominator unreduced.
+ * GCD reduction runs only when the long fields are about to overflow or when the value is read.
+ */
+public class FractionAccumulator {
+
+    private static final int MIN_REDUCE_BITS = 256;
+
+    public static Collector<Fraction, ?, Fraction> summing() {
+        return Collector.of(
+                FractionAccumulator::new,
+                FractionAccumulator::add,
+                FractionAccumulator::add,
+                FractionAccumulator::get);
+    }
+
+    public static Collector<Fraction, ?, Fraction> multiplying() {
+        return Collector.of(
+                () -> new FractionAccumulator(Fraction.valueOf(1)),
+                FractionAccumulator::multiply,
+                FractionAccumulator::multiply,
+                FractionAccumulator::get);
+    }
+
+    public static Collector<Fraction, ?, Fraction> averaging() {
+        return Collector.of(
+                FractionAccumulator::new,
+                FractionAccumulator::add,
+                FractionAccumulator::add,
+                FractionAccumulator::average);
+    }
+
+    private long numerator;
+    private long denominator;
+    private BigInteger bigNumerator;
+    private BigInteger bigDenominator;
+    private int reduceAt = MIN_REDUCE_BITS;
+    private long count;
+
+    public FractionAccumulator() {
+        this(Fraction.valueOf(0));
+    }
+
+    public FractionAccumulator(Fraction initial) {
+        if (initial.isBig()) {
+            bigNumerator = initial.bigNumerator();
+            bigDenominator = initial.bigDenominator();
+        } else {
+            numerator = initial.longNumerator();
+            denominator = initial.longDenominator();
+        }
+    }
+
+    public FractionAccumulator add(Fraction value) {
+        count++;
+        if (value.isBig()) {
+            addBig(value.bigNumerator(), value.bigDenominator());
+        } else {
+            add(value.longNumerator(), value.longDenominator());
+        }
+        return this;
+    }
+
+    public FractionAccumulator add(FractionAccumulator other) {
+        count += other.count;
+        if (other.isBig()) {
+            addBig(other.bigNumerator, other.bigDenominator);
+        } else {
+            add(other.numerator, other.denominator);
+        }
+        return this;
+    }
+
+    FractionAccumulator accumulate(long numerator, long denominator) {
+        count++;
+        add(numerator, denominator);
+        return this;
+    }
+
+    public FractionAccumulator multiply(Fraction value) {
+        count++;
+        if (value.isBig()) {
+            multiplyBig(value.bigNumerator(), value.bigDenominator());
+        } else {
+            multiply(value.longNumerator(), value.longDenominator());
+        }
+        return this;
+    }
+
+    public FractionAccumulator multiply(FractionAccumulator other) {
+        count += other.count;
+        if (other.isBig()) {
+            multiplyBig(other.bigNumerator, other.bigDenominator);
+        } else {
+            multiply(other.numerator, other.denominator);
+        }
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public Fraction get() {
+        return isBig()? new Fraction(bigNumerator, bigDenominator):Fraction.of(numerator, denominator);
+    }
+
+    public Fraction average() {
+        return count == 0? Fraction.valueOf(0):get().divide(Fraction.of(count, 1L));
+    }
+
+    // copies the raw fields of other, for FractionAdder's optimistic reads; dereferences nothing, so a torn copy
+    // is harmless until the reader has checked it.
+    void load(FractionAccumulator other) {
+        numerator = other.numerator;
+        denominator = other.denominator;
+        bigNumerator = other.bigNumerator;
+        bigDenominator = other.bigDenominator;
+        reduceAt = other.reduceAt;
+        count = other.count;
+    }
+
+    void clear() {
+        numerator = 0;
+        denominator = 1;
+        bigNumerator = null;
+        bigDenominator = null;
+        reduceAt = MIN_REDUCE_BITS;
+        count = 0;
+    }
+
+    private boolean isBig() {
+        return bigNumerator != null;
+    }
+
+    private void add(long num, long den) {
+        if (isBig()) {
+            addBig(BigInteger.valueOf(num), BigInteger.valueOf(den));
+        } else if (!tryAdd(num, den)) {
+            reduce();
+            if (!tryAdd(num, den)) {
+                promote();
+                addBig(BigInteger.valueOf(num), BigInteger.valueOf(den));
+            }
+        }
+    }
+
+    private boolean tryAdd(long num, long den) {
+        try {
+            if (denominator == den) {
+                numerator = Math.addExact(numerator, num);
+            } else if (den % denominator == 0) {
+                numerator = Math.addExact(Math.multiplyExact(numerator, den / denominator), num);
+                denominator = den;
+            } else if (denominator % den == 0) {
+                numerator = Math.addExact(numerator, Math.multiplyExact(num, denominator / den));
+            } else {
+                final long newDenominator = Math.multiplyExact(denominator, den);
+                numerator = Math.addExact(Math.multiplyExact(numerator, den), Math.multiplyExact(num, denominator));
+                denominator = newDenominator;
+            }
+            return true;
+        } catch (ArithmeticException overflow) {
+            return false;
+        }
+    }
+
+    private void multiply(long num, long den) {
+        if (isBig()) {
+            multiplyBig(BigInteger.valueOf(num), BigInteger.valueOf(den));
+        } else if (!tryMultiply(num, den)) {
+            reduce();
+            if (!tryMultiply(num, den)) {
+                promote();
+                multiplyBig(BigInteger.valueOf(num), BigInteger.valueOf(den));
+            }
+        }
+    }
+
+    private boolean tryMultiply(long num, long den) {
+        try {
+            final long newNumerator = Math.multiplyExact(numerator, num);
+            denominator = Math.multiplyExact(denominator, den);
+            numerator = newNumerator;
+            return true;
+        } catch (ArithmeticException overflow) {
+            return false;
+        }
+    }
+
+    private void addBig(BigInteger num, BigInteger den) {
+        promote();
+        if (bigDenominator.equals(den)) {
+            bigNumerator = bigNumerator.add(num);
+        } else {
+            bigNumerator = bigNumerator.multiply(den).add(num.multiply(bigDenominator));
+            bigDenominator = bigDenominator.multiply(den);
+        }
+        reduceIfGrown();
+    }
+
+    private void multiplyBig(BigInteger num, BigInteger den) {
+        promote();
+        bigNumerator = bigNumerator.multiply(num);
+        bigDenominator = bigDenominator.multiply(den);
+        reduceIfGrown();
+    }
+
+    private void promote() {
+        if (!isBig()) {
+            bigNumerator = BigInteger.valueOf(numerator);
+            bigDenominator = BigInteger.valueOf(denominator);
+        }
+    }
+
+    private void reduce() {
+        final long divisor = Gcd.of(numerator, denominator);
+        if (divisor > 1) {
+            numerator /= divisor;
+            denominator /= divisor;
+        }
+    }
+
+    private void reduceIfGrown() {
+        if (bigDenominator.bitLength() < reduceAt) {
+            return;
+        }
+        final BigInteger divisor = Gcd.of(bigNumerator, bigDenominator);
+        if (!divisor.equals(BigInteger.ONE)) {
+            bigNumerator = bigNumerator.divide(divisor);
+            bigDenominator = bigDenominator.divide(divisor);
+        }
+        if (bigNumerator.bitLength() < Long.SIZE && bigDenominator.bitLength() < Long.SIZE) {
+            numerator = bigNumerator.longValue();
+            denominator = bigDenominator.longValue();
+            bigNumerator = null;
+            bigDenominator = null;
+            reduceAt = MIN_REDUCE_BITS;
+        } else {
+            reduceAt = Math.max(bigDenominator.bitLength() * 2, MIN_REDUCE_BITS);
+        }
+    }
+}
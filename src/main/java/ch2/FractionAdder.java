@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Concurrent exact sum of fractions. Like {@link java.util.concurrent.atomic.LongAdder}, threads are
+ * spread over cells by a per-thread probe, and a cell table that grows on contention up to the number of CPUs.
+ * Each cell is padded to its own cache lines. {@link #sum()} reads the cells optimistically and does not block
+ * writers unless a cell keeps changing under it; {@link #sumThenReset()} locks each cell in turn.
+ */
+public class FractionAdder {
+
+    private static final int MAX_CELLS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    // optimistic reads of one cell before sum takes its lock.
+    private static final int OPTIMISTIC_READS = 4;
+
+    private static final ThreadLocal<int[]> PROBE =
+            ThreadLocal.withInitial(() -> new int[]{ThreadLocalRandom.current().nextInt() | 1});
+
+    private final int maxCells;
+
+    private volatile Cell[] cells;
+
+    // busy flag of expand, private so that no outside lock on this adder can stall it.
+    private final AtomicBoolean expanding = new AtomicBoolean();
+
+    public FractionAdder() {
+        this(1, MAX_CELLS);
+    }
+
+    // sizes are powers of two; tests use them to get several cells on machines with few CPUs.
+    FractionAdder(int initialCells, int maxCells) {
+        if (Integer.bitCount(initialCells) != 1 || Integer.bitCount(maxCells) != 1 || initialCells > maxCells) {
+            throw new IllegalArgumentException("cell counts should be powers of two with initial <= max[" +
+                    initialCells + ", " + maxCells + "].");
+        }
+        this.maxCells = maxCells;
+        this.cells = newCells(initialCells);
+    }
+
+    public void add(Fraction value) {
+        final int[] probe = PROBE.get();
+        boolean collided = false;
+        for (Cell[] cs = cells; ; cs = cells) {
+            final Cell cell = cs[probe[0] & (cs.length - 1)];
+            if (cell.tryLock()) {
+                try {
+                    cell.add(value);
+                } finally {
+                    cell.unlock();
+                }
+                return;
+            }
+            if (collided && cs.length < maxCells) {
+                expand(cs);
+            }
+            collided = true;
+            probe[0] = advance(probe[0]);
+        }
+    }
+
+    public void add(int value) {
+        add(Fraction.valueOf(value));
+    }
+
+    public Fraction sum() {
+        final FractionAccumulator total = new FractionAccumulator();
+        final FractionAccumulator snapshot = new FractionAccumulator();
+        for (Cell cell : cells) {
+            cell.read(snapshot);
+            total.add(snapshot);
+        }
+        return total.get();
+    }
+
+    public void reset() {
+        sumThenReset();
+    }
+
+    public Fraction sumThenReset() {
+        final FractionAccumulator total = new FractionAccumulator();
+        for (Cell cell : cells) {
+            cell.lock();
+            try {
+                total.add(cell);
+                cell.clear();
+            } finally {
+                cell.unlock();
+            }
+        }
+        return total.get();
+    }
+
+    int cellCount() {
+        return cells.length;
+    }
+
+    // a thread that loses the flag goes on probing instead of waiting, as LongAdder does.
+    private void expand(Cell[] current) {
+        if (cells != current || !expanding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (cells == current) {
+                final Cell[] expanded = new Cell[current.length << 1];
+                System.arraycopy(current, 0, expanded, 0, current.length);
+                for (int i = current.length; i < expanded.length; i++) {
+                    expanded[i] = new Cell();
+                }
+                cells = expanded;
+            }
+        } finally {
+            expanding.set(false);
+        }
+    }
+
+    private static Cell[] newCells(int length) {
+        final Cell[] cells = new Cell[length];
+        for (int i = 0; i < length; i++) {
+            cells[i] = new Cell();
+        }
+        return cells;
+    }
+
+    private static int advance(int probe) {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        return probe;
+    }
+
+    @Override
+    public String toString() {
+        return sum().toString();
+    }
+
+    /**
+     * The sum lives in the cell itself, next to a stamp that is odd while a writer holds the cell, so one cell is
+     * one object. Cells are allocated one after another, and the trailing longs keep the next cell off this
+     * cell's cache lines.
+     */
+    @SuppressWarnings("unused")
+    private static final class Cell extends FractionAccumulator {
+        private static final AtomicLongFieldUpdater<Cell> STAMP = AtomicLongFieldUpdater.newUpdater(Cell.class, "stamp");
+
+        private volatile long stamp;
+        private long p0, p1, p2, p3, p4, p5, p6, p7, p8, p9, pa, pb, pc, pd, pe;
+
+        boolean tryLock() {
+            final long current = stamp;
+            return (current & 1) == 0 && STAMP.compareAndSet(this, current, current + 1);
+        }
+
+        void lock() {
+            while (!tryLock()) {
+                Thread.yield();
+            }
+        }
+
+        void unlock() {
+            stamp = stamp + 1;
+        }
+
+        // copies the state between two equal even stamps. The closing compare-and-set keeps the plain reads before
+        // it, which Java 8 has no load fence for, and fails if a writer came in between.
+        void read(FractionAccumulator target) {
+            for (int i = 0; i < OPTIMISTIC_READS; i++) {
+                final long current = stamp;
+                if ((current & 1) == 0) {
+                    target.load(this);
+                    if (STAMP.compareAndSet(this, current, current)) {
+                        return;
+                    }
+                }
+            }
+            lock();
+            try {
+                target.load(this);
+            } finally {
+                unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Column of fractions kept in two primitive arrays. The sign lives in the numerator and every
+ * element is reduced with a positive denominator. Elements are limited to the long tier of
+ * {@link Fraction}; an operation whose reduced result does not fit throws {@link ArithmeticException}.
+ */
+public final class FractionArray {
+
+    // magnitudes up to 2^30 keep every cross product and their sum inside a long.
+    private static final long SMALL_MASK = ~((1L << 30) - 1);
+
+    private static final int INSERTION_SORT_THRESHOLD = 24;
+
+    public static FractionArray of(Fraction... values) {
+        final FractionArray array = new FractionArray(values.length);
+        for (int i = 0; i < values.length; i++) {
+            array.set(i, values[i]);
+        }
+        return array;
+    }
+
+    public static FractionArray from(Stream<Fraction> stream) {
+        final List<Fraction> values = stream.collect(Collectors.toList());
+        return of(values.toArray(new Fraction[values.size()]));
+    }
+
+    private final long[] numerators;
+    private final long[] denominators;
+
+    public FractionArray(int length) {
+        this(new long[length], new long[length]);
+        Arrays.fill(denominators, 1L);
+    }
+
+    private FractionArray(long[] numerators, long[] denominators) {
+        this.numerators = numerators;
+        this.denominators = denominators;
+    }
+
+    public int length() {
+        return numerators.length;
+    }
+
+    public Fraction get(int index) {
+        return Fraction.ofReduced(numerators[index], denominators[index]);
+    }
+
+    public void set(int index, Fraction value) {
+        if (value.isBig()) {
+            throw new ArithmeticException(value + " does not fit in FractionArray.");
+        }
+        numerators[index] = value.longNumerator();
+        denominators[index] = value.longDenominator();
+    }
+
+    public Stream<Fraction> stream() {
+        return IntStream.range(0, length()).mapToObj(this::get);
+    }
+
+    public FractionArray plus(Fraction value) {
+        return plus(broadcast(value));
+    }
+
+    public FractionArray plus(FractionArray other) {
+        checkLength(other);
+        final int length = length();
+        final long[] ln = numerators, ld = denominators, rn = other.numerators, rd = other.denominators;
+        final long[] num = new long[length];
+        final long[] den = new long[length];
+        if (isSmall(ln) && isSmall(ld) && isSmall(rn) && isSmall(rd)) {
+            for (int i = 0; i < length; i++) {
+                num[i] = ln[i] * rd[i] + rn[i] * ld[i];
+                den[i] = ld[i] * rd[i];
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                try {
+                    num[i] = Math.addExact(Math.multiplyExact(ln[i], rd[i]), Math.multiplyExact(rn[i], ld[i]));
+                    den[i] = Math.multiplyExact(ld[i], rd[i]);
+                } catch (ArithmeticException overflow) {
+                    store(num, den, i, get(i).plus(other.get(i)));
+                }
+            }
+        }
+        return reduce(num, den);
+    }
+
+    public FractionArray minus(FractionArray other) {
+        return plus(other.negate());
+    }
+
+    public FractionArray multiply(Fraction value) {
+        return multiply(broadcast(value));
+    }
+
+    public FractionArray multiply(FractionArray other) {
+        checkLength(other);
+        final int length = length();
+        final long[] ln = numerators, ld = denominators, rn = other.numerators, rd = other.denominators;
+        final long[] num = new long[length];
+        final long[] den = new long[length];
+        if (isSmall(ln) && isSmall(ld) && isSmall(rn) && isSmall(rd)) {
+            for (int i = 0; i < length; i++) {
+                num[i] = ln[i] * rn[i];
+                den[i] = ld[i] * rd[i];
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                try {
+                    num[i] = Math.multiplyExact(ln[i], rn[i]);
+                    den[i] = Math.multiplyExact(ld[i], rd[i]);
+                } catch (ArithmeticException overflow) {
+                    store(num, den, i, get(i).multiply(other.get(i)));
+                }
+            }
+        }
+        return reduce(num, den);
+    }
+
+    public FractionArray divide(Fraction value) {
+        return multiply(value.transpose());
+    }
+
+    public FractionArray divide(FractionArray other) {
+        return multiply(other.transpose());
+    }
+
+    public FractionArray negate() {
+        final long[] num = new long[length()];
+        for (int i = 0; i < num.length; i++) {
+            num[i] = -numerators[i];
+        }
+        return new FractionArray(num, denominators.clone());
+    }
+
+    public FractionArray transpose() {
+        final int length = length();
+        final long[] num = new long[length];
+        final long[] den = new long[length];
+        for (int i = 0; i < length; i++) {
+            if (numerators[i] == 0) {
+                throw new ArithmeticException("0 at [" + i + "] cannot be transposed.");
+            }
+            num[i] = denominators[i] * Long.signum(numerators[i]);
+            den[i] = Math.abs(numerators[i]);
+        }
+        return new FractionArray(num, den);
+    }
+
+    public double[] toDoubleArray() {
+        return toDoubleArray(new double[length()]);
+    }
+
+    public double[] toDoubleArray(double[] target) {
+        if (target.length != length()) {
+            throw new IllegalArgumentException("length differs[" + length() + ", " + target.length + "].");
+        }
+        if (within(numerators, Fraction.EXACT_DOUBLE_MASK) && within(denominators, Fraction.EXACT_DOUBLE_MASK)) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] = (double) numerators[i] / denominators[i];
+            }
+        } else {
+            for (int i = 0; i < target.length; i++) {
+                target[i] = Fraction.toDouble(numerators[i], denominators[i]);
+            }
+        }
+        return target;
+    }
+
+    public Fraction sum() {
+        final FractionAccumulator accumulator = new FractionAccumulator();
+        for (int i = 0; i < numerators.length; i++) {
+            accumulator.accumulate(numerators[i], denominators[i]);
+        }
+        return accumulator.get();
+    }
+
+    public Fraction min() {
+        return get(extreme(-1));
+    }
+
+    public Fraction max() {
+        return get(extreme(1));
+    }
+
+    public void sort() {
+        sort(0, length() - 1);
+    }
+
+    private int extreme(int direction) {
+        if (numerators.length == 0) {
+            throw new IllegalStateException("FractionArray is empty.");
+        }
+        int index = 0;
+        for (int i = 1; i < numerators.length; i++) {
+            if (compare(i, index) * direction > 0) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private int compare(int left, int right) {
+        return Fraction.compare(numerators[left], denominators[left], numerators[right], denominators[right]);
+    }
+
+    private void sort(int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            final int middle = (low + high) >>> 1;
+            if (compare(middle, low) < 0) swap(middle, low);
+            if (compare(high, low) < 0) swap(high, low);
+            if (compare(high, middle) < 0) swap(high, middle);
+            final long pn = numerators[middle];
+            final long pd = denominators[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (Fraction.compare(numerators[i], denominators[i], pn, pd) < 0) i++;
+                while (Fraction.compare(numerators[j], denominators[j], pn, pd) > 0) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            final long n = numerators[i];
+            final long d = denominators[i];
+            int j = i - 1;
+            while (j >= low && Fraction.compare(numerators[j], denominators[j], n, d) > 0) {
+                numerators[j + 1] = numerators[j];
+                denominators[j + 1] = denominators[j];
+                j--;
+            }
+            numerators[j + 1] = n;
+            denominators[j + 1] = d;
+        }
+    }
+
+    private void swap(int left, int right) {
+        final long n = numerators[left];
+        numerators[left] = numerators[right];
+        numerators[right] = n;
+        final long d = denominators[left];
+        denominators[left] = denominators[right];
+        denominators[right] = d;
+    }
+
+    private FractionArray broadcast(Fraction value) {
+        if (value.isBig()) {
+            throw new ArithmeticException(value + " does not fit in FractionArray.");
+        }
+        final FractionArray array = new FractionArray(new long[length()], new long[length()]);
+        Arrays.fill(array.numerators, value.longNumerator());
+        Arrays.fill(array.denominators, value.longDenominator());
+        return array;
+    }
+
+    private void checkLength(FractionArray other) {
+        if (other.length() != length()) {
+            throw new IllegalArgumentException("length differs[" + length() + ", " + other.length() + "].");
+        }
+    }
+
+    private static boolean isSmall(long[] values) {
+        return within(values, SMALL_MASK);
+    }
+
+    private static boolean within(long[] values, long mask) {
+        long bits = 0;
+        for (long value : values) {
+            bits |= value ^ (value >> 63);
+        }
+        return (bits & mask) == 0;
+    }
+
+    private static void store(long[] num, long[] den, int index, Fraction value) {
+        if (value.isBig()) {
+            throw new ArithmeticException(value + " at [" + index + "] does not fit in FractionArray.");
+        }
+        num[index] = value.longNumerator();
+        den[index] = value.longDenominator();
+    }
+
+    private static FractionArray reduce(long[] num, long[] den) {
+        for (int i = 0; i < num.length; i++) {
+            final long divisor = Gcd.of(num[i], den[i]);
+            if (divisor != 1) {
+                num[i] /= divisor;
+                den[i] /= divisor;
+            }
+            if (num[i] == Long.MIN_VALUE) {
+                throw new ArithmeticException(num[i] + "/" + den[i] + " at [" + i + "] does not fit in FractionArray.");
+            }
+        }
+        return new FractionArray(num, den);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FractionArray)) return false;
+
+        FractionArray that = (FractionArray) o;
+
+        if (!Arrays.equals(numerators, that.numerators)) return false;
+        if (!Arrays.equals(denominators, that.denominators)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(numerators);
+        result = 31 * result + Arrays.hashCode(denominators);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return stream().map(Fraction::toString).collect(Collectors.joining(", ", "[", "]"));
+    }
+}
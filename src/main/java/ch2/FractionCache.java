@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded interning cache of fractions keyed by the unreduced numerator and denominator.
+ * Each key maps to one slot, and a miss evicts whatever the slot held.
+ */
+public class FractionCache {
+
+    private final Entry[] entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public FractionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive number[" + capacity + "].");
+        }
+        final int size = Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1);
+        this.entries = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    public Fraction get(long numerator, long denominator) {
+        final int index = index(numerator, denominator);
+        // entries are immutable, so a racy read sees either a complete entry or null.
+        final Entry entry = entries[index];
+        if (entry != null && entry.numerator == numerator && entry.denominator == denominator) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        final Fraction value = Fraction.canonical(new Fraction(numerator, denominator));
+        entries[index] = new Entry(numerator, denominator, value);
+        return value;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private int index(long numerator, long denominator) {
+        long h = numerator * 0x9E3779B97F4A7C15L + denominator;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @Override
+    public String toString() {
+        return "FractionCache[capacity=" + entries.length + ", hits=" + hits() + ", misses=" + misses() + "]";
+    }
+
+    private static class Entry {
+        final long numerator;
+        final long denominator;
+        final Fraction value;
+
+        Entry(long numerator, long denominator, Fraction value) {
+            this.numerator = numerator;
+            this.denominator = denominator;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses {@code "-3/4"}, {@code "12"} or {@code "0.375"} into a reduced numerator and denominator held in
+ * this (reusable) codec, and formats fractions as {@code "n/d"}. Parsing and formatting values that fit in
+ * long allocate nothing. Values outside long throw {@link ArithmeticException}; malformed input throws
+ * {@link NumberFormatException}.
+ */
+public final class FractionCodec {
+
+    private static final int START = 0;
+    private static final int INTEGER = 1;
+    private static final int FRACTION = 2;
+    private static final int DENOMINATOR_START = 3;
+    private static final int DENOMINATOR = 4;
+    private static final int TRAILING = 5;
+
+    private int state;
+    private boolean negative;
+    private boolean denominatorNegative;
+    private boolean digits;
+    private boolean slash;
+    private boolean denominatorDigits;
+    // minus the digits read so far, as in Long.parseLong: the negative range reaches Long.MIN_VALUE.
+    private long integer;
+    private long fractionScale;
+    // fraction zeros not yet scaled in; trailing ones never are, so "0.5000000000000000000" fits.
+    private int zeros;
+    private long denominatorValue;
+
+    private long numerator;
+    private long denominator;
+
+    public FractionCodec parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    public FractionCodec parse(CharSequence text, int from, int to) {
+        reset();
+        for (int i = from; i < to; i++) {
+            feed(text.charAt(i));
+        }
+        return finish();
+    }
+
+    public FractionCodec parse(char[] text, int from, int to) {
+        reset();
+        for (int i = from; i < to; i++) {
+            feed(text[i]);
+        }
+        return finish();
+    }
+
+    // reads US-ASCII bytes at absolute indices, leaving the buffer's position untouched.
+    public FractionCodec parse(ByteBuffer text, int from, int to) {
+        reset();
+        for (int i = from; i < to; i++) {
+            feed((char) text.get(i));
+        }
+        return finish();
+    }
+
+    public long numerator() {
+        return numerator;
+    }
+
+    public long denominator() {
+        return denominator;
+    }
+
+    public Fraction toFraction() {
+        return Fraction.ofReduced(numerator, denominator);
+    }
+
+    public void store(long[] numerators, long[] denominators, int index) {
+        numerators[index] = numerator;
+        denominators[index] = denominator;
+    }
+
+    // fields are separated by the delimiter or by line breaks; empty fields are skipped.
+    public int parseAll(CharSequence text, char delimiter, long[] numerators, long[] denominators) {
+        int count = 0;
+        int from = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            final char c = i < text.length()? text.charAt(i):'\n';
+            if (c == delimiter || c == '\n' || c == '\r') {
+                if (!isBlank(text, from, i)) {
+                    parse(text, from, i).store(numerators, denominators, count++);
+                }
+                from = i + 1;
+            }
+        }
+        return count;
+    }
+
+    public int parseAll(ByteBuffer text, char delimiter, long[] numerators, long[] denominators) {
+        int count = 0;
+        int from = text.position();
+        for (int i = from; i <= text.limit(); i++) {
+            final char c = i < text.limit()? (char) text.get(i):'\n';
+            if (c == delimiter || c == '\n' || c == '\r') {
+                if (!isBlank(text, from, i)) {
+                    parse(text, from, i).store(numerators, denominators, count++);
+                }
+                from = i + 1;
+            }
+        }
+        return count;
+    }
+
+    public static StringBuilder format(Fraction value, StringBuilder out) {
+        if (value.isBig()) {
+            return out.append(value.bigNumerator()).append('/').append(value.bigDenominator());
+        }
+        return format(value.longNumerator(), value.longDenominator(), out);
+    }
+
+    public static StringBuilder format(long numerator, long denominator, StringBuilder out) {
+        return out.append(numerator).append('/').append(denominator);
+    }
+
+    public static ByteBuffer format(Fraction value, ByteBuffer out) {
+        if (value.isBig()) {
+            final StringBuilder text = format(value, new StringBuilder());
+            for (int i = 0; i < text.length(); i++) {
+                out.put((byte) text.charAt(i));
+            }
+            return out;
+        }
+        return format(value.longNumerator(), value.longDenominator(), out);
+    }
+
+    public static ByteBuffer format(long numerator, long denominator, ByteBuffer out) {
+        putLong(numerator, out);
+        out.put((byte) '/');
+        putLong(denominator, out);
+        return out;
+    }
+
+    // works on the negated value so that Long.MIN_VALUE needs no special case.
+    private static void putLong(long value, ByteBuffer out) {
+        long rest = value < 0? value:-value;
+        if (value < 0) {
+            out.put((byte) '-');
+        }
+        int length = 1;
+        for (long scan = rest / 10; scan != 0; scan /= 10) {
+            length++;
+        }
+        final int start = out.position();
+        for (int i = start + length - 1; i >= start; i--) {
+            out.put(i, (byte) ('0' - rest % 10));
+            rest /= 10;
+        }
+        out.position(start + length);
+    }
+
+    private static boolean isBlank(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) != ' ' && text.charAt(i) != '\t') return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(ByteBuffer text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.get(i) != ' ' && text.get(i) != '\t') return false;
+        }
+        return true;
+    }
+
+    private void reset() {
+        state = START;
+        negative = false;
+        denominatorNegative = false;
+        digits = false;
+        slash = false;
+        denominatorDigits = false;
+        integer = 0;
+        fractionScale = 1;
+        zeros = 0;
+        denominatorValue = 0;
+    }
+
+    private void feed(char c) {
+        final int digit = c - '0';
+        if (digit >= 0 && digit <= 9) {
+            switch (state) {
+                case START:
+                case INTEGER:
+                    state = INTEGER;
+                    integer = Math.subtractExact(Math.multiplyExact(integer, 10), digit);
+                    digits = true;
+                    return;
+                case FRACTION:
+                    digits = true;
+                    if (digit == 0) {
+                        zeros++;
+                        return;
+                    }
+                    for (; zeros > 0; zeros--) {
+                        integer = Math.multiplyExact(integer, 10);
+                        fractionScale = Math.multiplyExact(fractionScale, 10);
+                    }
+                    integer = Math.subtractExact(Math.multiplyExact(integer, 10), digit);
+                    fractionScale = Math.multiplyExact(fractionScale, 10);
+                    return;
+                case DENOMINATOR_START:
+                case DENOMINATOR:
+                    state = DENOMINATOR;
+                    denominatorValue = Math.addExact(Math.multiplyExact(denominatorValue, 10), digit);
+                    denominatorDigits = true;
+                    return;
+                default:
+                    throw new NumberFormatException("unexpected digit after the value.");
+            }
+        } else if (c == ' ' || c == '\t') {
+            if (state == INTEGER || state == FRACTION || state == DENOMINATOR) {
+                state = TRAILING;
+            } else if (state != START && state != TRAILING) {
+                throw new NumberFormatException("unexpected white space.");
+            }
+        } else if ((c == '-' || c == '+') && state == START && !digits) {
+            negative = c == '-';
+            state = INTEGER;
+        } else if ((c == '-' || c == '+') && state == DENOMINATOR_START) {
+            denominatorNegative = c == '-';
+            state = DENOMINATOR;
+        } else if (c == '/' && state == INTEGER && digits) {
+            slash = true;
+            state = DENOMINATOR_START;
+        } else if (c == '.' && (state == START || state == INTEGER)) {
+            state = FRACTION;
+        } else {
+            throw new NumberFormatException("unexpected character '" + c + "'.");
+        }
+    }
+
+    private FractionCodec finish() {
+        if (!digits) {
+            throw new NumberFormatException("no digits.");
+        } else if (slash && !denominatorDigits) {
+            throw new NumberFormatException("no digits in denominator.");
+        }
+        final long den = slash? denominatorValue:fractionScale;
+        if (den == 0) {
+            throw new ArithmeticException("denominator should be non 0 number.");
+        }
+        final long divisor = Gcd.of(integer, den);
+        final long num = integer / divisor;
+        numerator = negative != denominatorNegative? num:Math.negateExact(num);
+        denominator = den / divisor;
+        return this;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic that optionally keeps denominators bounded. In a {@link #bounded(long)} context every result snaps
+ * to the closest fraction whose denominator does not exceed the bound (see {@link Fraction#approximate(long)}),
+ * so it is off from the exact result by at most {@link #errorBound()} = 1 / (2 * maxDenominator); errors of
+ * successive operations add up. With a bound up to 2^31 and moderate magnitudes the cross products fit in long,
+ * so each operation costs a few multiplications and O(log maxDenominator) continued fraction steps however long
+ * the pipeline runs.
+ */
+public final class FractionContext {
+
+    private static final FractionContext EXACT = new FractionContext(0L);
+
+    public static FractionContext exact() {
+        return EXACT;
+    }
+
+    public static FractionContext bounded(long maxDenominator) {
+        if (maxDenominator < 1) {
+            throw new IllegalArgumentException("maxDenominator should be positive[" + maxDenominator + "].");
+        }
+        return new FractionContext(maxDenominator);
+    }
+
+    private final long maxDenominator;
+
+    private FractionContext(long maxDenominator) {
+        this.maxDenominator = maxDenominator;
+    }
+
+    public boolean isExact() {
+        return maxDenominator == 0;
+    }
+
+    public Fraction errorBound() {
+        return isExact()? Fraction.valueOf(0):new Fraction(BigInteger.ONE, BigInteger.valueOf(maxDenominator).shiftLeft(1));
+    }
+
+    public Fraction round(Fraction value) {
+        return isExact()? value:value.approximate(maxDenominator);
+    }
+
+    public Fraction plus(Fraction left, Fraction right) {
+        if (isExact() || left.isBig() || right.isBig()) {
+            return round(left.plus(right));
+        }
+        try {
+            final long num = Math.addExact(Math.multiplyExact(left.longNumerator(), right.longDenominator()),
+                    Math.multiplyExact(right.longNumerator(), left.longDenominator()));
+            return snap(num, Math.multiplyExact(left.longDenominator(), right.longDenominator()));
+        } catch (ArithmeticException overflow) {
+            return round(left.plus(right));
+        }
+    }
+
+    public Fraction minus(Fraction left, Fraction right) {
+        return plus(left, right.toNegative());
+    }
+
+    public Fraction multiply(Fraction left, Fraction right) {
+        if (isExact() || left.isBig() || right.isBig()) {
+            return round(left.multiply(right));
+        }
+        try {
+            return snap(Math.multiplyExact(left.longNumerator(), right.longNumerator()),
+                    Math.multiplyExact(left.longDenominator(), right.longDenominator()));
+        } catch (ArithmeticException overflow) {
+            return round(left.multiply(right));
+        }
+    }
+
+    public Fraction divide(Fraction left, Fraction right) {
+        return multiply(left, right.transpose());
+    }
+
+    private Fraction snap(long numerator, long denominator) {
+        return denominator <= maxDenominator? Fraction.of(numerator, denominator):
+                Fraction.approximate(numerator, denominator, maxDenominator);
+    }
+
+    @Override
+    public String toString() {
+        return isExact()? "FractionContext[exact]":"FractionContext[maxDenominator=" + maxDenominator + "]";
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.nio.ByteOrder;
+
+/**
+ * Binary layout shared by {@link FractionWriter} and {@link FractionReader}. All values are big endian.
+ * <pre>
+ * header : magic "FRAC"(4) | version(4) | record count(8)
+ * INT    : 0x01 | numerator int(4)  | denominator int(4)
+ * LONG   : 0x02 | numerator long(8) | denominator long(8)
+ * BIG    : 0x03 | length(4) | numerator two's complement bytes | length(4) | denominator bytes
+ * </pre>
+ * Every record is reduced and its denominator is positive.
+ */
+final class FractionFormat {
+
+    static final int MAGIC = 0x46524143;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    static final int COUNT_OFFSET = 8;
+
+    static final byte INT = 1;
+
+    static final byte LONG = 2;
+
+    static final byte BIG = 3;
+
+    static final int INT_RECORD_SIZE = 1 + 4 + 4;
+
+    static final int LONG_RECORD_SIZE = 1 + 8 + 8;
+
+    static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    private FractionFormat() {}
+}
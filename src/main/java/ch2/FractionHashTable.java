@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table keyed on reduced long-tier fractions, held as signed numerator and denominator in two
+ * primitive arrays; a zero denominator marks an empty slot. Slots are probed linearly from the murmur3 finalizer
+ * of both fields, so keys such as {@code n/1} or {@code 1/n} spread evenly. Subclasses keep the values in a parallel
+ * primitive array, and the rare BigInteger-tier keys in a side map.
+ */
+abstract class FractionHashTable {
+
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    static int hash(long numerator, long denominator) {
+        long hash = numerator * 0x9E3779B97F4A7C15L + denominator;
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (hash ^ (hash >>> 33));
+    }
+
+    // at most half full.
+    static int capacityFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize should not be negative[" + expectedSize + "].");
+        } else if (expectedSize >= MAXIMUM_CAPACITY >>> 1) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 1)) << 1, MINIMUM_CAPACITY);
+    }
+
+    long[] numerators;
+    long[] denominators;
+    int mask;
+    int size;
+
+    FractionHashTable(int expectedSize) {
+        final int capacity = capacityFor(expectedSize);
+        this.numerators = new long[capacity];
+        this.denominators = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // index of the key, or -(insertion point) - 1.
+    final int find(long numerator, long denominator) {
+        for (int i = hash(numerator, denominator) & mask; ; i = (i + 1) & mask) {
+            if (denominators[i] == 0) {
+                return -i - 1;
+            } else if (denominators[i] == denominator && numerators[i] == numerator) {
+                return i;
+            }
+        }
+    }
+
+    // index of the key, inserted when absent. Values of a new slot are always zero.
+    final int slot(long numerator, long denominator) {
+        int index = find(numerator, denominator);
+        if (index >= 0) {
+            return index;
+        } else if (size + 1 > denominators.length >>> 1) {
+            grow();
+            index = find(numerator, denominator);
+        }
+        index = -index - 1;
+        numerators[index] = numerator;
+        denominators[index] = denominator;
+        size++;
+        return index;
+    }
+
+    final void clearKeys() {
+        Arrays.fill(denominators, 0L);
+        size = 0;
+    }
+
+    // moves the values of old slot i to targets[i] in a new array of the given capacity; -1 marks empty slots.
+    abstract void relocate(int[] targets, int capacity);
+
+    private void grow() {
+        if (denominators.length == MAXIMUM_CAPACITY) {
+            if (size + 1 >= MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("table is full.");
+            }
+            return;
+        }
+        final int capacity = denominators.length << 1;
+        final long[] oldNumerators = numerators;
+        final long[] oldDenominators = denominators;
+        numerators = new long[capacity];
+        denominators = new long[capacity];
+        mask = capacity - 1;
+        final int[] targets = new int[oldDenominators.length];
+        for (int i = 0; i < oldDenominators.length; i++) {
+            if (oldDenominators[i] == 0) {
+                targets[i] = -1;
+                continue;
+            }
+            final int index = -find(oldNumerators[i], oldDenominators[i]) - 1;
+            numerators[index] = oldNumerators[i];
+            denominators[index] = oldDenominators[i];
+            targets[i] = index;
+        }
+        relocate(targets, capacity);
+    }
+}
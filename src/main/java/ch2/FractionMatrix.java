@@ -0,0 +1,361 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import ch6.Matrix;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable N&times;N matrix of fractions, stored column by column in primitive numerator and denominator
+ * arrays; an entry outside the long tier is kept in BigInteger side arrays and marked by a zero denominator.
+ * {@link #determinant()}, {@link #inverse()} and {@link #solve(Fraction[])} scale each row to integers and run
+ * fraction-free (Bareiss) elimination, whose intermediate values are minors of the matrix and so never grow
+ * beyond the size of the determinant. Row updates of large matrices are split over the common fork/join pool.
+ */
+public final class FractionMatrix {
+
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int SEQUENTIAL_ROWS = 8;
+
+    public static FractionMatrix of(Fraction[][] rows) {
+        final FractionMatrix matrix = new FractionMatrix(rows.length);
+        for (int row = 0; row < rows.length; row++) {
+            if (rows[row].length != rows.length) {
+                throw new IllegalArgumentException("matrix should be square, but row " + row + " has " +
+                        rows[row].length + " columns.");
+            }
+            for (int column = 0; column < rows.length; column++) {
+                matrix.set(row, column, rows[row][column]);
+            }
+        }
+        return matrix;
+    }
+
+    public static FractionMatrix identity(int size) {
+        final FractionMatrix matrix = new FractionMatrix(size);
+        for (int i = 0; i < size; i++) {
+            matrix.numerators[i * size + i] = 1L;
+        }
+        return matrix;
+    }
+
+    public static FractionMatrix of(Matrix matrix) {
+        return of(new Fraction[][]{
+                {Fraction.valueOf(matrix.getLeftTop()), Fraction.valueOf(matrix.getRightTop())},
+                {Fraction.valueOf(matrix.getLeftBottom()), Fraction.valueOf(matrix.getRightBottom())}});
+    }
+
+    private final int size;
+    private final long[] numerators;
+    private final long[] denominators;
+    private BigInteger[] bigNumerators;
+    private BigInteger[] bigDenominators;
+
+    private FractionMatrix(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size should be positive[" + size + "].");
+        }
+        this.size = size;
+        this.numerators = new long[size * size];
+        this.denominators = new long[size * size];
+        Arrays.fill(denominators, 1L);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Fraction get(int row, int column) {
+        final int index = index(row, column);
+        return denominators[index] == 0? new Fraction(bigNumerators[index], bigDenominators[index]):
+                Fraction.ofReduced(numerators[index], denominators[index]);
+    }
+
+    public FractionMatrix multiply(FractionMatrix other) {
+        checkSize(other.size);
+        final FractionMatrix product = new FractionMatrix(size);
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                final FractionAccumulator sum = new FractionAccumulator();
+                for (int k = 0; k < size; k++) {
+                    accumulateProduct(sum, index(row, k), other, other.index(k, column));
+                }
+                product.set(row, column, sum.get());
+            }
+        }
+        return product;
+    }
+
+    public Fraction[] multiply(Fraction[] vector) {
+        checkSize(vector.length);
+        final FractionAccumulator[] sums = new FractionAccumulator[size];
+        for (int row = 0; row < size; row++) {
+            sums[row] = new FractionAccumulator();
+        }
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                sums[row].add(get(row, column).multiply(vector[column]));
+            }
+        }
+        final Fraction[] result = new Fraction[size];
+        for (int row = 0; row < size; row++) {
+            result[row] = sums[row].get();
+        }
+        return result;
+    }
+
+    public Fraction determinant() {
+        final BigInteger[] scales = new BigInteger[size];
+        final BigInteger[][] rows = integerRows(new Fraction[size][0], scales);
+        final int sign = eliminate(rows, false);
+        if (sign == 0) {
+            return Fraction.valueOf(0);
+        }
+        BigInteger scale = BigInteger.ONE;
+        for (BigInteger s : scales) {
+            scale = scale.multiply(s);
+        }
+        final BigInteger determinant = rows[size - 1][size - 1];
+        return new Fraction(sign < 0? determinant.negate():determinant, scale);
+    }
+
+    public FractionMatrix inverse() {
+        final Fraction[][] identity = new Fraction[size][size];
+        for (int row = 0; row < size; row++) {
+            Arrays.fill(identity[row], Fraction.valueOf(0));
+            identity[row][row] = Fraction.valueOf(1);
+        }
+        final BigInteger[][] rows = solved(identity);
+        final FractionMatrix inverse = new FractionMatrix(size);
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                inverse.set(row, column, new Fraction(rows[row][size + column], rows[row][row]));
+            }
+        }
+        return inverse;
+    }
+
+    public Fraction[] solve(Fraction[] b) {
+        checkSize(b.length);
+        final Fraction[][] right = new Fraction[size][];
+        for (int row = 0; row < size; row++) {
+            right[row] = new Fraction[]{b[row]};
+        }
+        final BigInteger[][] rows = solved(right);
+        final Fraction[] x = new Fraction[size];
+        for (int row = 0; row < size; row++) {
+            x[row] = new Fraction(rows[row][size], rows[row][row]);
+        }
+        return x;
+    }
+
+    public Matrix toMatrix() {
+        if (size != 2) {
+            throw new IllegalStateException("only 2x2 matrix converts to ch6.Matrix[size=" + size + "].");
+        }
+        return Matrix.leftTop(get(0, 0).asInt()).rightTop(get(0, 1).asInt())
+                .leftBottom(get(1, 0).asInt()).rightBottom(get(1, 1).asInt()).make();
+    }
+
+    private int index(int row, int column) {
+        if (row < 0 || row >= size || column < 0 || column >= size) {
+            throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + size + "x" + size + ".");
+        }
+        return column * size + row;
+    }
+
+    private void checkSize(int other) {
+        if (other != size) {
+            throw new IllegalArgumentException("size differs[" + size + ", " + other + "].");
+        }
+    }
+
+    private void set(int row, int column, Fraction value) {
+        final int index = index(row, column);
+        if (value.isBig()) {
+            if (bigNumerators == null) {
+                bigNumerators = new BigInteger[numerators.length];
+                bigDenominators = new BigInteger[numerators.length];
+            }
+            bigNumerators[index] = value.bigNumerator();
+            bigDenominators[index] = value.bigDenominator();
+            denominators[index] = 0L;
+        } else {
+            numerators[index] = value.longNumerator();
+            denominators[index] = value.longDenominator();
+        }
+    }
+
+    private void accumulateProduct(FractionAccumulator sum, int index, FractionMatrix other, int otherIndex) {
+        if (denominators[index] != 0 && other.denominators[otherIndex] != 0) {
+            try {
+                sum.accumulate(Math.multiplyExact(numerators[index], other.numerators[otherIndex]),
+                        Math.multiplyExact(denominators[index], other.denominators[otherIndex]));
+                return;
+            } catch (ArithmeticException overflow) {
+                // falls through to Fraction arithmetic.
+            }
+        }
+        sum.add(get(index % size, index / size).multiply(other.get(otherIndex % size, otherIndex / size)));
+    }
+
+    // rows of [this | right], each multiplied by the lcm of its denominators (kept in scales) to become integers.
+    private BigInteger[][] integerRows(Fraction[][] right, BigInteger[] scales) {
+        final BigInteger[][] rows = new BigInteger[size][];
+        for (int row = 0; row < size; row++) {
+            final Fraction[] values = new Fraction[size + right[row].length];
+            for (int column = 0; column < size; column++) {
+                values[column] = get(row, column);
+            }
+            System.arraycopy(right[row], 0, values, size, right[row].length);
+            BigInteger scale = BigInteger.ONE;
+            for (Fraction value : values) {
+                final BigInteger denominator = value.bigDenominator();
+                scale = scale.multiply(denominator.divide(Gcd.of(scale, denominator)));
+            }
+            rows[row] = new BigInteger[values.length];
+            for (int column = 0; column < values.length; column++) {
+                rows[row][column] = values[column].bigNumerator().multiply(scale.divide(values[column].bigDenominator()));
+            }
+            scales[row] = scale;
+        }
+        return rows;
+    }
+
+    // fraction-free Gauss-Jordan elimination of [this | right]: every diagonal entry ends up as the last pivot d,
+    // and the right columns as d times the solution.
+    private BigInteger[][] solved(Fraction[][] right) {
+        final BigInteger[][] rows = integerRows(right, new BigInteger[size]);
+        if (eliminate(rows, true) == 0) {
+            throw new ArithmeticException("matrix is singular.");
+        }
+        return rows;
+    }
+
+    // Bareiss elimination in place; with jordan the rows above each pivot are cleared as well. Returns the sign of
+    // the row permutation, or 0 when the matrix is singular.
+    private int eliminate(BigInteger[][] rows, boolean jordan) {
+        int sign = 1;
+        BigInteger previous = BigInteger.ONE;
+        for (int k = 0; k < size; k++) {
+            int pivot = k;
+            while (pivot < size && rows[pivot][k].signum() == 0) {
+                pivot++;
+            }
+            if (pivot == size) {
+                return 0;
+            } else if (pivot != k) {
+                final BigInteger[] swap = rows[pivot];
+                rows[pivot] = rows[k];
+                rows[k] = swap;
+                sign = -sign;
+            }
+            final RowUpdate update = new RowUpdate(rows, k, previous, jordan? 0:k + 1, size);
+            if (size >= PARALLEL_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(update);
+            } else {
+                update.compute();
+            }
+            previous = rows[k][k];
+        }
+        return sign;
+    }
+
+    // row[i][j] = (pivot * row[i][j] - row[i][k] * row[k][j]) / previous, which divides exactly.
+    @SuppressWarnings("serial")
+    private static class RowUpdate extends RecursiveAction {
+        private final BigInteger[][] rows;
+        private final int k;
+        private final BigInteger previous;
+        private final int from;
+        private final int to;
+
+        RowUpdate(BigInteger[][] rows, int k, BigInteger previous, int from, int to) {
+            this.rows = rows;
+            this.k = k;
+            this.previous = previous;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEQUENTIAL_ROWS) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RowUpdate(rows, k, previous, from, middle), new RowUpdate(rows, k, previous, middle, to));
+                return;
+            }
+            final BigInteger[] pivotRow = rows[k];
+            final BigInteger pivot = pivotRow[k];
+            for (int i = from; i < to; i++) {
+                if (i == k) {
+                    continue;
+                }
+                final BigInteger[] row = rows[i];
+                final BigInteger factor = row[k];
+                for (int j = k + 1; j < row.length; j++) {
+                    row[j] = pivot.multiply(row[j]).subtract(factor.multiply(pivotRow[j])).divide(previous);
+                }
+                row[k] = BigInteger.ZERO;
+                if (i < k) {
+                    row[i] = pivot;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FractionMatrix)) return false;
+
+        FractionMatrix that = (FractionMatrix) o;
+
+        if (size != that.size) return false;
+        for (int i = 0; i < numerators.length; i++) {
+            if (!get(i % size, i / size).equals(that.get(i % size, i / size))) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = size;
+        for (int i = 0; i < numerators.length; i++) {
+            result = 31 * result + get(i % size, i / size).hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int row = 0; row < size; row++) {
+            builder.append(row == 0? "[":",\n ").append('[');
+            for (int column = 0; column < size; column++) {
+                FractionCodec.format(get(row, column), column == 0? builder:builder.append(", "));
+            }
+            builder.append(']');
+        }
+        return builder.append(']').toString();
+    }
+}
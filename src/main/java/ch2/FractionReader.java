@@ -0,0 +1,236 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static ch2.FractionFormat.*;
+
+/**
+ * Reads a file written by {@link FractionWriter} through memory-mapped windows, so files larger than
+ * the heap (or than one 2GB mapping) can be scanned. Values that fit in long are handed out as primitives.
+ */
+public class FractionReader implements AutoCloseable {
+
+    private static final long DEFAULT_WINDOW = 1L << 30;
+
+    @FunctionalInterface
+    public interface LongFractionConsumer {
+        public void accept(long numerator, long denominator);
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final long count;
+    private final long window;
+
+    public FractionReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW);
+    }
+
+    FractionReader(Path path, long window) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.window = window;
+        try {
+            final ByteBuffer header = new Cursor().at(HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a fraction file.");
+            } else if (header.getInt(4) != VERSION) {
+                throw new IOException("unsupported version[" + header.getInt(4) + "].");
+            }
+            this.count = header.getLong(COUNT_OFFSET);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void forEach(LongFractionConsumer consumer, Consumer<Fraction> bigConsumer) throws IOException {
+        final Cursor cursor = new Cursor();
+        cursor.position = HEADER_SIZE;
+        while (cursor.hasNext()) {
+            cursor.next(consumer, bigConsumer);
+        }
+    }
+
+    /**
+     * Scans the whole file once and checks what the streaming methods skip for speed: that every int and long
+     * record is in lowest terms and that the number of records matches the header. Throws IOException naming the
+     * first bad record.
+     */
+    public void verify() throws IOException {
+        final Cursor cursor = new Cursor();
+        cursor.position = HEADER_SIZE;
+        cursor.verifying = true;
+        long records = 0;
+        while (cursor.hasNext()) {
+            cursor.next((num, den) -> {}, f -> {});
+            records++;
+        }
+        if (records != count) {
+            throw new IOException("header counts " + count + " records, the file has " + records + ".");
+        }
+    }
+
+    public void forEach(Consumer<Fraction> consumer) throws IOException {
+        forEach((num, den) -> consumer.accept(Fraction.ofReduced(num, den)), consumer);
+    }
+
+    public Fraction sum() throws IOException {
+        final FractionAccumulator accumulator = new FractionAccumulator();
+        forEach(accumulator::accumulate, accumulator::add);
+        return accumulator.get();
+    }
+
+    public Stream<Fraction> stream() {
+        final Cursor cursor = new Cursor();
+        cursor.position = HEADER_SIZE;
+        final Iterator<Fraction> iterator = new Iterator<Fraction>() {
+            private Fraction next;
+
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public Fraction next() {
+                if (!cursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    cursor.next((num, den) -> next = Fraction.ofReduced(num, den), f -> next = f);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private class Cursor {
+        private ByteBuffer buffer;
+        private long base;
+        private long position;
+        private boolean verifying;
+
+        boolean hasNext() {
+            return position < size;
+        }
+
+        // maps a new window starting at the current position when the next bytes are not mapped yet.
+        ByteBuffer at(int needed) throws IOException {
+            if (position + needed > size) {
+                throw new IOException("record at " + position + " is truncated.");
+            }
+            if (buffer == null || position < base || position + needed > base + buffer.limit()) {
+                base = position;
+                final long length = Math.max(Math.min(window, size - position), needed);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, length).order(ORDER);
+            }
+            return buffer;
+        }
+
+        void next(LongFractionConsumer consumer, Consumer<Fraction> bigConsumer) throws IOException {
+            final byte tag = at(1).get((int) (position - base));
+            switch (tag) {
+                case INT: {
+                    final ByteBuffer b = at(INT_RECORD_SIZE);
+                    final int offset = (int) (position - base);
+                    final long num = b.getInt(offset + 1);
+                    final long den = b.getInt(offset + 5);
+                    checkReduced(num, den);
+                    position += INT_RECORD_SIZE;
+                    consumer.accept(num, den);
+                    break;
+                }
+                case LONG: {
+                    final ByteBuffer b = at(LONG_RECORD_SIZE);
+                    final int offset = (int) (position - base);
+                    final long num = b.getLong(offset + 1);
+                    final long den = b.getLong(offset + 9);
+                    checkReduced(num, den);
+                    position += LONG_RECORD_SIZE;
+                    consumer.accept(num, den);
+                    break;
+                }
+                case BIG: {
+                    final int numLength = at(5).getInt((int) (position - base) + 1);
+                    checkLength(numLength, 9);
+                    final int denLength = at(9 + numLength).getInt((int) (position - base) + 5 + numLength);
+                    checkLength(denLength, 9L + numLength);
+                    final ByteBuffer b = at(9 + numLength + denLength);
+                    final int offset = (int) (position - base);
+                    final byte[] num = new byte[numLength];
+                    final byte[] den = new byte[denLength];
+                    for (int i = 0; i < numLength; i++) num[i] = b.get(offset + 5 + i);
+                    for (int i = 0; i < denLength; i++) den[i] = b.get(offset + 9 + numLength + i);
+                    final BigInteger denominator = new BigInteger(den);
+                    if (denominator.signum() <= 0) {
+                        throw new IOException("record at " + position + " has a non positive denominator[" +
+                                denominator + "].");
+                    }
+                    position += 9 + numLength + denLength;
+                    bigConsumer.accept(new Fraction(new BigInteger(num), denominator));
+                    break;
+                }
+                default:
+                    throw new IOException("unknown record type[" + tag + "] at " + position + ".");
+            }
+        }
+
+        // primitive records skip Fraction's constructor. A bad sign or Long.MIN_VALUE would break the consumers'
+        // arithmetic and costs a compare, so every record is checked; lowest terms cost a gcd and FractionWriter
+        // only writes reduced values, so verify() checks them.
+        private void checkReduced(long num, long den) throws IOException {
+            if (den <= 0 || num == Long.MIN_VALUE || verifying && Gcd.of(num, den) != 1) {
+                throw new IOException("record at " + position + " is not a reduced fraction[" + num + "/" + den + "].");
+            }
+        }
+
+        // a length field must be positive and leave the rest of the record inside the file and one mapping.
+        private void checkLength(int length, long before) throws IOException {
+            if (length < 1 || length > Math.min(size - position, Integer.MAX_VALUE) - before) {
+                throw new IOException("record at " + position + " has a bad length[" + length + "].");
+            }
+        }
+    }
+}
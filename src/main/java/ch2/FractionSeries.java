@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Series of fractions. {@link #geometric(Fraction, Fraction)} and {@link #arithmetic(Fraction, Fraction)} are
+ * the series that {@code Stream.iterate(seed, f -> f.multiply(ratio))} and {@code Stream.iterate(seed, f -> f.plus(d))}
+ * produce, but they evaluate terms and partial sums in closed form. {@link #treeSum(Fraction[])} adds arbitrary
+ * terms pairwise so that operands of each addition stay about the same size.
+ */
+public abstract class FractionSeries {
+
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 10;
+
+    private static final int LINEAR_THRESHOLD = 8;
+
+    public static FractionSeries geometric(Fraction seed, Fraction ratio) {
+        return new Geometric(seed, ratio);
+    }
+
+    public static FractionSeries arithmetic(Fraction seed, Fraction difference) {
+        return new Arithmetic(seed, difference);
+    }
+
+    public static Fraction treeSum(Fraction[] terms) {
+        if (terms.length <= SEQUENTIAL_THRESHOLD) {
+            return sum(terms, 0, terms.length);
+        }
+        return ForkJoinPool.commonPool().invoke(new SumTask(terms, 0, terms.length));
+    }
+
+    public static Fraction treeSum(List<Fraction> terms) {
+        return treeSum(terms.toArray(new Fraction[terms.size()]));
+    }
+
+    public static Fraction treeSum(Stream<Fraction> terms) {
+        return treeSum(terms.toArray(Fraction[]::new));
+    }
+
+    final Fraction seed;
+
+    private FractionSeries(Fraction seed) {
+        this.seed = seed;
+    }
+
+    public abstract Fraction term(int index);
+
+    public abstract Fraction sum(int count);
+
+    public abstract Stream<Fraction> stream();
+
+    static void checkCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count should not be negative[" + count + "].");
+        }
+    }
+
+    private static Fraction sum(Fraction[] terms, int from, int to) {
+        if (to - from <= LINEAR_THRESHOLD) {
+            Fraction sum = Fraction.valueOf(0);
+            for (int i = from; i < to; i++) {
+                sum = sum.plus(terms[i]);
+            }
+            return sum;
+        }
+        final int middle = (from + to) >>> 1;
+        return sum(terms, from, middle).plus(sum(terms, middle, to));
+    }
+
+    @SuppressWarnings("serial")
+    private static class SumTask extends RecursiveTask<Fraction> {
+        private final Fraction[] terms;
+        private final int from;
+        private final int to;
+
+        SumTask(Fraction[] terms, int from, int to) {
+            this.terms = terms;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Fraction compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return sum(terms, from, to);
+            }
+            final int middle = (from + to) >>> 1;
+            final SumTask left = new SumTask(terms, from, middle);
+            left.fork();
+            final Fraction right = new SumTask(terms, middle, to).compute();
+            return left.join().plus(right);
+        }
+    }
+
+    private static class Geometric extends FractionSeries {
+        private final Fraction ratio;
+
+        Geometric(Fraction seed, Fraction ratio) {
+            super(seed);
+            this.ratio = ratio;
+        }
+
+        @Override
+        public Fraction term(int index) {
+            return seed.multiply(ratio.power(index));
+        }
+
+        // seed * (1 - r^n) / (1 - r), or seed * n when r is 1.
+        @Override
+        public Fraction sum(int count) {
+            checkCount(count);
+            if (ratio.compareTo(1) == 0) {
+                return seed.multiply(count);
+            }
+            final Fraction one = Fraction.valueOf(1);
+            return seed.multiply(one.minus(ratio.power(count))).divide(one.minus(ratio));
+        }
+
+        @Override
+        public Stream<Fraction> stream() {
+            return Stream.iterate(seed, f -> f.multiply(ratio));
+        }
+
+        @Override
+        public String toString() {
+            return "Geometric[seed=" + seed + ", ratio=" + ratio + "]";
+        }
+    }
+
+    private static class Arithmetic extends FractionSeries {
+        private final Fraction difference;
+
+        Arithmetic(Fraction seed, Fraction difference) {
+            super(seed);
+            this.difference = difference;
+        }
+
+        @Override
+        public Fraction term(int index) {
+            return seed.plus(difference.multiply(index));
+        }
+
+        // n * seed + d * n(n - 1) / 2
+        @Override
+        public Fraction sum(int count) {
+            checkCount(count);
+            final long pairs = (long) count * (count - 1) / 2;
+            return seed.multiply(count).plus(difference.multiply(Fraction.of(pairs, 1L)));
+        }
+
+        @Override
+        public Stream<Fraction> stream() {
+            return Stream.iterate(seed, f -> f.plus(difference));
+        }
+
+        @Override
+        public String toString() {
+            return "Arithmetic[seed=" + seed + ", difference=" + difference + "]";
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel merge sort of fractions keyed by a precomputed double approximation. Keys that are too close
+ * for the approximation error to decide fall back to {@link Fraction#compareTo(Fraction)}, so the result is
+ * exactly the natural order.
+ */
+public final class FractionSort {
+
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    // three roundings of at most 2^-53 each, with some headroom.
+    private static final double TOLERANCE = 0x1p-50;
+
+    private static final double TINY = 0x1p-960;
+
+    private FractionSort() {}
+
+    public static void parallelSort(Fraction[] values) {
+        final double[] keys = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = key(values[i]);
+        }
+        final Fraction[] valuesWork = values.clone();
+        final double[] keysWork = keys.clone();
+        ForkJoinPool.commonPool().invoke(new SortTask(values, keys, valuesWork, keysWork, 0, values.length));
+    }
+
+    static double key(Fraction value) {
+        if (!value.isBig()) {
+            return (double) value.longNumerator() / value.longDenominator();
+        }
+        final BigInteger numerator = value.bigNumerator();
+        final BigInteger denominator = value.bigDenominator();
+        final int numeratorShift = Math.max(numerator.bitLength() - 62, 0);
+        final int denominatorShift = Math.max(denominator.bitLength() - 62, 0);
+        final double ratio = (double) numerator.shiftRight(numeratorShift).longValue() /
+                denominator.shiftRight(denominatorShift).longValue();
+        return Math.scalb(ratio, numeratorShift - denominatorShift);
+    }
+
+    static int compare(Fraction left, double leftKey, Fraction right, double rightKey) {
+        final double scale = Math.max(Math.abs(leftKey), Math.abs(rightKey));
+        if (Math.abs(leftKey - rightKey) > scale * TOLERANCE && scale > TINY && scale < Double.POSITIVE_INFINITY) {
+            return leftKey < rightKey? -1:1;
+        }
+        return left.compareTo(right);
+    }
+
+    private static void insertionSort(Fraction[] values, double[] keys, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            final Fraction value = values[i];
+            final double key = keys[i];
+            int j = i - 1;
+            while (j >= from && compare(values[j], keys[j], value, key) > 0) {
+                values[j + 1] = values[j];
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            values[j + 1] = value;
+            keys[j + 1] = key;
+        }
+    }
+
+    // merges source[from, middle) and source[middle, to) into target[from, to).
+    private static void merge(Fraction[] sourceValues, double[] sourceKeys, Fraction[] targetValues, double[] targetKeys,
+                              int from, int middle, int to) {
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle &&
+                    compare(sourceValues[left], sourceKeys[left], sourceValues[right], sourceKeys[right]) <= 0) {
+                targetValues[i] = sourceValues[left];
+                targetKeys[i] = sourceKeys[left++];
+            } else {
+                targetValues[i] = sourceValues[right];
+                targetKeys[i] = sourceKeys[right++];
+            }
+        }
+    }
+
+    // sorts values[from, to) using the work arrays, which hold the same elements on entry.
+    @SuppressWarnings("serial")
+    private static class SortTask extends RecursiveAction {
+        private final Fraction[] values;
+        private final double[] keys;
+        private final Fraction[] workValues;
+        private final double[] workKeys;
+        private final int from;
+        private final int to;
+
+        SortTask(Fraction[] values, double[] keys, Fraction[] workValues, double[] workKeys, int from, int to) {
+            this.values = values;
+            this.keys = keys;
+            this.workValues = workValues;
+            this.workKeys = workKeys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= INSERTION_SORT_THRESHOLD) {
+                insertionSort(values, keys, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            final SortTask left = new SortTask(workValues, workKeys, values, keys, from, middle);
+            final SortTask right = new SortTask(workValues, workKeys, values, keys, middle, to);
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            merge(workValues, workKeys, values, keys, from, middle, to);
+        }
+    }
+}
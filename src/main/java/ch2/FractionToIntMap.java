@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * Map from fractions to primitive ints without boxing either side. See {@link FractionHashTable}.
+ */
+public final class FractionToIntMap extends FractionHashTable {
+
+    public static Collector<Fraction, ?, FractionToIntMap> counting() {
+        return summing(Function.identity(), value -> 1);
+    }
+
+    public static <T> Collector<T, ?, FractionToIntMap> summing(Function<? super T, Fraction> key,
+                                                                 ToIntFunction<? super T> value) {
+        return Collector.of(FractionToIntMap::new,
+                (map, element) -> map.addTo(key.apply(element), value.applyAsInt(element)),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                },
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    private int[] values;
+    private Map<Fraction, Integer> bigValues;
+
+    public FractionToIntMap() {
+        this(0);
+    }
+
+    public FractionToIntMap(int expectedSize) {
+        super(expectedSize);
+        this.values = new int[denominators.length];
+    }
+
+    public int size() {
+        return size + (bigValues == null? 0:bigValues.size());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(Fraction key) {
+        return key.isBig()? bigValues != null && bigValues.containsKey(key):
+                find(key.longNumerator(), key.longDenominator()) >= 0;
+    }
+
+    public int get(Fraction key) {
+        return getOrDefault(key, 0);
+    }
+
+    public int getOrDefault(Fraction key, int defaultValue) {
+        if (key.isBig()) {
+            return bigValues == null? defaultValue:bigValues.getOrDefault(key, defaultValue);
+        }
+        final int index = find(key.longNumerator(), key.longDenominator());
+        return index < 0? defaultValue:values[index];
+    }
+
+    // returns the previous value, or 0 when the key was absent.
+    public int put(Fraction key, int value) {
+        if (key.isBig()) {
+            final Integer previous = bigs().put(key, value);
+            return previous == null? 0:previous;
+        }
+        final int index = slot(key.longNumerator(), key.longDenominator());
+        final int previous = values[index];
+        values[index] = value;
+        return previous;
+    }
+
+    // returns the new value; an absent key counts as 0.
+    public int addTo(Fraction key, int delta) {
+        if (key.isBig()) {
+            return bigs().merge(key, delta, Integer::sum);
+        }
+        return addTo(key.longNumerator(), key.longDenominator(), delta);
+    }
+
+    // numerator / denominator should be reduced with a positive denominator.
+    int addTo(long numerator, long denominator, int delta) {
+        final int index = slot(numerator, denominator);
+        return values[index] += delta;
+    }
+
+    public void addAll(FractionToIntMap other) {
+        for (int i = 0; i < other.denominators.length; i++) {
+            if (other.denominators[i] != 0) {
+                addTo(other.numerators[i], other.denominators[i], other.values[i]);
+            }
+        }
+        if (other.bigValues != null) {
+            other.bigValues.forEach((key, value) -> bigs().merge(key, value, Integer::sum));
+        }
+    }
+
+    public void forEach(ObjIntConsumer<Fraction> action) {
+        for (int i = 0; i < denominators.length; i++) {
+            if (denominators[i] != 0) {
+                action.accept(Fraction.ofReduced(numerators[i], denominators[i]), values[i]);
+            }
+        }
+        if (bigValues != null) {
+            bigValues.forEach(action::accept);
+        }
+    }
+
+    public Map<Fraction, Integer> toMap() {
+        final Map<Fraction, Integer> map = new HashMap<>(size() * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    public void clear() {
+        clearKeys();
+        Arrays.fill(values, 0);
+        bigValues = null;
+    }
+
+    @Override
+    void relocate(int[] targets, int capacity) {
+        final int[] moved = new int[capacity];
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] >= 0) {
+                moved[targets[i]] = values[i];
+            }
+        }
+        values = moved;
+    }
+
+    private Map<Fraction, Integer> bigs() {
+        if (bigValues == null) {
+            bigValues = new HashMap<>();
+        }
+        return bigValues;
+    }
+
+    @Override
+    public String toString() {
+        return "FractionToIntMap" + toMap();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * Map from fractions to primitive longs without boxing either side. See {@link FractionHashTable}.
+ */
+public final class FractionToLongMap extends FractionHashTable {
+
+    public static Collector<Fraction, ?, FractionToLongMap> counting() {
+        return summing(Function.identity(), value -> 1L);
+    }
+
+    public static <T> Collector<T, ?, FractionToLongMap> summing(Function<? super T, Fraction> key,
+                                                                  ToLongFunction<? super T> value) {
+        return Collector.of(FractionToLongMap::new,
+                (map, element) -> map.addTo(key.apply(element), value.applyAsLong(element)),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                },
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    private long[] values;
+    private Map<Fraction, Long> bigValues;
+
+    public FractionToLongMap() {
+        this(0);
+    }
+
+    public FractionToLongMap(int expectedSize) {
+        super(expectedSize);
+        this.values = new long[denominators.length];
+    }
+
+    public int size() {
+        return size + (bigValues == null? 0:bigValues.size());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(Fraction key) {
+        return key.isBig()? bigValues != null && bigValues.containsKey(key):
+                find(key.longNumerator(), key.longDenominator()) >= 0;
+    }
+
+    public long get(Fraction key) {
+        return getOrDefault(key, 0L);
+    }
+
+    public long getOrDefault(Fraction key, long defaultValue) {
+        if (key.isBig()) {
+            return bigValues == null? defaultValue:bigValues.getOrDefault(key, defaultValue);
+        }
+        final int index = find(key.longNumerator(), key.longDenominator());
+        return index < 0? defaultValue:values[index];
+    }
+
+    // returns the previous value, or 0 when the key was absent.
+    public long put(Fraction key, long value) {
+        if (key.isBig()) {
+            final Long previous = bigs().put(key, value);
+            return previous == null? 0L:previous;
+        }
+        final int index = slot(key.longNumerator(), key.longDenominator());
+        final long previous = values[index];
+        values[index] = value;
+        return previous;
+    }
+
+    // returns the new value; an absent key counts as 0.
+    public long addTo(Fraction key, long delta) {
+        if (key.isBig()) {
+            return bigs().merge(key, delta, Long::sum);
+        }
+        return addTo(key.longNumerator(), key.longDenominator(), delta);
+    }
+
+    // numerator / denominator should be reduced with a positive denominator.
+    long addTo(long numerator, long denominator, long delta) {
+        final int index = slot(numerator, denominator);
+        return values[index] += delta;
+    }
+
+    public void addAll(FractionToLongMap other) {
+        for (int i = 0; i < other.denominators.length; i++) {
+            if (other.denominators[i] != 0) {
+                addTo(other.numerators[i], other.denominators[i], other.values[i]);
+            }
+        }
+        if (other.bigValues != null) {
+            other.bigValues.forEach((key, value) -> bigs().merge(key, value, Long::sum));
+        }
+    }
+
+    public void forEach(ObjLongConsumer<Fraction> action) {
+        for (int i = 0; i < denominators.length; i++) {
+            if (denominators[i] != 0) {
+                action.accept(Fraction.ofReduced(numerators[i], denominators[i]), values[i]);
+            }
+        }
+        if (bigValues != null) {
+            bigValues.forEach(action::accept);
+        }
+    }
+
+    public Map<Fraction, Long> toMap() {
+        final Map<Fraction, Long> map = new HashMap<>(size() * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    public void clear() {
+        clearKeys();
+        Arrays.fill(values, 0L);
+        bigValues = null;
+    }
+
+    @Override
+    void relocate(int[] targets, int capacity) {
+        final long[] moved = new long[capacity];
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] >= 0) {
+                moved[targets[i]] = values[i];
+            }
+        }
+        values = moved;
+    }
+
+    private Map<Fraction, Long> bigs() {
+        if (bigValues == null) {
+            bigValues = new HashMap<>();
+        }
+        return bigValues;
+    }
+
+    @Override
+    public String toString() {
+        return "FractionToLongMap" + toMap();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static ch2.FractionFormat.*;
+
+public class FractionWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ORDER);
+    private long count;
+
+    public FractionWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(0L);
+    }
+
+    public FractionWriter write(Fraction value) throws IOException {
+        if (value.isBig()) {
+            writeBig(value.bigNumerator(), value.bigDenominator());
+        } else {
+            writeLong(value.longNumerator(), value.longDenominator());
+        }
+        return this;
+    }
+
+    public FractionWriter write(FractionArray values) throws IOException {
+        for (int i = 0; i < values.length(); i++) {
+            write(values.get(i));
+        }
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    private void writeLong(long numerator, long denominator) throws IOException {
+        if (numerator == (int) numerator && denominator == (int) denominator) {
+            ensure(INT_RECORD_SIZE);
+            buffer.put(INT).putInt((int) numerator).putInt((int) denominator);
+        } else {
+            ensure(LONG_RECORD_SIZE);
+            buffer.put(LONG).putLong(numerator).putLong(denominator);
+        }
+        count++;
+    }
+
+    private void writeBig(BigInteger numerator, BigInteger denominator) throws IOException {
+        final byte[] num = numerator.toByteArray();
+        final byte[] den = denominator.toByteArray();
+        final int size = 1 + 4 + num.length + 4 + den.length;
+        if (size > BUFFER_SIZE) {
+            flush();
+            final ByteBuffer record = ByteBuffer.allocate(size).order(ORDER);
+            record.put(BIG).putInt(num.length).put(num).putInt(den.length).put(den).flip();
+            writeFully(record);
+        } else {
+            ensure(size);
+            buffer.put(BIG).putInt(num.length).put(num).putInt(den.length).put(den);
+        }
+        count++;
+    }
+
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            final ByteBuffer header = ByteBuffer.allocate(8).order(ORDER);
+            header.putLong(count).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, COUNT_OFFSET + header.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
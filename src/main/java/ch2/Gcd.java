@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import java.math.BigInteger;
+
+public final class Gcd {
+
+    private static final int LEHMER_DIGIT = 62;
+
+    private Gcd() {}
+
+    public static int of(int left, int right) {
+        return (int) binary(Math.abs((long) left), Math.abs((long) right));
+    }
+
+    public static long of(long left, long right) {
+        return binary(Math.abs(left), Math.abs(right));
+    }
+
+    public static BigInteger of(BigInteger left, BigInteger right) {
+        final BigInteger large = left.abs();
+        final BigInteger small = right.abs();
+        if (large.bitLength() < Long.SIZE && small.bitLength() < Long.SIZE) {
+            return BigInteger.valueOf(binary(large.longValue(), small.longValue()));
+        }
+        return lehmer(large, small);
+    }
+
+    // Stein's algorithm: shifts and subtractions only, no division in the loop, for int and long operands alike.
+    // arguments are magnitudes treated as unsigned.
+    static long binary(long left, long right) {
+        if (left == 0) return right;
+        if (right == 0) return left;
+        final int shift = Long.numberOfTrailingZeros(left | right);
+        long u = left >>> Long.numberOfTrailingZeros(left);
+        long v = right;
+        do {
+            v >>>= Long.numberOfTrailingZeros(v);
+            if (Long.compareUnsigned(u, v) > 0) {
+                final long t = v;
+                v = u;
+                u = t;
+            }
+            v -= u;
+        } while (v != 0);
+        return u << shift;
+    }
+
+    // Knuth's algorithm L: runs the Euclidean steps on the leading 62 bits and applies
+    // the collected cofactors to the full values at once.
+    static BigInteger lehmer(BigInteger left, BigInteger right) {
+        BigInteger a = left.abs();
+        BigInteger b = right.abs();
+        if (a.compareTo(b) < 0) {
+            final BigInteger t = a;
+            a = b;
+            b = t;
+        }
+        while (b.bitLength() >= Long.SIZE) {
+            final int shift = Math.max(a.bitLength() - LEHMER_DIGIT, 0);
+            long ahat = a.shiftRight(shift).longValue();
+            long bhat = b.shiftRight(shift).longValue();
+            long ca = 1, cb = 0, cc = 0, cd = 1;
+            while (bhat + cc != 0 && bhat + cd != 0) {
+                final long q = (ahat + ca) / (bhat + cc);
+                if (q != (ahat + cb) / (bhat + cd)) {
+                    break;
+                }
+                long t = ca - q * cc;
+                ca = cc;
+                cc = t;
+                t = cb - q * cd;
+                cb = cd;
+                cd = t;
+                t = ahat - q * bhat;
+                ahat = bhat;
+                bhat = t;
+            }
+            if (cb == 0) {
+                final BigInteger t = a.mod(b);
+                a = b;
+                b = t;
+            } else {
+                final BigInteger na = a.multiply(BigInteger.valueOf(ca)).add(b.multiply(BigInteger.valueOf(cb)));
+                final BigInteger nb = a.multiply(BigInteger.valueOf(cc)).add(b.multiply(BigInteger.valueOf(cd)));
+                a = na;
+                b = nb;
+            }
+        }
+        if (b.signum() == 0) {
+            return a;
+        } else if (a.bitLength() >= Long.SIZE) {
+            final BigInteger t = a.mod(b);
+            a = b;
+            b = t;
+        }
+        return BigInteger.valueOf(binary(a.longValue(), b.longValue()));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compressed sparse storage shared by {@link CsrMatrix} (majors are rows) and {@link CscMatrix} (majors are
+ * columns): the entries of major {@code m} are {@code indices[pointers[m] .. pointers[m + 1])}, sorted, with their
+ * {@code values}. Gathering along majors is what CSR does for {@code A x} and CSC for {@code A^T x}; it splits
+ * into fork/join tasks of about equal non-zeros. Scattering is the other product, where each parallel chunk
+ * needs its own buffer.
+ */
+final class Compressed {
+
+    // non-zeros below which a task runs sequentially.
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    final int majors;
+    final int minors;
+    final int[] pointers;
+    final int[] indices;
+    final double[] values;
+
+    Compressed(int majors, int minors, int[] pointers, int[] indices, double[] values) {
+        this.majors = majors;
+        this.minors = minors;
+        this.pointers = pointers;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    // sorts count coordinate entries by two stable counting sorts, sums duplicates and drops zeros.
+    static Compressed of(int majors, int minors, int[] major, int[] minor, double[] values, int count) {
+        final int[] byMinor = new int[count];
+        final int[] starts = new int[minors + 1];
+        for (int e = 0; e < count; e++) {
+            starts[minor[e] + 1]++;
+        }
+        for (int i = 0; i < minors; i++) {
+            starts[i + 1] += starts[i];
+        }
+        for (int e = 0; e < count; e++) {
+            byMinor[starts[minor[e]]++] = e;
+        }
+        final int[] sorted = new int[count];
+        final int[] pointers = new int[majors + 1];
+        for (int e = 0; e < count; e++) {
+            pointers[major[e] + 1]++;
+        }
+        for (int i = 0; i < majors; i++) {
+            pointers[i + 1] += pointers[i];
+        }
+        final int[] next = Arrays.copyOf(pointers, majors);
+        for (int e : byMinor) {
+            sorted[next[major[e]]++] = e;
+        }
+        final int[] indices = new int[count];
+        final double[] merged = new double[count];
+        int size = 0;
+        for (int m = 0; m < majors; m++) {
+            final int from = pointers[m];
+            final int to = pointers[m + 1];
+            pointers[m] = size;
+            for (int k = from; k < to; ) {
+                final int index = minor[sorted[k]];
+                double sum = 0;
+                for (; k < to && minor[sorted[k]] == index; k++) {
+                    sum += values[sorted[k]];
+                }
+                if (sum != 0) {
+                    indices[size] = index;
+                    merged[size++] = sum;
+                }
+            }
+        }
+        pointers[majors] = size;
+        return new Compressed(majors, minors, pointers, Arrays.copyOf(indices, size), Arrays.copyOf(merged, size));
+    }
+
+    int nonZeros() {
+        return pointers[majors];
+    }
+
+    double get(int major, int minor) {
+        final int at = Arrays.binarySearch(indices, pointers[major], pointers[major + 1], minor);
+        return at < 0? 0:values[at];
+    }
+
+    // the same matrix with majors and minors swapped, by one counting sort.
+    Compressed transpose() {
+        final int[] transposed = new int[minors + 1];
+        for (int k = 0; k < nonZeros(); k++) {
+            transposed[indices[k] + 1]++;
+        }
+        for (int i = 0; i < minors; i++) {
+            transposed[i + 1] += transposed[i];
+        }
+        final int[] next = Arrays.copyOf(transposed, minors);
+        final int[] majorIndices = new int[nonZeros()];
+        final double[] moved = new double[nonZeros()];
+        for (int m = 0; m < majors; m++) {
+            for (int k = pointers[m]; k < pointers[m + 1]; k++) {
+                final int at = next[indices[k]]++;
+                majorIndices[at] = m;
+                moved[at] = values[k];
+            }
+        }
+        return new Compressed(minors, majors, transposed, majorIndices, moved);
+    }
+
+    // y[m] = sum of values * x[index] along each major.
+    void gather(double[] x, double[] y) {
+        check(x.length, minors, y.length, majors);
+        final Gather task = new Gather(x, y, 0, majors);
+        if (nonZeros() >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+    }
+
+    private void gather(double[] x, double[] y, int from, int to) {
+        for (int m = from; m < to; m++) {
+            double sum = 0;
+            for (int k = pointers[m]; k < pointers[m + 1]; k++) {
+                sum += values[k] * x[indices[k]];
+            }
+            y[m] = sum;
+        }
+    }
+
+    // y[index] = sum over majors m of values * x[m]; parallel chunks scatter into buffers added at the end.
+    void scatter(double[] x, double[] y) {
+        check(x.length, majors, y.length, minors);
+        final int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism(), nonZeros() / PARALLEL_THRESHOLD);
+        Arrays.fill(y, 0);
+        if (chunks < 2) {
+            scatter(x, y, 0, majors);
+            return;
+        }
+        final double[][] buffers = new double[chunks][];
+        final Scatter[] tasks = new Scatter[chunks];
+        for (int c = 0, from = 0; c < chunks; c++) {
+            final int to = c == chunks - 1? majors:split(from, majors, (long) nonZeros() * (c + 1) / chunks);
+            buffers[c] = c == 0? y:new double[minors];
+            tasks[c] = new Scatter(x, buffers[c], from, to);
+            from = to;
+        }
+        ForkJoinTask.invokeAll(tasks);
+        for (int c = 1; c < chunks; c++) {
+            for (int i = 0; i < minors; i++) {
+                y[i] += buffers[c][i];
+            }
+        }
+    }
+
+    private void scatter(double[] x, double[] y, int from, int to) {
+        for (int m = from; m < to; m++) {
+            final double factor = x[m];
+            for (int k = pointers[m]; k < pointers[m + 1]; k++) {
+                y[indices[k]] += values[k] * factor;
+            }
+        }
+    }
+
+    // the first major in [from, to] whose pointer reaches target, so both sides hold about equal non-zeros.
+    int split(int from, int to, long target) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (pointers[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void check(int in, int expectedIn, int out, int expectedOut) {
+        if (in != expectedIn || out != expectedOut) {
+            throw new IllegalArgumentException("vectors should have " + expectedIn + " and " + expectedOut +
+                    " values[" + in + ", " + out + "].");
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class Gather extends RecursiveAction {
+        private final double[] x;
+        private final double[] y;
+        private final int from;
+        private final int to;
+
+        Gather(double[] x, double[] y, int from, int to) {
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            final int middle = split(from, to, ((long) pointers[from] + pointers[to]) >>> 1);
+            if (pointers[to] - pointers[from] < PARALLEL_THRESHOLD || middle <= from || middle >= to) {
+                gather(x, y, from, to);
+                return;
+            }
+            invokeAll(new Gather(x, y, from, middle), new Gather(x, y, middle, to));
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class Scatter extends RecursiveAction {
+        private final double[] x;
+        private final double[] y;
+        private final int from;
+        private final int to;
+
+        Scatter(double[] x, double[] y, int from, int to) {
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            scatter(x, y, from, to);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable sparse matrix in compressed sparse column form, built by {@link SparseMatrix#rows(int)}. {@code A^T x} walks
+ * columns and runs in parallel like {@link CsrMatrix#multiply(double[])}; so does {@code A B} for a dense B,
+ * split over the columns of B. {@code A x} scatters and needs a buffer per parallel chunk.
+ */
+public final class CscMatrix {
+
+    final Compressed columns;
+
+    CscMatrix(Compressed columns) {
+        this.columns = columns;
+    }
+
+    public int rows() {
+        return columns.minors;
+    }
+
+    public int columns() {
+        return columns.majors;
+    }
+
+    public int nonZeros() {
+        return columns.nonZeros();
+    }
+
+    public double get(int row, int column) {
+        if (row < 0 || row >= rows() || column < 0 || column >= columns()) {
+            throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + rows() + "x" + columns() + ".");
+        }
+        return columns.get(column, row);
+    }
+
+    public double[] multiply(double[] vector) {
+        final double[] result = new double[rows()];
+        multiply(vector, result);
+        return result;
+    }
+
+    public void multiply(double[] vector, double[] result) {
+        columns.scatter(vector, result);
+    }
+
+    public double[] transposeMultiply(double[] vector) {
+        final double[] result = new double[columns()];
+        transposeMultiply(vector, result);
+        return result;
+    }
+
+    // writes A^T x into result, which must not be vector.
+    public void transposeMultiply(double[] vector, double[] result) {
+        columns.gather(vector, result);
+    }
+
+    // column j of the product is A times column j of dense, so tasks own disjoint columns of the product.
+    public DenseDoubleMatrix multiply(DenseDoubleMatrix dense) {
+        if (columns() != dense.rows()) {
+            throw new IllegalArgumentException("cannot multiply " + rows() + "x" + columns() + " by " +
+                    dense.rows() + "x" + dense.columns() + ".");
+        }
+        final double[] product = new double[rows() * dense.columns()];
+        final DenseTask task = new DenseTask(dense.values(), dense.columns(), product, 0, dense.columns());
+        if ((long) nonZeros() * dense.columns() >= Compressed.PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return DenseDoubleMatrix.wrap(rows(), dense.columns(), product);
+    }
+
+    public CsrMatrix toCsr() {
+        return new CsrMatrix(columns.transpose());
+    }
+
+    public DenseDoubleMatrix toDense() {
+        return toCsr().toDense();
+    }
+
+    @Override
+    public String toString() {
+        return "CscMatrix[" + rows() + "x" + columns() + ", " + nonZeros() + " non-zeros]";
+    }
+
+    @SuppressWarnings("serial")
+    private class DenseTask extends RecursiveAction {
+        private final double[] dense;
+        private final int width;
+        private final double[] product;
+        private final int from;
+        private final int to;
+
+        DenseTask(double[] dense, int width, double[] product, int from, int to) {
+            this.dense = dense;
+            this.width = width;
+            this.product = product;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) nonZeros() * (to - from) < Compressed.PARALLEL_THRESHOLD || to - from < 2) {
+                final int[] pointers = columns.pointers;
+                for (int k = 0; k < columns(); k++) {
+                    for (int p = pointers[k]; p < pointers[k + 1]; p++) {
+                        final double value = columns.values[p];
+                        final int target = columns.indices[p] * width;
+                        for (int j = from; j < to; j++) {
+                            product[target + j] += value * dense[k * width + j];
+                        }
+                    }
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new DenseTask(dense, width, product, from, middle), new DenseTask(dense, width, product, middle, to));
+        }
+    }
+}
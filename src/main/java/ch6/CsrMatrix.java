@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable sparse matrix in compressed sparse row form, built by {@link SparseMatrix#rows(int)}. Memory is one int and one
+ * double per non-zero plus one int per row. {@code A x} and {@code A B} for a dense B walk rows, so they run in
+ * parallel on fork/join over row ranges of about equal non-zeros; {@code A^T x} scatters and needs a buffer per
+ * parallel chunk, so prefer a {@link CscMatrix} when that is the hot product.
+ */
+public final class CsrMatrix {
+
+    final Compressed rows;
+
+    CsrMatrix(Compressed rows) {
+        this.rows = rows;
+    }
+
+    public int rows() {
+        return rows.majors;
+    }
+
+    public int columns() {
+        return rows.minors;
+    }
+
+    public int nonZeros() {
+        return rows.nonZeros();
+    }
+
+    public double get(int row, int column) {
+        if (row < 0 || row >= rows() || column < 0 || column >= columns()) {
+            throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + rows() + "x" + columns() + ".");
+        }
+        return rows.get(row, column);
+    }
+
+    public double[] multiply(double[] vector) {
+        final double[] result = new double[rows()];
+        multiply(vector, result);
+        return result;
+    }
+
+    // writes A x into result, which must not be vector.
+    public void multiply(double[] vector, double[] result) {
+        rows.gather(vector, result);
+    }
+
+    public double[] transposeMultiply(double[] vector) {
+        final double[] result = new double[columns()];
+        transposeMultiply(vector, result);
+        return result;
+    }
+
+    public void transposeMultiply(double[] vector, double[] result) {
+        rows.scatter(vector, result);
+    }
+
+    // row i of the product is the sum of the rows of dense picked by the non-zeros of row i.
+    public DenseDoubleMatrix multiply(DenseDoubleMatrix dense) {
+        if (columns() != dense.rows()) {
+            throw new IllegalArgumentException("cannot multiply " + rows() + "x" + columns() + " by " +
+                    dense.rows() + "x" + dense.columns() + ".");
+        }
+        final double[] product = new double[rows() * dense.columns()];
+        final DenseTask task = new DenseTask(dense.values(), dense.columns(), product, 0, rows());
+        if ((long) nonZeros() * dense.columns() >= Compressed.PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return DenseDoubleMatrix.wrap(rows(), dense.columns(), product);
+    }
+
+    public CscMatrix toCsc() {
+        return new CscMatrix(rows.transpose());
+    }
+
+    public DenseDoubleMatrix toDense() {
+        final double[] dense = new double[rows() * columns()];
+        for (int i = 0; i < rows(); i++) {
+            for (int k = rows.pointers[i]; k < rows.pointers[i + 1]; k++) {
+                dense[i * columns() + rows.indices[k]] = rows.values[k];
+            }
+        }
+        return DenseDoubleMatrix.wrap(rows(), columns(), dense);
+    }
+
+    @Override
+    public String toString() {
+        return "CsrMatrix[" + rows() + "x" + columns() + ", " + nonZeros() + " non-zeros]";
+    }
+
+    @SuppressWarnings("serial")
+    private class DenseTask extends RecursiveAction {
+        private final double[] dense;
+        private final int width;
+        private final double[] product;
+        private final int from;
+        private final int to;
+
+        DenseTask(double[] dense, int width, double[] product, int from, int to) {
+            this.dense = dense;
+            this.width = width;
+            this.product = product;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            final int[] pointers = rows.pointers;
+            final int middle = rows.split(from, to, ((long) pointers[from] + pointers[to]) >>> 1);
+            if ((long) (pointers[to] - pointers[from]) * width < Compressed.PARALLEL_THRESHOLD || middle <= from || middle >= to) {
+                for (int i = from; i < to; i++) {
+                    for (int k = pointers[i]; k < pointers[i + 1]; k++) {
+                        final double value = rows.values[k];
+                        final int source = rows.indices[k] * width;
+                        for (int j = 0; j < width; j++) {
+                            product[i * width + j] += value * dense[source + j];
+                        }
+                    }
+                }
+                return;
+            }
+            invokeAll(new DenseTask(dense, width, product, from, middle), new DenseTask(dense, width, product, middle, to));
+        }
+    }
+}
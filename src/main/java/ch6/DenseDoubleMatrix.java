@@ -0,0 +1,336 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable dense matrix of doubles in a flat row-major array. {@link #multiply(DenseDoubleMatrix)} transposes
+ * the right operand so both inner loops walk memory sequentially, works in BLOCK &times; BLOCK tiles that stay in
+ * cache while they are reused, and splits the rows of the product over the common fork/join pool for large sizes.
+ */
+public final class DenseDoubleMatrix {
+
+    static final int BLOCK = 64;
+
+    // multiply-adds below which forking costs more than it saves.
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    // crossover of strassenMultiply below which the blocked kernel is faster; see DenseMatrixTest.Benchmark.
+    public static final int STRASSEN_CUTOFF = 64;
+
+    public static Columns rows(int rows) {
+        return columns -> new Builder(rows, columns);
+    }
+
+    public static DenseDoubleMatrix of(int rows, int columns, double[] rowMajor) {
+        if (rowMajor.length != (long) rows * columns) {
+            throw new IllegalArgumentException("needs " + rows + "x" + columns + " values[" + rowMajor.length + "].");
+        }
+        return new DenseDoubleMatrix(rows, columns, rowMajor.clone());
+    }
+
+    // wraps without copying, for products computed elsewhere in the package.
+    static DenseDoubleMatrix wrap(int rows, int columns, double[] rowMajor) {
+        return new DenseDoubleMatrix(rows, columns, rowMajor);
+    }
+
+    public static DenseDoubleMatrix identity(int size) {
+        final double[] values = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            values[i * size + i] = 1;
+        }
+        return new DenseDoubleMatrix(size, size, values);
+    }
+
+    public static DenseDoubleMatrix of(Matrix matrix) {
+        return rows(2).columns(2).row(matrix.getLeftTop(), matrix.getRightTop())
+                .row(matrix.getLeftBottom(), matrix.getRightBottom()).make();
+    }
+
+    private final int rows;
+    private final int columns;
+    private final double[] values;
+
+    // factorizations computed on first use; both are immutable, so a race only computes one twice.
+    private volatile LuDecomposition lu;
+    private volatile QrDecomposition qr;
+
+    private DenseDoubleMatrix(int rows, int columns, double[] values) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("size should be positive[" + rows + "x" + columns + "].");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public double get(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + rows + "x" + columns + ".");
+        }
+        return values[row * columns + column];
+    }
+
+    // the backing array itself; callers in the package only read it.
+    double[] values() {
+        return values;
+    }
+
+    public double[] toArray() {
+        return values.clone();
+    }
+
+    public DenseDoubleMatrix transpose() {
+        return new DenseDoubleMatrix(columns, rows, transposed());
+    }
+
+    public DenseDoubleMatrix multiply(DenseDoubleMatrix other) {
+        checkInner(other);
+        final double[] product = new double[rows * other.columns];
+        final MultiplyTask task = new MultiplyTask(values, other.transposed(), product, columns, other.columns, 0, rows);
+        if ((long) rows * columns * other.columns >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return new DenseDoubleMatrix(rows, other.columns, product);
+    }
+
+    public DenseDoubleMatrix strassenMultiply(DenseDoubleMatrix other) {
+        return strassenMultiply(other, STRASSEN_CUTOFF);
+    }
+
+    // Strassen-Winograd for square operands; blocks of cutoff rows or fewer use the blocked kernel.
+    public DenseDoubleMatrix strassenMultiply(DenseDoubleMatrix other, int cutoff) {
+        if (rows != columns || other.rows != rows || other.columns != columns) {
+            throw new IllegalArgumentException("strassenMultiply needs square matrices of the same size, not " +
+                    rows + "x" + columns + " and " + other.rows + "x" + other.columns + ".");
+        }
+        return new DenseDoubleMatrix(rows, rows, DoubleStrassen.multiply(values, other.values, rows, cutoff));
+    }
+
+    // P A = L U, computed once and kept, so getDeterminant, inverse and solve share one factorization.
+    public LuDecomposition lu() {
+        LuDecomposition result = lu;
+        if (result == null) {
+            if (rows != columns) {
+                throw new IllegalArgumentException("LU needs a square matrix, not " + rows + "x" + columns + ".");
+            }
+            lu = result = LuDecomposition.of(rows, values);
+        }
+        return result;
+    }
+
+    public QrDecomposition qr() {
+        QrDecomposition result = qr;
+        if (result == null) {
+            if (rows < columns) {
+                throw new IllegalArgumentException("QR needs at least as many rows as columns, not " + rows + "x" +
+                        columns + ".");
+            }
+            qr = result = QrDecomposition.of(rows, columns, values);
+        }
+        return result;
+    }
+
+    // O(n^3) on the first call and O(1) after, like Matrix#getDeterminant for any square size.
+    public double getDeterminant() {
+        return lu().getDeterminant();
+    }
+
+    public DenseDoubleMatrix inverse() {
+        return lu().inverse();
+    }
+
+    // the textbook triple loop, kept as the baseline of the benchmark.
+    DenseDoubleMatrix naiveMultiply(DenseDoubleMatrix other) {
+        checkInner(other);
+        final double[] product = new double[rows * other.columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < other.columns; j++) {
+                double sum = 0;
+                for (int k = 0; k < columns; k++) {
+                    sum += values[i * columns + k] * other.values[k * other.columns + j];
+                }
+                product[i * other.columns + j] = sum;
+            }
+        }
+        return new DenseDoubleMatrix(rows, other.columns, product);
+    }
+
+    private void checkInner(DenseDoubleMatrix other) {
+        if (columns != other.rows) {
+            throw new IllegalArgumentException("cannot multiply " + rows + "x" + columns + " by " +
+                    other.rows + "x" + other.columns + ".");
+        }
+    }
+
+    private double[] transposed() {
+        final double[] transposed = new double[values.length];
+        for (int ii = 0; ii < rows; ii += BLOCK) {
+            for (int jj = 0; jj < columns; jj += BLOCK) {
+                for (int i = ii; i < Math.min(ii + BLOCK, rows); i++) {
+                    for (int j = jj; j < Math.min(jj + BLOCK, columns); j++) {
+                        transposed[j * rows + i] = values[i * columns + j];
+                    }
+                }
+            }
+        }
+        return transposed;
+    }
+
+    // adds left[from, to) * transposed^T into product, tile by tile.
+    static void multiplyRows(double[] left, double[] transposed, double[] product, int inner, int columns,
+                             int from, int to) {
+        for (int jj = 0; jj < columns; jj += BLOCK) {
+            final int jEnd = Math.min(jj + BLOCK, columns);
+            for (int kk = 0; kk < inner; kk += BLOCK) {
+                final int kEnd = Math.min(kk + BLOCK, inner);
+                for (int i = from; i < to; i++) {
+                    final int row = i * inner;
+                    for (int j = jj; j < jEnd; j++) {
+                        final int column = j * inner;
+                        double sum = 0;
+                        for (int k = kk; k < kEnd; k++) {
+                            sum += left[row + k] * transposed[column + k];
+                        }
+                        product[i * columns + j] += sum;
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class MultiplyTask extends RecursiveAction {
+        private final double[] left;
+        private final double[] transposed;
+        private final double[] product;
+        private final int inner;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        MultiplyTask(double[] left, double[] transposed, double[] product, int inner, int columns, int from, int to) {
+            this.left = left;
+            this.transposed = transposed;
+            this.product = product;
+            this.inner = inner;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BLOCK || (long) (to - from) * inner * columns < PARALLEL_THRESHOLD) {
+                multiplyRows(left, transposed, product, inner, columns, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new MultiplyTask(left, transposed, product, inner, columns, from, middle),
+                    new MultiplyTask(left, transposed, product, inner, columns, middle, to));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DenseDoubleMatrix)) return false;
+
+        DenseDoubleMatrix that = (DenseDoubleMatrix) o;
+
+        if (rows != that.rows) return false;
+        if (columns != that.columns) return false;
+        return Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = rows;
+        result = 31 * result + columns;
+        result = 31 * result + Arrays.hashCode(values);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            builder.append(i == 0? "|":"|\n|");
+            for (int j = 0; j < columns; j++) {
+                builder.append(j == 0? "":" ").append(String.format("%8.3f", values[i * columns + j]));
+            }
+        }
+        return builder.append('|').toString();
+    }
+
+    private static class Builder implements Filling {
+        private final int rows;
+        private final int columns;
+        private final double[] values;
+        private int filled;
+
+        Builder(int rows, int columns) {
+            if (rows < 1 || columns < 1) {
+                throw new IllegalArgumentException("size should be positive[" + rows + "x" + columns + "].");
+            }
+            this.rows = rows;
+            this.columns = columns;
+            this.values = new double[rows * columns];
+        }
+
+        @Override
+        public Filling row(double... row) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("row should have " + columns + " values[" + row.length + "].");
+            } else if (filled == rows) {
+                throw new IllegalStateException("all " + rows + " rows are already filled.");
+            }
+            System.arraycopy(row, 0, values, filled++ * columns, columns);
+            return this;
+        }
+
+        @Override
+        public DenseDoubleMatrix make() {
+            if (filled != rows) {
+                throw new IllegalStateException("only " + filled + " of " + rows + " rows are filled.");
+            }
+            return new DenseDoubleMatrix(rows, columns, values);
+        }
+    }
+
+    public interface Columns {
+        public Filling columns(int columns);
+    }
+
+    public interface Filling {
+        public Filling row(double... row);
+
+        public DenseDoubleMatrix make();
+    }
+}
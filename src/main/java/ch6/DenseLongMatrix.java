@@ -0,0 +1,379 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable dense matrix of longs in a flat row-major array. {@link #multiply(DenseLongMatrix)} transposes
+ * the right operand so both inner loops walk memory sequentially, works in BLOCK &times; BLOCK tiles that stay in
+ * cache while they are reused, and splits the rows of the product over the common fork/join pool for large sizes.
+ * Products wrap on overflow like {@link Matrix#multiply(Matrix)}.
+ */
+public final class DenseLongMatrix {
+
+    static final int BLOCK = 64;
+
+    // multiply-adds below which forking costs more than it saves.
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    // crossover of strassenMultiply below which the blocked kernel is faster; see DenseMatrixTest.Benchmark.
+    public static final int STRASSEN_CUTOFF = 64;
+
+    public static Columns rows(int rows) {
+        return columns -> new Builder(rows, columns);
+    }
+
+    public static DenseLongMatrix of(int rows, int columns, long[] rowMajor) {
+        if (rowMajor.length != (long) rows * columns) {
+            throw new IllegalArgumentException("needs " + rows + "x" + columns + " values[" + rowMajor.length + "].");
+        }
+        return new DenseLongMatrix(rows, columns, rowMajor.clone());
+    }
+
+    public static DenseLongMatrix identity(int size) {
+        final long[] values = new long[size * size];
+        for (int i = 0; i < size; i++) {
+            values[i * size + i] = 1;
+        }
+        return new DenseLongMatrix(size, size, values);
+    }
+
+    public static DenseLongMatrix of(Matrix matrix) {
+        return rows(2).columns(2).row(matrix.getLeftTop(), matrix.getRightTop())
+                .row(matrix.getLeftBottom(), matrix.getRightBottom()).make();
+    }
+
+    private final int rows;
+    private final int columns;
+    private final long[] values;
+
+    // computed on first use; BigInteger is immutable, so a race only computes it twice.
+    private volatile BigInteger determinant;
+
+    private DenseLongMatrix(int rows, int columns, long[] values) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("size should be positive[" + rows + "x" + columns + "].");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public long get(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + rows + "x" + columns + ".");
+        }
+        return values[row * columns + column];
+    }
+
+    public long[] toArray() {
+        return values.clone();
+    }
+
+    public DenseLongMatrix transpose() {
+        return new DenseLongMatrix(columns, rows, transposed());
+    }
+
+    public DenseLongMatrix multiply(DenseLongMatrix other) {
+        checkInner(other);
+        final long[] product = new long[rows * other.columns];
+        final MultiplyTask task = new MultiplyTask(values, other.transposed(), product, columns, other.columns, 0, rows);
+        if ((long) rows * columns * other.columns >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return new DenseLongMatrix(rows, other.columns, product);
+    }
+
+    public DenseLongMatrix strassenMultiply(DenseLongMatrix other) {
+        return strassenMultiply(other, STRASSEN_CUTOFF);
+    }
+
+    // Strassen-Winograd for square operands; blocks of cutoff rows or fewer use the blocked kernel.
+    public DenseLongMatrix strassenMultiply(DenseLongMatrix other, int cutoff) {
+        if (rows != columns || other.rows != rows || other.columns != columns) {
+            throw new IllegalArgumentException("strassenMultiply needs square matrices of the same size, not " +
+                    rows + "x" + columns + " and " + other.rows + "x" + other.columns + ".");
+        }
+        return new DenseLongMatrix(rows, rows, LongStrassen.multiply(values, other.values, rows, cutoff));
+    }
+
+    // exact, by fraction-free Bareiss elimination; O(n^3) on the first call and O(1) after.
+    public BigInteger getDeterminant() {
+        BigInteger result = determinant;
+        if (result == null) {
+            if (rows != columns) {
+                throw new IllegalArgumentException("determinant needs a square matrix, not " + rows + "x" + columns + ".");
+            }
+            try {
+                result = BigInteger.valueOf(bareiss(values.clone(), rows));
+            } catch (ArithmeticException overflow) {
+                result = bigBareiss(values, rows);
+            }
+            determinant = result;
+        }
+        return result;
+    }
+
+    // every entry after step k is a k+1 minor of the matrix and each division is exact, so nothing is rounded;
+    // throws ArithmeticException once an intermediate product leaves the range of long.
+    static long bareiss(long[] a, int size) {
+        long sign = 1;
+        long previous = 1;
+        for (int k = 0; k < size - 1; k++) {
+            if (a[k * size + k] == 0) {
+                int p = k + 1;
+                while (p < size && a[p * size + k] == 0) p++;
+                if (p == size) return 0;
+                swapRows(a, size, p, k);
+                sign = -sign;
+            }
+            final long pivot = a[k * size + k];
+            for (int i = k + 1; i < size; i++) {
+                final long factor = a[i * size + k];
+                for (int j = k + 1; j < size; j++) {
+                    final long numerator = Math.subtractExact(Math.multiplyExact(pivot, a[i * size + j]),
+                            Math.multiplyExact(factor, a[k * size + j]));
+                    // MIN_VALUE / -1 wraps instead of throwing.
+                    a[i * size + j] = previous == -1? Math.negateExact(numerator):numerator / previous;
+                }
+            }
+            previous = pivot;
+        }
+        return Math.multiplyExact(sign, a[size * size - 1]);
+    }
+
+    static BigInteger bigBareiss(long[] values, int size) {
+        final BigInteger[] a = new BigInteger[values.length];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = BigInteger.valueOf(values[i]);
+        }
+        boolean negate = false;
+        BigInteger previous = BigInteger.ONE;
+        for (int k = 0; k < size - 1; k++) {
+            if (a[k * size + k].signum() == 0) {
+                int p = k + 1;
+                while (p < size && a[p * size + k].signum() == 0) p++;
+                if (p == size) return BigInteger.ZERO;
+                for (int c = 0; c < size; c++) {
+                    final BigInteger swap = a[p * size + c];
+                    a[p * size + c] = a[k * size + c];
+                    a[k * size + c] = swap;
+                }
+                negate = !negate;
+            }
+            final BigInteger pivot = a[k * size + k];
+            for (int i = k + 1; i < size; i++) {
+                final BigInteger factor = a[i * size + k];
+                for (int j = k + 1; j < size; j++) {
+                    a[i * size + j] = pivot.multiply(a[i * size + j]).subtract(factor.multiply(a[k * size + j]))
+                            .divide(previous);
+                }
+            }
+            previous = pivot;
+        }
+        return negate? a[size * size - 1].negate():a[size * size - 1];
+    }
+
+    private static void swapRows(long[] a, int size, int p, int q) {
+        for (int c = 0; c < size; c++) {
+            final long swap = a[p * size + c];
+            a[p * size + c] = a[q * size + c];
+            a[q * size + c] = swap;
+        }
+    }
+
+    // the textbook triple loop, kept as the baseline of the benchmark.
+    DenseLongMatrix naiveMultiply(DenseLongMatrix other) {
+        checkInner(other);
+        final long[] product = new long[rows * other.columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < other.columns; j++) {
+                long sum = 0;
+                for (int k = 0; k < columns; k++) {
+                    sum += values[i * columns + k] * other.values[k * other.columns + j];
+                }
+                product[i * other.columns + j] = sum;
+            }
+        }
+        return new DenseLongMatrix(rows, other.columns, product);
+    }
+
+    private void checkInner(DenseLongMatrix other) {
+        if (columns != other.rows) {
+            throw new IllegalArgumentException("cannot multiply " + rows + "x" + columns + " by " +
+                    other.rows + "x" + other.columns + ".");
+        }
+    }
+
+    private long[] transposed() {
+        final long[] transposed = new long[values.length];
+        for (int ii = 0; ii < rows; ii += BLOCK) {
+            for (int jj = 0; jj < columns; jj += BLOCK) {
+                for (int i = ii; i < Math.min(ii + BLOCK, rows); i++) {
+                    for (int j = jj; j < Math.min(jj + BLOCK, columns); j++) {
+                        transposed[j * rows + i] = values[i * columns + j];
+                    }
+                }
+            }
+        }
+        return transposed;
+    }
+
+    // adds left[from, to) * transposed^T into product, tile by tile.
+    static void multiplyRows(long[] left, long[] transposed, long[] product, int inner, int columns,
+                             int from, int to) {
+        for (int jj = 0; jj < columns; jj += BLOCK) {
+            final int jEnd = Math.min(jj + BLOCK, columns);
+            for (int kk = 0; kk < inner; kk += BLOCK) {
+                final int kEnd = Math.min(kk + BLOCK, inner);
+                for (int i = from; i < to; i++) {
+                    final int row = i * inner;
+                    for (int j = jj; j < jEnd; j++) {
+                        final int column = j * inner;
+                        long sum = 0;
+                        for (int k = kk; k < kEnd; k++) {
+                            sum += left[row + k] * transposed[column + k];
+                        }
+                        product[i * columns + j] += sum;
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class MultiplyTask extends RecursiveAction {
+        private final long[] left;
+        private final long[] transposed;
+        private final long[] product;
+        private final int inner;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        MultiplyTask(long[] left, long[] transposed, long[] product, int inner, int columns, int from, int to) {
+            this.left = left;
+            this.transposed = transposed;
+            this.product = product;
+            this.inner = inner;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BLOCK || (long) (to - from) * inner * columns < PARALLEL_THRESHOLD) {
+                multiplyRows(left, transposed, product, inner, columns, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new MultiplyTask(left, transposed, product, inner, columns, from, middle),
+                    new MultiplyTask(left, transposed, product, inner, columns, middle, to));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DenseLongMatrix)) return false;
+
+        DenseLongMatrix that = (DenseLongMatrix) o;
+
+        if (rows != that.rows) return false;
+        if (columns != that.columns) return false;
+        return Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = rows;
+        result = 31 * result + columns;
+        result = 31 * result + Arrays.hashCode(values);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            builder.append(i == 0? "|":"|\n|");
+            for (int j = 0; j < columns; j++) {
+                builder.append(j == 0? "":" ").append(String.format("%4d", values[i * columns + j]));
+            }
+        }
+        return builder.append('|').toString();
+    }
+
+    private static class Builder implements Filling {
+        private final int rows;
+        private final int columns;
+        private final long[] values;
+        private int filled;
+
+        Builder(int rows, int columns) {
+            if (rows < 1 || columns < 1) {
+                throw new IllegalArgumentException("size should be positive[" + rows + "x" + columns + "].");
+            }
+            this.rows = rows;
+            this.columns = columns;
+            this.values = new long[rows * columns];
+        }
+
+        @Override
+        public Filling row(long... row) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("row should have " + columns + " values[" + row.length + "].");
+            } else if (filled == rows) {
+                throw new IllegalStateException("all " + rows + " rows are already filled.");
+            }
+            System.arraycopy(row, 0, values, filled++ * columns, columns);
+            return this;
+        }
+
+        @Override
+        public DenseLongMatrix make() {
+            if (filled != rows) {
+                throw new IllegalStateException("only " + filled + " of " + rows + " rows are filled.");
+            }
+            return new DenseLongMatrix(rows, columns, values);
+        }
+    }
+
+    public interface Columns {
+        public Filling columns(int columns);
+    }
+
+    public interface Filling {
+        public Filling row(long... row);
+
+        public DenseLongMatrix make();
+    }
+}
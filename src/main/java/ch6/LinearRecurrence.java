@@ -0,0 +1,297 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Terms of a linear recurrence a(n) = c[0] a(n - 1) + c[1] a(n - 2) + ... + c[k - 1] a(n - k) in O(k^2 log n)
+ * by Kitamasa's method: x^n is reduced modulo the characteristic polynomial, and its k coefficients weight the
+ * initial terms. Terms come as checked long (overflow throws {@link ArithmeticException}), modulo a positive
+ * long, or as BigInteger. Fibonacci numbers have dedicated fast doubling methods.
+ */
+public final class LinearRecurrence {
+
+    public static LinearRecurrence of(long[] coefficients, long[] initial) {
+        if (coefficients.length == 0 || coefficients.length != initial.length) {
+            throw new IllegalArgumentException("needs as many initial terms as coefficients[" + coefficients.length +
+                    ", " + initial.length + "].");
+        }
+        return new LinearRecurrence(coefficients.clone(), initial.clone());
+    }
+
+    // F(2k) = F(k) (2 F(k + 1) - F(k)), F(2k + 1) = F(k)^2 + F(k + 1)^2. The last step skips the term after F(n),
+    // which may not fit even when F(n) does.
+    public static long fibonacci(long n) {
+        checkIndex(n);
+        long current = 0;
+        long next = 1;
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            final boolean odd = (n >>> bit & 1) != 0;
+            final long doubled = Math.multiplyExact(current, Math.subtractExact(Math.multiplyExact(2, next), current));
+            if (bit == 0 && !odd) {
+                return doubled;
+            }
+            final long doubledNext = Math.addExact(Math.multiplyExact(current, current), Math.multiplyExact(next, next));
+            if (bit == 0) {
+                return doubledNext;
+            }
+            current = odd? doubledNext:doubled;
+            next = odd? Math.addExact(doubled, doubledNext):doubledNext;
+        }
+        return current;
+    }
+
+    public static long fibonacci(long n, long modulus) {
+        checkIndex(n);
+        checkModulus(modulus);
+        long current = 0;
+        long next = 1 % modulus;
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            long twice = addMod(next, next, modulus) - current;
+            if (twice < 0) {
+                twice += modulus;
+            }
+            final long doubled = multiplyMod(current, twice, modulus);
+            final long doubledNext = addMod(multiplyMod(current, current, modulus), multiplyMod(next, next, modulus), modulus);
+            if ((n >>> bit & 1) == 0) {
+                current = doubled;
+                next = doubledNext;
+            } else {
+                current = doubledNext;
+                next = addMod(doubled, doubledNext, modulus);
+            }
+        }
+        return current;
+    }
+
+    public static BigInteger bigFibonacci(long n) {
+        checkIndex(n);
+        BigInteger current = BigInteger.ZERO;
+        BigInteger next = BigInteger.ONE;
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            final BigInteger doubled = current.multiply(next.shiftLeft(1).subtract(current));
+            final BigInteger doubledNext = current.multiply(current).add(next.multiply(next));
+            if ((n >>> bit & 1) == 0) {
+                current = doubled;
+                next = doubledNext;
+            } else {
+                current = doubledNext;
+                next = doubled.add(doubledNext);
+            }
+        }
+        return current;
+    }
+
+    private final long[] coefficients;
+    private final long[] initial;
+
+    private LinearRecurrence(long[] coefficients, long[] initial) {
+        this.coefficients = coefficients;
+        this.initial = initial;
+    }
+
+    public int order() {
+        return coefficients.length;
+    }
+
+    public long term(long n) {
+        return term(n, Exact.INSTANCE, coefficients, initial);
+    }
+
+    public long term(long n, long modulus) {
+        checkModulus(modulus);
+        final long[] c = new long[coefficients.length];
+        final long[] a = new long[initial.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = Math.floorMod(coefficients[i], modulus);
+            a[i] = Math.floorMod(initial[i], modulus);
+        }
+        return term(n, new Modular(modulus), c, a);
+    }
+
+    public BigInteger bigTerm(long n) {
+        checkIndex(n);
+        final int k = coefficients.length;
+        if (n < k) {
+            return BigInteger.valueOf(initial[(int) n]);
+        }
+        final BigInteger[] c = new BigInteger[k];
+        for (int i = 0; i < k; i++) {
+            c[i] = BigInteger.valueOf(coefficients[i]);
+        }
+        BigInteger[] d = new BigInteger[k];
+        Arrays.fill(d, BigInteger.ZERO);
+        d[0] = BigInteger.ONE;
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            final BigInteger[] product = new BigInteger[2 * k - 1];
+            Arrays.fill(product, BigInteger.ZERO);
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    product[i + j] = product[i + j].add(d[i].multiply(d[j]));
+                }
+            }
+            for (int t = 2 * k - 2; t >= k; t--) {
+                for (int j = 0; j < k; j++) {
+                    product[t - k + j] = product[t - k + j].add(product[t].multiply(c[k - 1 - j]));
+                }
+            }
+            d = Arrays.copyOf(product, k);
+            if ((n >>> bit & 1) != 0) {
+                final BigInteger top = d[k - 1];
+                for (int j = k - 1; j > 0; j--) {
+                    d[j] = d[j - 1].add(top.multiply(c[k - 1 - j]));
+                }
+                d[0] = top.multiply(c[k - 1]);
+            }
+        }
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; i < k; i++) {
+            sum = sum.add(d[i].multiply(BigInteger.valueOf(initial[i])));
+        }
+        return sum;
+    }
+
+    // d holds x^m mod f, where f(x) = x^k - c[0] x^(k-1) - ... - c[k-1], so that a(m) = sum d[i] a(i).
+    // Each bit of n squares d, then multiplies it by x when the bit is set.
+    private static long term(long n, Ring ring, long[] c, long[] a) {
+        checkIndex(n);
+        final int k = c.length;
+        if (n < k) {
+            return a[(int) n];
+        }
+        long[] d = new long[k];
+        long[] product = new long[2 * k - 1];
+        d[0] = ring.one();
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            Arrays.fill(product, 0L);
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    product[i + j] = ring.add(product[i + j], ring.multiply(d[i], d[j]));
+                }
+            }
+            for (int t = 2 * k - 2; t >= k; t--) {
+                for (int j = 0; j < k; j++) {
+                    product[t - k + j] = ring.add(product[t - k + j], ring.multiply(product[t], c[k - 1 - j]));
+                }
+            }
+            System.arraycopy(product, 0, d, 0, k);
+            if ((n >>> bit & 1) != 0) {
+                final long top = d[k - 1];
+                for (int j = k - 1; j > 0; j--) {
+                    d[j] = ring.add(d[j - 1], ring.multiply(top, c[k - 1 - j]));
+                }
+                d[0] = ring.multiply(top, c[k - 1]);
+            }
+        }
+        long sum = 0;
+        for (int i = 0; i < k; i++) {
+            sum = ring.add(sum, ring.multiply(d[i], a[i]));
+        }
+        return sum;
+    }
+
+    private static void checkIndex(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("index should not be negative[" + n + "].");
+        }
+    }
+
+    private static void checkModulus(long modulus) {
+        if (modulus < 1) {
+            throw new IllegalArgumentException("modulus should be positive[" + modulus + "].");
+        }
+    }
+
+    // operands in [0, modulus).
+    static long addMod(long left, long right, long modulus) {
+        final long sum = left - (modulus - right);
+        return sum < 0? sum + modulus:sum;
+    }
+
+    // operands in [0, modulus). Products that may not fit in long are built by doubling and adding.
+    static long multiplyMod(long left, long right, long modulus) {
+        if (((left | right) >>> 31) == 0) {
+            return left * right % modulus;
+        }
+        long result = 0;
+        long base = left;
+        for (long rest = right; rest != 0; rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                result = addMod(result, base, modulus);
+            }
+            base = addMod(base, base, modulus);
+        }
+        return result;
+    }
+
+    private interface Ring {
+        long one();
+
+        long add(long left, long right);
+
+        long multiply(long left, long right);
+    }
+
+    private enum Exact implements Ring {
+        INSTANCE;
+
+        @Override
+        public long one() {
+            return 1L;
+        }
+
+        @Override
+        public long add(long left, long right) {
+            return Math.addExact(left, right);
+        }
+
+        @Override
+        public long multiply(long left, long right) {
+            return Math.multiplyExact(left, right);
+        }
+    }
+
+    private static class Modular implements Ring {
+        private final long modulus;
+
+        Modular(long modulus) {
+            this.modulus = modulus;
+        }
+
+        @Override
+        public long one() {
+            return 1 % modulus;
+        }
+
+        @Override
+        public long add(long left, long right) {
+            return addMod(left, right, modulus);
+        }
+
+        @Override
+        public long multiply(long left, long right) {
+            return multiplyMod(left, right, modulus);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LinearRecurrence[coefficients=" + Arrays.toString(coefficients) +
+                ", initial=" + Arrays.toString(initial) + "]";
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+/**
+ * 2x2 matrix of long entries. Unlike {@link Matrix}, arithmetic is exact: an entry that leaves long throws
+ * {@link ArithmeticException} instead of wrapping, so {@code power(91)} of the Fibonacci matrix, which holds
+ * F(92), is the last power that returns. {@link ModMatrix} reaches any power modulo a number.
+ */
+public final class LongMatrix {
+
+    private final long leftTop; private final long rightTop;
+
+    private final long leftBottom; private final long rightBottom;
+
+    private LongMatrix(long leftTop, long rightTop, long leftBottom, long rightBottom) {
+        this.leftTop = leftTop;
+        this.rightTop = rightTop;
+        this.leftBottom = leftBottom;
+        this.rightBottom = rightBottom;
+    }
+
+    public static LongMatrix of(Matrix matrix) {
+        return new LongMatrix(matrix.getLeftTop(), matrix.getRightTop(), matrix.getLeftBottom(), matrix.getRightBottom());
+    }
+
+    public long getDeterminant() {
+        return Math.subtractExact(Math.multiplyExact(leftTop, rightBottom), Math.multiplyExact(leftBottom, rightTop));
+    }
+
+    public LongMatrix multiply(LongMatrix o) {
+        return new LongMatrix(dot(leftTop, o.leftTop, rightTop, o.leftBottom), dot(leftTop, o.rightTop, rightTop, o.rightBottom),
+                dot(leftBottom, o.leftTop, rightBottom, o.leftBottom), dot(leftBottom, o.rightTop, rightBottom, o.rightBottom));
+    }
+
+    // squares the base only while bits remain, so a result that fits never fails on an unused square.
+    public LongMatrix power(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("exponent should not be negative[" + n + "].");
+        }
+        LongMatrix result = new LongMatrix(1, 0, 0, 1);
+        LongMatrix base = this;
+        for (long rest = n; rest != 0; rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                result = result.multiply(base);
+            }
+            if (rest > 1) {
+                base = base.multiply(base);
+            }
+        }
+        return result;
+    }
+
+    public ModMatrix mod(long modulus) {
+        return ModMatrix.modulus(modulus).leftTop(leftTop).rightTop(rightTop).leftBottom(leftBottom).rightBottom(rightBottom).make();
+    }
+
+    private static long dot(long a, long b, long c, long d) {
+        return Math.addExact(Math.multiplyExact(a, b), Math.multiplyExact(c, d));
+    }
+
+    public long getLeftTop() {
+        return leftTop;
+    }
+
+    public long getRightTop() {
+        return rightTop;
+    }
+
+    public long getLeftBottom() {
+        return leftBottom;
+    }
+
+    public long getRightBottom() {
+        return rightBottom;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LongMatrix)) return false;
+        final LongMatrix that = (LongMatrix) o;
+        return leftTop == that.leftTop && rightTop == that.rightTop &&
+                leftBottom == that.leftBottom && rightBottom == that.rightBottom;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(leftTop);
+        result = 31 * result + Long.hashCode(rightTop);
+        result = 31 * result + Long.hashCode(leftBottom);
+        return 31 * result + Long.hashCode(rightBottom);
+    }
+
+    @Override
+    public String toString() {
+        return "|" + String.format("%4d", leftTop) + " " + String.format("%4d", rightTop) + "|\n" +
+                "|" + String.format("%4d", leftBottom) + " " + String.format("%4d", rightBottom) + "|";
+    }
+
+    private static class MatrixBuilder implements LeftTop, RightTop, LeftBottom, RightBottom {
+
+        private long lt; private long rt;
+        private long lb; private long rb;
+
+        MatrixBuilder(long lt) {
+            this.lt = lt;
+        }
+
+        @Override
+        public RightTop rightTop(long rt) {
+            this.rt = rt;
+            return this;
+        }
+
+        @Override
+        public LeftBottom leftBottom(long lb) {
+            this.lb = lb;
+            return this;
+        }
+
+        @Override
+        public RightBottom rightBottom(long rb) {
+            this.rb = rb;
+            return this;
+        }
+
+        @Override
+        public LongMatrix make() {
+            return new LongMatrix(lt, rt, lb, rb);
+        }
+    }
+
+    public static LeftTop leftTop(long lt) {
+        return new MatrixBuilder(lt);
+    }
+
+    public interface LeftTop {
+        public RightTop rightTop(long rt);
+    }
+
+    public interface RightTop {
+        public LeftBottom leftBottom(long lb);
+    }
+
+    public interface LeftBottom {
+        public RightBottom rightBottom(long rb);
+    }
+
+    public interface RightBottom {
+        public LongMatrix make();
+    }
+}
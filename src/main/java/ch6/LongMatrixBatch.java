@@ -0,0 +1,347 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * N independent 2x2 long matrices as a structure of arrays: one array per entry, so element i is
+ * {@code (leftTop[i], rightTop[i], leftBottom[i], rightBottom[i])}. Operations run over the whole batch in plain
+ * indexed loops the JIT can vectorize, allocate no per-matrix objects, and split large batches over fork/join.
+ * Arithmetic wraps like {@link MatrixBatch}, unlike the checked {@link LongMatrix}, so the loops stay
+ * vectorizable. A target batch may be one of the operands.
+ */
+public final class LongMatrixBatch {
+
+    // elements below which a batch runs on the calling thread.
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    // elements per pass of multiply and power, small enough that the working set stays in cache.
+    private static final int BLOCK = 1 << 10;
+
+    private final long[] leftTop;
+    private final long[] rightTop;
+    private final long[] leftBottom;
+    private final long[] rightBottom;
+
+    private LongMatrixBatch(long[] leftTop, long[] rightTop, long[] leftBottom, long[] rightBottom) {
+        if (rightTop.length != leftTop.length || leftBottom.length != leftTop.length || rightBottom.length != leftTop.length) {
+            throw new IllegalArgumentException("entry arrays should have the same length[" + leftTop.length + ", " +
+                    rightTop.length + ", " + leftBottom.length + ", " + rightBottom.length + "].");
+        }
+        this.leftTop = leftTop;
+        this.rightTop = rightTop;
+        this.leftBottom = leftBottom;
+        this.rightBottom = rightBottom;
+    }
+
+    public LongMatrixBatch(int size) {
+        this(new long[size], new long[size], new long[size], new long[size]);
+    }
+
+    // wraps the arrays without copying; the batch reads and writes them.
+    public static LongMatrixBatch wrap(long[] leftTop, long[] rightTop, long[] leftBottom, long[] rightBottom) {
+        return new LongMatrixBatch(leftTop, rightTop, leftBottom, rightBottom);
+    }
+
+    public static LongMatrixBatch of(LongMatrix... matrices) {
+        final LongMatrixBatch batch = new LongMatrixBatch(matrices.length);
+        for (int i = 0; i < matrices.length; i++) {
+            batch.set(i, matrices[i]);
+        }
+        return batch;
+    }
+
+    public int size() {
+        return leftTop.length;
+    }
+
+    public LongMatrix get(int index) {
+        return LongMatrix.leftTop(leftTop[index]).rightTop(rightTop[index])
+                .leftBottom(leftBottom[index]).rightBottom(rightBottom[index]).make();
+    }
+
+    public void set(int index, LongMatrix matrix) {
+        leftTop[index] = matrix.getLeftTop();
+        rightTop[index] = matrix.getRightTop();
+        leftBottom[index] = matrix.getLeftBottom();
+        rightBottom[index] = matrix.getRightBottom();
+    }
+
+    public long[] leftTop() {
+        return leftTop;
+    }
+
+    public long[] rightTop() {
+        return rightTop;
+    }
+
+    public long[] leftBottom() {
+        return leftBottom;
+    }
+
+    public long[] rightBottom() {
+        return rightBottom;
+    }
+
+    public LongMatrixBatch multiply(LongMatrixBatch other) {
+        final LongMatrixBatch target = new LongMatrixBatch(size());
+        multiply(other, target);
+        return target;
+    }
+
+    // target[i] = this[i] * other[i]; a target sharing arrays with an operand goes through a temporary batch.
+    public void multiply(LongMatrixBatch other, LongMatrixBatch target) {
+        checkSize(other);
+        checkSize(target);
+        final LongMatrixBatch product = target.shares(this) || target.shares(other)? new LongMatrixBatch(size()):target;
+        run((from, to) -> multiply(this, other, product, from, to));
+        if (product != target) {
+            run((from, to) -> copy(product, from, target, from, to - from));
+        }
+    }
+
+    public LongMatrixBatch power(long n) {
+        final LongMatrixBatch target = new LongMatrixBatch(size());
+        power(n, target);
+        return target;
+    }
+
+    /**
+     * target[i] = this[i]^n. By Cayley-Hamilton {@code A^2 = tA - dI}, with t the trace and d the determinant, so
+     * every power of A is {@code aA + bI}: squaring the pair (a, b) takes five products and a step by A two, where a
+     * matrix product takes eight. The identity holds in wrapping arithmetic too. The exponent is shared by the batch,
+     * so each of its bits is branched on once per block of BLOCK elements, and the loops over a block have no
+     * branches and one store each, which the JIT vectorizes.
+     */
+    public void power(long n, LongMatrixBatch target) {
+        if (n < 0) {
+            throw new IllegalArgumentException("exponent should not be negative[" + n + "].");
+        }
+        checkSize(target);
+        run((from, to) -> new Powers(Math.min(BLOCK, to - from)).power(this, n, target, from, to));
+    }
+
+    public long[] determinants() {
+        final long[] target = new long[size()];
+        determinants(target);
+        return target;
+    }
+
+    public void determinants(long[] target) {
+        if (target.length != size()) {
+            throw new IllegalArgumentException("target should have " + size() + " values[" + target.length + "].");
+        }
+        run((from, to) -> {
+            final long[] lt = leftTop, rt = rightTop, lb = leftBottom, rb = rightBottom;
+            for (int i = from; i < to; i++) {
+                target[i] = lt[i] * rb[i] - lb[i] * rt[i];
+            }
+        });
+    }
+
+    // one loop per entry of the product: C2 vectorizes a loop of two products and a sum, but not one that
+    // writes all four entries. Blocks keep the operands in cache across the four loops. So target must not share
+    // arrays with the operands.
+    private static void multiply(LongMatrixBatch left, LongMatrixBatch right, LongMatrixBatch target, int from, int to) {
+        for (int start = from; start < to; start += BLOCK) {
+            final int end = Math.min(start + BLOCK, to);
+            dot(left.leftTop, right.leftTop, left.rightTop, right.leftBottom, target.leftTop, start, end);
+            dot(left.leftTop, right.rightTop, left.rightTop, right.rightBottom, target.rightTop, start, end);
+            dot(left.leftBottom, right.leftTop, left.rightBottom, right.leftBottom, target.leftBottom, start, end);
+            dot(left.leftBottom, right.rightTop, left.rightBottom, right.rightBottom, target.rightBottom, start, end);
+        }
+    }
+
+    private static void dot(long[] a, long[] b, long[] c, long[] d, long[] target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            target[i] = a[i] * b[i] + c[i] * d[i];
+        }
+    }
+
+    // block-sized arrays at offset 0: C2 does not vectorize loops whose arrays are indexed with different offsets.
+    private static final class Powers {
+        private final long[] leftTop;
+        private final long[] rightTop;
+        private final long[] leftBottom;
+        private final long[] rightBottom;
+        private final long[] trace;
+        private final long[] determinant;
+        private long[] a;
+        private long[] b;
+        private long[] scratch;
+
+        Powers(int block) {
+            leftTop = new long[block];
+            rightTop = new long[block];
+            leftBottom = new long[block];
+            rightBottom = new long[block];
+            trace = new long[block];
+            determinant = new long[block];
+            a = new long[block];
+            b = new long[block];
+            scratch = new long[block];
+        }
+
+        // reads each block before writing it back, so target may be source.
+        void power(LongMatrixBatch source, long n, LongMatrixBatch target, int from, int to) {
+            for (int start = from; start < to; start += BLOCK) {
+                final int length = Math.min(BLOCK, to - start);
+                copy(source, start, this, length);
+                if (n == 0) {
+                    Arrays.fill(a, 0, length, 0);
+                    Arrays.fill(b, 0, length, 1);
+                } else {
+                    prepare(length);
+                    // A^1 = 1A + 0I; each further bit squares, and a set bit steps once more by A.
+                    for (int bit = 62 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+                        square(length);
+                        if ((n >>> bit & 1) != 0) {
+                            step(length);
+                        }
+                    }
+                }
+                combine(length);
+                System.arraycopy(leftTop, 0, target.leftTop, start, length);
+                System.arraycopy(rightTop, 0, target.rightTop, start, length);
+                System.arraycopy(leftBottom, 0, target.leftBottom, start, length);
+                System.arraycopy(rightBottom, 0, target.rightBottom, start, length);
+            }
+        }
+
+        private static void copy(LongMatrixBatch source, int start, Powers block, int length) {
+            System.arraycopy(source.leftTop, start, block.leftTop, 0, length);
+            System.arraycopy(source.rightTop, start, block.rightTop, 0, length);
+            System.arraycopy(source.leftBottom, start, block.leftBottom, 0, length);
+            System.arraycopy(source.rightBottom, start, block.rightBottom, 0, length);
+        }
+
+        private void prepare(int length) {
+            final long[] lt = leftTop, rt = rightTop, lb = leftBottom, rb = rightBottom, t = trace, d = determinant;
+            for (int i = 0; i < length; i++) {
+                t[i] = lt[i] + rb[i];
+            }
+            for (int i = 0; i < length; i++) {
+                d[i] = lt[i] * rb[i] - lb[i] * rt[i];
+            }
+            Arrays.fill(a, 0, length, 1);
+            Arrays.fill(b, 0, length, 0);
+        }
+
+        // (aA + bI)^2 = (a^2 t + 2ab) A + (b^2 - a^2 d) I.
+        private void square(int length) {
+            final long[] x = a, y = b, s = scratch, t = trace, d = determinant;
+            for (int i = 0; i < length; i++) {
+                s[i] = x[i] * (x[i] * t[i] + 2 * y[i]);
+            }
+            for (int i = 0; i < length; i++) {
+                y[i] = y[i] * y[i] - x[i] * x[i] * d[i];
+            }
+            scratch = x;
+            a = s;
+        }
+
+        // (aA + bI) A = (at + b) A - ad I.
+        private void step(int length) {
+            final long[] x = a, y = b, s = scratch, t = trace, d = determinant;
+            for (int i = 0; i < length; i++) {
+                s[i] = x[i] * t[i] + y[i];
+            }
+            for (int i = 0; i < length; i++) {
+                y[i] = -x[i] * d[i];
+            }
+            scratch = x;
+            a = s;
+        }
+
+        private void combine(int length) {
+            final long[] lt = leftTop, rt = rightTop, lb = leftBottom, rb = rightBottom, x = a, y = b;
+            for (int i = 0; i < length; i++) {
+                lt[i] = x[i] * lt[i] + y[i];
+            }
+            for (int i = 0; i < length; i++) {
+                rt[i] = x[i] * rt[i];
+            }
+            for (int i = 0; i < length; i++) {
+                lb[i] = x[i] * lb[i];
+            }
+            for (int i = 0; i < length; i++) {
+                rb[i] = x[i] * rb[i] + y[i];
+            }
+        }
+    }
+
+    private boolean shares(LongMatrixBatch other) {
+        for (long[] mine : new long[][]{leftTop, rightTop, leftBottom, rightBottom}) {
+            if (mine == other.leftTop || mine == other.rightTop || mine == other.leftBottom || mine == other.rightBottom) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void copy(LongMatrixBatch source, int sourceFrom, LongMatrixBatch target, int targetFrom, int length) {
+        System.arraycopy(source.leftTop, sourceFrom, target.leftTop, targetFrom, length);
+        System.arraycopy(source.rightTop, sourceFrom, target.rightTop, targetFrom, length);
+        System.arraycopy(source.leftBottom, sourceFrom, target.leftBottom, targetFrom, length);
+        System.arraycopy(source.rightBottom, sourceFrom, target.rightBottom, targetFrom, length);
+    }
+
+    private void checkSize(LongMatrixBatch other) {
+        if (other.size() != size()) {
+            throw new IllegalArgumentException("batch sizes differ[" + size() + ", " + other.size() + "].");
+        }
+    }
+
+    private void run(Range range) {
+        final RangeTask task = new RangeTask(range, 0, size());
+        if (size() >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Range {
+        void apply(int from, int to);
+    }
+
+    @SuppressWarnings("serial")
+    private static class RangeTask extends RecursiveAction {
+        private final Range range;
+        private final int from;
+        private final int to;
+
+        RangeTask(Range range, int from, int to) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_THRESHOLD) {
+                range.apply(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(range, from, middle), new RangeTask(range, middle, to));
+        }
+    }
+}
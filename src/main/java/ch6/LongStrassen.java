@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Strassen-Winograd multiplication of square long matrices: 7 half-size products and 15 additions per level
+ * instead of 8 products. Blocks are (array, offset, stride) views into row-major arrays. The top level of large
+ * products runs its seven products as fork/join tasks; every level below follows the schedule of Boyer, Dumas,
+ * Pernet and Zhou, which needs only two temporaries per level besides the quadrants of the result, so each
+ * subtree allocates its {@link Workspace} once. Blocks at or below the cutoff go to the blocked kernel of
+ * {@link DenseLongMatrix}. Additions wrap like the kernel, so the result is exactly that of
+ * {@link DenseLongMatrix#multiply(DenseLongMatrix)}.
+ */
+final class LongStrassen {
+
+    private static final int PARALLEL_SIZE = 512;
+
+    private LongStrassen() {}
+
+    // size x size row-major product of two size x size row-major arrays.
+    static long[] multiply(long[] left, long[] right, int size, int cutoff) {
+        if (cutoff < 1) {
+            throw new IllegalArgumentException("cutoff should be positive[" + cutoff + "].");
+        }
+        int leaf = size;
+        int levels = 0;
+        while (leaf > cutoff) {
+            leaf = (leaf + 1) >>> 1;
+            levels++;
+        }
+        final int padded = leaf << levels;
+        final long[] a = pad(left, size, padded);
+        final long[] b = pad(right, size, padded);
+        final long[] c = new long[padded * padded];
+        if (padded >= PARALLEL_SIZE && levels > 0) {
+            parallel(a, b, c, padded, leaf);
+        } else {
+            multiply(a, 0, padded, b, 0, padded, c, 0, padded, padded, new Workspace(padded, leaf), 0);
+        }
+        return padded == size? c:crop(c, padded, size);
+    }
+
+    private static long[] pad(long[] values, int size, int padded) {
+        if (padded == size) {
+            return values;
+        }
+        final long[] result = new long[padded * padded];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(values, i * size, result, i * padded, size);
+        }
+        return result;
+    }
+
+    private static long[] crop(long[] values, int padded, int size) {
+        final long[] result = new long[size * size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(values, i * padded, result, i * size, size);
+        }
+        return result;
+    }
+
+    // temporaries x[level] and y[level] for every level of one sequential subtree, and the buffers of the kernel.
+    static final class Workspace {
+        private final long[][] x;
+        private final long[][] y;
+        private final long[] left;
+        private final long[] transposed;
+        private final long[] product;
+
+        Workspace(int size, int leaf) {
+            int levels = 0;
+            for (int s = size; s > leaf; s >>>= 1) {
+                levels++;
+            }
+            this.x = new long[levels][];
+            this.y = new long[levels][];
+            for (int level = 0, half = size >>> 1; level < levels; level++, half >>>= 1) {
+                x[level] = new long[half * half];
+                y[level] = new long[half * half];
+            }
+            this.left = new long[leaf * leaf];
+            this.transposed = new long[leaf * leaf];
+            this.product = new long[leaf * leaf];
+        }
+    }
+
+    // c = a * b over size x size views.
+    static void multiply(long[] a, int ao, int as, long[] b, int bo, int bs, long[] c, int co, int cs,
+                         int size, Workspace w, int level) {
+        if (level == w.x.length) {
+            kernel(a, ao, as, b, bo, bs, c, co, cs, size, w);
+            return;
+        }
+        final int h = size >>> 1;
+        final int a11 = ao, a12 = ao + h, a21 = ao + h * as, a22 = a21 + h;
+        final int b11 = bo, b12 = bo + h, b21 = bo + h * bs, b22 = b21 + h;
+        final int c11 = co, c12 = co + h, c21 = co + h * cs, c22 = c21 + h;
+        final long[] x = w.x[level];
+        final long[] y = w.y[level];
+        subtract(a, a11, as, a, a21, as, x, 0, h, h);                            // S3 = A11 - A21
+        subtract(b, b22, bs, b, b12, bs, y, 0, h, h);                            // T3 = B22 - B12
+        multiply(x, 0, h, y, 0, h, c, c21, cs, h, w, level + 1);                 // P7 = S3 T3 -> C21
+        add(a, a21, as, a, a22, as, x, 0, h, h);                                 // S1 = A21 + A22
+        subtract(b, b12, bs, b, b11, bs, y, 0, h, h);                            // T1 = B12 - B11
+        multiply(x, 0, h, y, 0, h, c, c22, cs, h, w, level + 1);                 // P5 = S1 T1 -> C22
+        subtract(x, 0, h, a, a11, as, x, 0, h, h);                               // S2 = S1 - A11
+        subtract(b, b22, bs, y, 0, h, y, 0, h, h);                               // T2 = B22 - T1
+        multiply(x, 0, h, y, 0, h, c, c12, cs, h, w, level + 1);                 // P6 = S2 T2 -> C12
+        subtract(a, a12, as, x, 0, h, x, 0, h, h);                               // S4 = A12 - S2
+        multiply(x, 0, h, b, b22, bs, c, c11, cs, h, w, level + 1);              // P3 = S4 B22 -> C11
+        multiply(a, a11, as, b, b11, bs, x, 0, h, h, w, level + 1);              // P1 = A11 B11 -> X
+        add(x, 0, h, c, c12, cs, c, c12, cs, h);                                 // U2 = P1 + P6 -> C12
+        add(c, c12, cs, c, c21, cs, c, c21, cs, h);                              // U3 = U2 + P7 -> C21
+        add(c, c12, cs, c, c22, cs, c, c12, cs, h);                              // U4 = U2 + P5 -> C12
+        add(c, c21, cs, c, c22, cs, c, c22, cs, h);                              // U7 = U3 + P5 -> C22
+        add(c, c12, cs, c, c11, cs, c, c12, cs, h);                              // U5 = U4 + P3 -> C12
+        subtract(y, 0, h, b, b21, bs, y, 0, h, h);                               // T4 = T2 - B21
+        multiply(a, a22, as, y, 0, h, c, c11, cs, h, w, level + 1);              // P4 = A22 T4 -> C11
+        subtract(c, c21, cs, c, c11, cs, c, c21, cs, h);                         // U6 = U3 - P4 -> C21
+        multiply(a, a12, as, b, b21, bs, c, c11, cs, h, w, level + 1);           // P2 = A12 B21 -> C11
+        add(x, 0, h, c, c11, cs, c, c11, cs, h);                                 // U1 = P1 + P2 -> C11
+    }
+
+    // the top level with its seven products in parallel; each needs its own operands and workspace.
+    private static void parallel(long[] a, long[] b, long[] c, int size, int leaf) {
+        final int h = size >>> 1;
+        // quadrant offsets, the same for a, b and c.
+        final int q11 = 0, q12 = h, q21 = h * size, q22 = q21 + h;
+        final long[] s1 = new long[h * h], s2 = new long[h * h], s3 = new long[h * h], s4 = new long[h * h];
+        final long[] t1 = new long[h * h], t2 = new long[h * h], t3 = new long[h * h], t4 = new long[h * h];
+        add(a, q21, size, a, q22, size, s1, 0, h, h);
+        subtract(s1, 0, h, a, q11, size, s2, 0, h, h);
+        subtract(a, q11, size, a, q21, size, s3, 0, h, h);
+        subtract(a, q12, size, s2, 0, h, s4, 0, h, h);
+        subtract(b, q12, size, b, q11, size, t1, 0, h, h);
+        subtract(b, q22, size, t1, 0, h, t2, 0, h, h);
+        subtract(b, q22, size, b, q12, size, t3, 0, h, h);
+        subtract(t2, 0, h, b, q21, size, t4, 0, h, h);
+        final long[] p1 = new long[h * h], p3 = new long[h * h], p4 = new long[h * h];
+        ForkJoinTask.invokeAll(
+                new Product(a, q11, size, b, q11, size, p1, 0, h, h, leaf),      // P1 = A11 B11
+                new Product(a, q12, size, b, q21, size, c, q11, size, h, leaf),  // P2 = A12 B21 -> C11
+                new Product(s4, 0, h, b, q22, size, p3, 0, h, h, leaf),          // P3 = S4 B22
+                new Product(a, q22, size, t4, 0, h, p4, 0, h, h, leaf),          // P4 = A22 T4
+                new Product(s1, 0, h, t1, 0, h, c, q22, size, h, leaf),          // P5 = S1 T1 -> C22
+                new Product(s2, 0, h, t2, 0, h, c, q12, size, h, leaf),          // P6 = S2 T2 -> C12
+                new Product(s3, 0, h, t3, 0, h, c, q21, size, h, leaf));         // P7 = S3 T3 -> C21
+        add(p1, 0, h, c, q11, size, c, q11, size, h);                            // U1 = P1 + P2
+        add(p1, 0, h, c, q12, size, c, q12, size, h);                            // U2 = P1 + P6 -> C12
+        add(c, q12, size, c, q21, size, c, q21, size, h);                        // U3 = U2 + P7 -> C21
+        add(c, q12, size, c, q22, size, c, q12, size, h);                        // U4 = U2 + P5 -> C12
+        add(c, q21, size, c, q22, size, c, q22, size, h);                        // U7 = U3 + P5 -> C22
+        add(c, q12, size, p3, 0, h, c, q12, size, h);                            // U5 = U4 + P3 -> C12
+        subtract(c, q21, size, p4, 0, h, c, q21, size, h);                       // U6 = U3 - P4 -> C21
+    }
+
+    @SuppressWarnings("serial")
+    private static class Product extends RecursiveAction {
+        private final long[] a;
+        private final int ao;
+        private final int as;
+        private final long[] b;
+        private final int bo;
+        private final int bs;
+        private final long[] c;
+        private final int co;
+        private final int cs;
+        private final int size;
+        private final int leaf;
+
+        Product(long[] a, int ao, int as, long[] b, int bo, int bs, long[] c, int co, int cs, int size, int leaf) {
+            this.a = a;
+            this.ao = ao;
+            this.as = as;
+            this.b = b;
+            this.bo = bo;
+            this.bs = bs;
+            this.c = c;
+            this.co = co;
+            this.cs = cs;
+            this.size = size;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected void compute() {
+            multiply(a, ao, as, b, bo, bs, c, co, cs, size, new Workspace(size, leaf), 0);
+        }
+    }
+
+    private static void kernel(long[] a, int ao, int as, long[] b, int bo, int bs, long[] c, int co, int cs,
+                               int size, Workspace w) {
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(a, ao + i * as, w.left, i * size, size);
+            for (int j = 0; j < size; j++) {
+                w.transposed[j * size + i] = b[bo + i * bs + j];
+            }
+        }
+        Arrays.fill(w.product, 0, size * size, 0L);
+        DenseLongMatrix.multiplyRows(w.left, w.transposed, w.product, size, size, 0, size);
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(w.product, i * size, c, co + i * cs, size);
+        }
+    }
+
+    private static void add(long[] a, int ao, int as, long[] b, int bo, int bs, long[] c, int co, int cs, int size) {
+        for (int i = 0; i < size; i++) {
+            final int ar = ao + i * as, br = bo + i * bs, cr = co + i * cs;
+            for (int j = 0; j < size; j++) {
+                c[cr + j] = a[ar + j] + b[br + j];
+            }
+        }
+    }
+
+    private static void subtract(long[] a, int ao, int as, long[] b, int bo, int bs, long[] c, int co, int cs, int size) {
+        for (int i = 0; i < size; i++) {
+            final int ar = ao + i * as, br = bo + i * bs, cr = co + i * cs;
+            for (int j = 0; j < size; j++) {
+                c[cr + j] = a[ar + j] - b[br + j];
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * {@code P A = L U} of a square double matrix by Gaussian elimination with partial pivoting, blocked and
+ * right-looking: each panel of {@link #BLOCK} columns is factored on its own, its rows of U are solved, and the
+ * trailing matrix takes the rank-{@code BLOCK} update {@code A22 -= L21 U12}, which splits over fork/join by rows.
+ * L (unit lower) and U share one row-major array. Obtained from {@link DenseDoubleMatrix#lu()}, which caches it.
+ */
+public final class LuDecomposition {
+
+    static final int BLOCK = 64;
+
+    // multiply-adds of a trailing update below which it runs on the calling thread.
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    private final int size;
+    private final double[] lu;
+    private final int[] pivot;
+    private final boolean singular;
+    private final double determinant;
+
+    private LuDecomposition(int size, double[] lu, int[] pivot, boolean singular, double determinant) {
+        this.size = size;
+        this.lu = lu;
+        this.pivot = pivot;
+        this.singular = singular;
+        this.determinant = determinant;
+    }
+
+    static LuDecomposition of(int size, double[] values) {
+        final double[] a = values.clone();
+        final int[] pivot = new int[size];
+        for (int i = 0; i < size; i++) {
+            pivot[i] = i;
+        }
+        boolean singular = false;
+        int sign = 1;
+        for (int k0 = 0; k0 < size; k0 += BLOCK) {
+            final int k1 = Math.min(k0 + BLOCK, size);
+            // the panel, columns [k0, k1) of all rows from k0, unblocked; row swaps move whole rows.
+            for (int j = k0; j < k1; j++) {
+                int p = j;
+                for (int i = j + 1; i < size; i++) {
+                    if (Math.abs(a[i * size + j]) > Math.abs(a[p * size + j])) p = i;
+                }
+                if (p != j) {
+                    swapRows(a, size, p, j);
+                    final int swap = pivot[p];
+                    pivot[p] = pivot[j];
+                    pivot[j] = swap;
+                    sign = -sign;
+                }
+                final double diagonal = a[j * size + j];
+                if (diagonal == 0) {
+                    singular = true;
+                    continue;
+                }
+                for (int i = j + 1; i < size; i++) {
+                    final double factor = a[i * size + j] /= diagonal;
+                    if (factor == 0) continue;
+                    for (int c = j + 1; c < k1; c++) {
+                        a[i * size + c] -= factor * a[j * size + c];
+                    }
+                }
+            }
+            if (k1 == size) break;
+            // U12 = L11^-1 A12, rows [k0, k1) right of the panel.
+            for (int j = k0; j < k1; j++) {
+                for (int i = j + 1; i < k1; i++) {
+                    final double factor = a[i * size + j];
+                    for (int c = k1; c < size; c++) {
+                        a[i * size + c] -= factor * a[j * size + c];
+                    }
+                }
+            }
+            final Update update = new Update(a, size, k0, k1, k1, size);
+            if ((long) (size - k1) * (size - k1) * (k1 - k0) >= PARALLEL_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(update);
+            } else {
+                update.compute();
+            }
+        }
+        double determinant = singular? 0:sign;
+        for (int i = 0; i < size && !singular; i++) {
+            determinant *= a[i * size + i];
+        }
+        return new LuDecomposition(size, a, pivot, singular, determinant);
+    }
+
+    private static void swapRows(double[] a, int size, int p, int q) {
+        for (int c = 0; c < size; c++) {
+            final double swap = a[p * size + c];
+            a[p * size + c] = a[q * size + c];
+            a[q * size + c] = swap;
+        }
+    }
+
+    // A22 -= L21 U12 for rows [from, to); each row reads only the panel rows, so rows update independently.
+    @SuppressWarnings("serial")
+    private static class Update extends RecursiveAction {
+        private final double[] a;
+        private final int size;
+        private final int k0;
+        private final int k1;
+        private final int from;
+        private final int to;
+
+        Update(double[] a, int size, int k0, int k1, int from, int to) {
+            this.a = a;
+            this.size = size;
+            this.k0 = k0;
+            this.k1 = k1;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (to - from) * (size - k1) * (k1 - k0) < PARALLEL_THRESHOLD || to - from < 2) {
+                for (int i = from; i < to; i++) {
+                    final int row = i * size;
+                    for (int j = k0; j < k1; j++) {
+                        final double factor = a[row + j];
+                        if (factor == 0) continue;
+                        final int panel = j * size;
+                        for (int c = k1; c < size; c++) {
+                            a[row + c] -= factor * a[panel + c];
+                        }
+                    }
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Update(a, size, k0, k1, from, middle), new Update(a, size, k0, k1, middle, to));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isSingular() {
+        return singular;
+    }
+
+    public double getDeterminant() {
+        return determinant;
+    }
+
+    // row i of P A is row pivot[i] of A.
+    public int[] getPivot() {
+        return pivot.clone();
+    }
+
+    public DenseDoubleMatrix getL() {
+        final double[] l = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(lu, i * size, l, i * size, i);
+            l[i * size + i] = 1;
+        }
+        return DenseDoubleMatrix.wrap(size, size, l);
+    }
+
+    public DenseDoubleMatrix getU() {
+        final double[] u = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(lu, i * size + i, u, i * size + i, size - i);
+        }
+        return DenseDoubleMatrix.wrap(size, size, u);
+    }
+
+    public double[] solve(double[] b) {
+        if (b.length != size) {
+            throw new IllegalArgumentException("right hand side should have " + size + " values[" + b.length + "].");
+        }
+        return solve(DenseDoubleMatrix.wrap(size, 1, b)).toArray();
+    }
+
+    // X with A X = B, substituting whole rows of B at a time.
+    public DenseDoubleMatrix solve(DenseDoubleMatrix b) {
+        if (b.rows() != size) {
+            throw new IllegalArgumentException("right hand side should have " + size + " rows[" + b.rows() + "].");
+        } else if (singular) {
+            throw new ArithmeticException("matrix is singular.");
+        }
+        final int width = b.columns();
+        final double[] source = b.values();
+        final double[] x = new double[size * width];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(source, pivot[i] * width, x, i * width, width);
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < i; j++) {
+                final double factor = lu[i * size + j];
+                if (factor == 0) continue;
+                for (int c = 0; c < width; c++) {
+                    x[i * width + c] -= factor * x[j * width + c];
+                }
+            }
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            for (int j = i + 1; j < size; j++) {
+                final double factor = lu[i * size + j];
+                if (factor == 0) continue;
+                for (int c = 0; c < width; c++) {
+                    x[i * width + c] -= factor * x[j * width + c];
+                }
+            }
+            final double diagonal = lu[i * size + i];
+            for (int c = 0; c < width; c++) {
+                x[i * width + c] /= diagonal;
+            }
+        }
+        return DenseDoubleMatrix.wrap(size, width, x);
+    }
+
+    public DenseDoubleMatrix inverse() {
+        return solve(DenseDoubleMatrix.identity(size));
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Matrix of doubles stored in a file and memory-mapped, so its size is bounded by the disk instead of the heap.
+ * The file is tiled; all values are big endian.
+ * <pre>
+ * header : magic "MTRX"(4) | version(4) | rows(4) | columns(4) | tile(4) | zeros up to 64 bytes
+ * tiles  : tile x tile doubles each, row-major inside the tile, tiles in row-major order of the tile grid;
+ *          tiles on the right and bottom edges are padded with zeros to the full tile size
+ * </pre>
+ * Tile (ti, tj) therefore starts at {@code 64 + (ti * tileColumns + tj) * tile * tile * 8}. The file is mapped
+ * in windows of whole tiles below 1 GiB, and {@link #tile(int, int)} hands a tile out as a zero-copy
+ * {@link DoubleBuffer}. {@link #multiply(MappedMatrix, MappedMatrix, Path, int)} computes a product tile by tile
+ * through a bounded pool, so its heap use is a few tiles whatever the size of the matrices.
+ */
+public final class MappedMatrix implements AutoCloseable {
+
+    static final int MAGIC = 0x4D545258;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int rows;
+    private final int columns;
+    private final int tile;
+    private final int tileRows;
+    private final int tileColumns;
+    private final int tilesPerWindow;
+    private final MappedByteBuffer[] maps;
+    private final DoubleBuffer[] windows;
+
+    private MappedMatrix(FileChannel channel, boolean writable, int rows, int columns, int tile) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        this.rows = rows;
+        this.columns = columns;
+        this.tile = tile;
+        this.tileRows = (rows + tile - 1) / tile;
+        this.tileColumns = (columns + tile - 1) / tile;
+        final long tileBytes = 8L * tile * tile;
+        this.tilesPerWindow = (int) Math.max(1, WINDOW / tileBytes);
+        final long tiles = (long) tileRows * tileColumns;
+        this.maps = new MappedByteBuffer[(int) ((tiles + tilesPerWindow - 1) / tilesPerWindow)];
+        this.windows = new DoubleBuffer[maps.length];
+        for (int w = 0; w < maps.length; w++) {
+            final long first = (long) w * tilesPerWindow;
+            final long bytes = Math.min(tilesPerWindow, tiles - first) * tileBytes;
+            maps[w] = channel.map(writable? FileChannel.MapMode.READ_WRITE:FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * tileBytes, bytes);
+            windows[w] = maps[w].order(ORDER).asDoubleBuffer();
+        }
+    }
+
+    // creates or truncates the file; every value starts as zero.
+    public static MappedMatrix create(Path path, int rows, int columns, int tile) throws IOException {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("size should be positive[" + rows + "x" + columns + "].");
+        } else if (tile < 1 || 8L * tile * tile > WINDOW) {
+            throw new IllegalArgumentException("tile should be in [1, " + (int) Math.sqrt(WINDOW / 8) + "][" + tile + "].");
+        }
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).putInt(tile).clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            final long tiles = (long) ((rows + tile - 1) / tile) * ((columns + tile - 1) / tile);
+            channel.write(ByteBuffer.allocate(1), HEADER_SIZE + tiles * 8 * tile * tile - 1);
+            return new MappedMatrix(channel, true, rows, columns, tile);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static MappedMatrix create(Path path, DenseDoubleMatrix matrix, int tile) throws IOException {
+        final MappedMatrix mapped = create(path, matrix.rows(), matrix.columns(), tile);
+        final double[] values = matrix.values();
+        for (int i = 0; i < matrix.rows(); i++) {
+            for (int j = 0; j < matrix.columns(); j++) {
+                mapped.set(i, j, values[i * matrix.columns() + j]);
+            }
+        }
+        return mapped;
+    }
+
+    public static MappedMatrix open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    public static MappedMatrix open(Path path, boolean writable) throws IOException {
+        final FileChannel channel = writable? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                :FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a matrix file.");
+            } else if (header.getInt(4) != VERSION) {
+                throw new IOException("unsupported version[" + header.getInt(4) + "].");
+            }
+            final int rows = header.getInt(8);
+            final int columns = header.getInt(12);
+            final int tile = header.getInt(16);
+            if (rows < 1 || columns < 1 || tile < 1 || 8L * tile * tile > WINDOW) {
+                throw new IOException(path + " has a bad size[" + rows + "x" + columns + ", tile " + tile + "].");
+            }
+            // checked before mapping, which would silently extend a short file opened for writing.
+            final long tiles = (long) ((rows + tile - 1) / tile) * ((columns + tile - 1) / tile);
+            final long tileBytes = 8L * tile * tile;
+            if (tiles > (Long.MAX_VALUE - HEADER_SIZE) / tileBytes || channel.size() != HEADER_SIZE + tiles * tileBytes) {
+                throw new IOException(path + " has " + channel.size() + " bytes, not the length of " + rows + "x" +
+                        columns + " in tiles of " + tile + ".");
+            }
+            return new MappedMatrix(channel, writable, rows, columns, tile);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int tile() {
+        return tile;
+    }
+
+    public int tileRows() {
+        return tileRows;
+    }
+
+    public int tileColumns() {
+        return tileColumns;
+    }
+
+    public double get(int row, int column) {
+        checkIndex(row, column);
+        return window(row / tile, column / tile).get(index(row / tile, column / tile) + (row % tile) * tile + column % tile);
+    }
+
+    public void set(int row, int column, double value) {
+        checkIndex(row, column);
+        window(row / tile, column / tile).put(index(row / tile, column / tile) + (row % tile) * tile + column % tile, value);
+    }
+
+    // tile x tile values of tile (ti, tj), sharing the mapped memory; read-only unless the file was opened writable.
+    public DoubleBuffer tile(int tileRow, int tileColumn) {
+        checkTile(tileRow, tileColumn);
+        final DoubleBuffer view = window(tileRow, tileColumn).duplicate();
+        final int from = index(tileRow, tileColumn);
+        view.limit(from + tile * tile).position(from);
+        return writable? view.slice():view.slice().asReadOnlyBuffer();
+    }
+
+    void readTile(int tileRow, int tileColumn, double[] target) {
+        checkTile(tileRow, tileColumn);
+        final DoubleBuffer view = window(tileRow, tileColumn).duplicate();
+        view.position(index(tileRow, tileColumn));
+        view.get(target, 0, tile * tile);
+    }
+
+    void writeTile(int tileRow, int tileColumn, double[] source) {
+        checkTile(tileRow, tileColumn);
+        final DoubleBuffer view = window(tileRow, tileColumn).duplicate();
+        view.position(index(tileRow, tileColumn));
+        view.put(source, 0, tile * tile);
+    }
+
+    public DenseDoubleMatrix toDense() {
+        final double[] values = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                values[i * columns + j] = get(i, j);
+            }
+        }
+        return DenseDoubleMatrix.wrap(rows, columns, values);
+    }
+
+    /**
+     * Writes {@code left * right} to a new file at target with the tile size of the operands. Tile (i, j) of the
+     * product accumulates {@code left(i, k) * right(k, j)} over k in one heap tile; operand tiles come through an
+     * LRU pool of {@code poolTiles} buffers, at least 2, which keeps the row of left tiles hot while it has room.
+     */
+    public static MappedMatrix multiply(MappedMatrix left, MappedMatrix right, Path target, int poolTiles) throws IOException {
+        if (left.columns != right.rows) {
+            throw new IllegalArgumentException("cannot multiply " + left.rows + "x" + left.columns + " by " +
+                    right.rows + "x" + right.columns + ".");
+        } else if (left.tile != right.tile) {
+            throw new IllegalArgumentException("tile sizes differ[" + left.tile + ", " + right.tile + "].");
+        } else if (poolTiles < 2) {
+            throw new IllegalArgumentException("pool should hold at least 2 tiles[" + poolTiles + "].");
+        }
+        final int tile = left.tile;
+        final MappedMatrix product = create(target, left.rows, right.columns, tile);
+        try {
+            final TilePool pool = new TilePool(poolTiles, tile * tile);
+            final double[] accumulator = new double[tile * tile];
+            for (int ti = 0; ti < product.tileRows; ti++) {
+                for (int tj = 0; tj < product.tileColumns; tj++) {
+                    Arrays.fill(accumulator, 0);
+                    for (int tk = 0; tk < left.tileColumns; tk++) {
+                        final double[] a = pool.get(left, ti, tk);
+                        final double[] b = pool.get(right, tk, tj);
+                        multiplyAdd(a, b, accumulator, tile);
+                    }
+                    product.writeTile(ti, tj, accumulator);
+                }
+            }
+            return product;
+        } catch (RuntimeException e) {
+            product.close();
+            throw e;
+        }
+    }
+
+    // c += a * b for row-major tile x tile arrays, in i-k-j order so the inner loop runs along rows. Zeros are
+    // multiplied like any value, so infinities and NaNs spread as in DenseDoubleMatrix#multiply.
+    private static void multiplyAdd(double[] a, double[] b, double[] c, int tile) {
+        for (int i = 0; i < tile; i++) {
+            final int row = i * tile;
+            for (int k = 0; k < tile; k++) {
+                final double value = a[row + k];
+                final int source = k * tile;
+                for (int j = 0; j < tile; j++) {
+                    c[row + j] += value * b[source + j];
+                }
+            }
+        }
+    }
+
+    // writes changes of a writable file to the disk.
+    public void flush() {
+        if (writable) {
+            for (MappedByteBuffer map : maps) {
+                map.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // the ordinal of a tile is a long: small tiles of a multi-GB file outnumber int.
+    private DoubleBuffer window(int tileRow, int tileColumn) {
+        return windows[(int) (((long) tileRow * tileColumns + tileColumn) / tilesPerWindow)];
+    }
+
+    private int index(int tileRow, int tileColumn) {
+        return (int) (((long) tileRow * tileColumns + tileColumn) % tilesPerWindow) * tile * tile;
+    }
+
+    private void checkTile(int tileRow, int tileColumn) {
+        if (tileRow < 0 || tileRow >= tileRows || tileColumn < 0 || tileColumn >= tileColumns) {
+            throw new IndexOutOfBoundsException("tile [" + tileRow + ", " + tileColumn + "] is out of " + tileRows +
+                    "x" + tileColumns + " tiles.");
+        }
+    }
+
+    private void checkIndex(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + rows + "x" + columns + ".");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappedMatrix[" + rows + "x" + columns + ", tile " + tile + "]";
+    }
+
+    // at most capacity tile buffers; a miss reuses the buffer of the least recently used tile.
+    private static final class TilePool {
+        private final int capacity;
+        private final int tileSize;
+        private final LinkedHashMap<Key, double[]> tiles;
+
+        TilePool(int capacity, int tileSize) {
+            this.capacity = capacity;
+            this.tileSize = tileSize;
+            this.tiles = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+        }
+
+        double[] get(MappedMatrix matrix, int tileRow, int tileColumn) {
+            final Key key = new Key(matrix, tileRow, tileColumn);
+            double[] buffer = tiles.get(key);
+            if (buffer != null) {
+                return buffer;
+            }
+            if (tiles.size() < capacity) {
+                buffer = new double[tileSize];
+            } else {
+                final Map.Entry<Key, double[]> eldest = tiles.entrySet().iterator().next();
+                tiles.remove(eldest.getKey());
+                buffer = eldest.getValue();
+            }
+            matrix.readTile(tileRow, tileColumn, buffer);
+            tiles.put(key, buffer);
+            return buffer;
+        }
+    }
+
+    private static final class Key {
+        private final MappedMatrix matrix;
+        private final int tileRow;
+        private final int tileColumn;
+
+        Key(MappedMatrix matrix, int tileRow, int tileColumn) {
+            this.matrix = matrix;
+            this.tileRow = tileRow;
+            this.tileColumn = tileColumn;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            final Key that = (Key) o;
+            return matrix == that.matrix && tileRow == that.tileRow && tileColumn == that.tileColumn;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(matrix) * 31 + tileRow) * 31 + tileColumn;
+        }
+    }
+}
@@ -37,17 +37,42 @@ public class Matrix {
     }
 
     public Matrix multiply(Matrix o) {
-        Vector t = Vector.make(leftTop, rightTop);
-        Vector b = Vector.make(leftBottom, rightBottom);
-        Vector l = Vector.make(o.leftTop, o.leftBottom);
-        Vector r = Vector.make(o.rightTop, o.rightBottom);
-        return new Matrix(Vector.make(t.multiply(l).total(), b.multiply(l).total()), Vector.make(t.multiply(r).total(), b.multiply(r).total()));
+        return new Matrix(leftTop * o.leftTop + rightTop * o.leftBottom, leftTop * o.rightTop + rightTop * o.rightBottom,
+                leftBottom * o.leftTop + rightBottom * o.leftBottom, leftBottom * o.rightTop + rightBottom * o.rightBottom);
+    }
+
+    // exponentiation by squaring on MutableMatrix, so the loop allocates nothing. Entries wrap like multiply.
+    public Matrix power(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("exponent should not be negative[" + n + "].");
+        }
+        final MutableMatrix result = MutableMatrix.identity();
+        final MutableMatrix base = new MutableMatrix(this);
+        for (long rest = n; rest != 0; rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                result.multiply(base);
+            }
+            base.multiply(base);
+        }
+        return result.toMatrix();
     }
 
     public int getLeftTop() {
         return leftTop;
     }
 
+    public int getRightTop() {
+        return rightTop;
+    }
+
+    public int getLeftBottom() {
+        return leftBottom;
+    }
+
+    public int getRightBottom() {
+        return rightBottom;
+    }
+
     @Override
     public String toString() {
         return "|" + String.format("%4d", leftTop) + " " + String.format("%4d", rightTop) + "|\n" +
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+/**
+ * 2x2 matrix of residues modulo {@code p}, {@code 1 <= p < 2^31}, built by
+ * {@code ModMatrix.modulus(p).leftTop(..).rightTop(..).leftBottom(..).rightBottom(..).make()}. Each entry of a
+ * product is a sum of two products below {@code 2^63}, reduced by Barrett's method with the precomputed
+ * {@code floor((2^64 - 1) / p)}: one high multiplication and at most one subtraction, no division. So
+ * {@code power(n)} costs about 2 log n products even for n near 10^18.
+ */
+public final class ModMatrix {
+
+    private final long modulus;
+    // floor((2^64 - 1) / modulus) as an unsigned long.
+    private final long inverse;
+
+    private final long leftTop; private final long rightTop;
+
+    private final long leftBottom; private final long rightBottom;
+
+    private ModMatrix(long modulus, long inverse, long leftTop, long rightTop, long leftBottom, long rightBottom) {
+        this.modulus = modulus;
+        this.inverse = inverse;
+        this.leftTop = leftTop;
+        this.rightTop = rightTop;
+        this.leftBottom = leftBottom;
+        this.rightBottom = rightBottom;
+    }
+
+    public static ModMatrix of(Matrix matrix, long modulus) {
+        return modulus(modulus).leftTop(matrix.getLeftTop()).rightTop(matrix.getRightTop())
+                .leftBottom(matrix.getLeftBottom()).rightBottom(matrix.getRightBottom()).make();
+    }
+
+    public long getModulus() {
+        return modulus;
+    }
+
+    public long getDeterminant() {
+        final long difference = reduce(leftTop * rightBottom) - reduce(leftBottom * rightTop);
+        return difference < 0? difference + modulus:difference;
+    }
+
+    public ModMatrix multiply(ModMatrix o) {
+        if (modulus != o.modulus) {
+            throw new IllegalArgumentException("moduli differ[" + modulus + ", " + o.modulus + "].");
+        }
+        return new ModMatrix(modulus, inverse,
+                reduce(leftTop * o.leftTop + rightTop * o.leftBottom), reduce(leftTop * o.rightTop + rightTop * o.rightBottom),
+                reduce(leftBottom * o.leftTop + rightBottom * o.leftBottom), reduce(leftBottom * o.rightTop + rightBottom * o.rightBottom));
+    }
+
+    // exponentiation by squaring on local entries, so the loop allocates nothing.
+    public ModMatrix power(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("exponent should not be negative[" + n + "].");
+        }
+        long rlt = reduce(1), rrt = 0, rlb = 0, rrb = rlt;
+        long blt = leftTop, brt = rightTop, blb = leftBottom, brb = rightBottom;
+        for (long rest = n; rest != 0; rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                final long lt = reduce(rlt * blt + rrt * blb);
+                final long rt = reduce(rlt * brt + rrt * brb);
+                final long lb = reduce(rlb * blt + rrb * blb);
+                rrb = reduce(rlb * brt + rrb * brb);
+                rlt = lt;
+                rrt = rt;
+                rlb = lb;
+            }
+            final long lt = reduce(blt * blt + brt * blb);
+            final long rt = reduce(blt * brt + brt * brb);
+            final long lb = reduce(blb * blt + brb * blb);
+            brb = reduce(blb * brt + brb * brb);
+            blt = lt;
+            brt = rt;
+            blb = lb;
+        }
+        return new ModMatrix(modulus, inverse, rlt, rrt, rlb, rrb);
+    }
+
+    // Barrett: q = floor(x * inverse / 2^64) is floor(x / p) or one less, so the remainder is below 2p.
+    private long reduce(long x) {
+        final long remainder = x - multiplyHigh(x, inverse) * modulus;
+        return remainder >= modulus? remainder - modulus:remainder;
+    }
+
+    // the high 64 bits of the unsigned 128-bit product.
+    static long multiplyHigh(long x, long y) {
+        final long x0 = x & 0xFFFFFFFFL, x1 = x >>> 32;
+        final long y0 = y & 0xFFFFFFFFL, y1 = y >>> 32;
+        final long low = x0 * y0;
+        final long middle = x1 * y0 + (low >>> 32);
+        final long cross = x0 * y1 + (middle & 0xFFFFFFFFL);
+        return x1 * y1 + (middle >>> 32) + (cross >>> 32);
+    }
+
+    public long getLeftTop() {
+        return leftTop;
+    }
+
+    public long getRightTop() {
+        return rightTop;
+    }
+
+    public long getLeftBottom() {
+        return leftBottom;
+    }
+
+    public long getRightBottom() {
+        return rightBottom;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ModMatrix)) return false;
+        final ModMatrix that = (ModMatrix) o;
+        return modulus == that.modulus && leftTop == that.leftTop && rightTop == that.rightTop &&
+                leftBottom == that.leftBottom && rightBottom == that.rightBottom;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(modulus);
+        result = 31 * result + Long.hashCode(leftTop);
+        result = 31 * result + Long.hashCode(rightTop);
+        result = 31 * result + Long.hashCode(leftBottom);
+        return 31 * result + Long.hashCode(rightBottom);
+    }
+
+    @Override
+    public String toString() {
+        return "|" + String.format("%4d", leftTop) + " " + String.format("%4d", rightTop) + "|\n" +
+                "|" + String.format("%4d", leftBottom) + " " + String.format("%4d", rightBottom) + "| mod " + modulus;
+    }
+
+    private static class MatrixBuilder implements Modulus, LeftTop, RightTop, LeftBottom, RightBottom {
+
+        private final long modulus;
+        private long lt; private long rt;
+        private long lb; private long rb;
+
+        MatrixBuilder(long modulus) {
+            if (modulus < 1 || modulus > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("modulus should be in [1, 2^31)[" + modulus + "].");
+            }
+            this.modulus = modulus;
+        }
+
+        @Override
+        public LeftTop leftTop(long lt) {
+            this.lt = Math.floorMod(lt, modulus);
+            return this;
+        }
+
+        @Override
+        public RightTop rightTop(long rt) {
+            this.rt = Math.floorMod(rt, modulus);
+            return this;
+        }
+
+        @Override
+        public LeftBottom leftBottom(long lb) {
+            this.lb = Math.floorMod(lb, modulus);
+            return this;
+        }
+
+        @Override
+        public RightBottom rightBottom(long rb) {
+            this.rb = Math.floorMod(rb, modulus);
+            return this;
+        }
+
+        @Override
+        public ModMatrix make() {
+            return new ModMatrix(modulus, Long.divideUnsigned(-1L, modulus), lt, rt, lb, rb);
+        }
+    }
+
+    public static Modulus modulus(long modulus) {
+        return new MatrixBuilder(modulus);
+    }
+
+    public interface Modulus {
+        public LeftTop leftTop(long lt);
+    }
+
+    public interface LeftTop {
+        public RightTop rightTop(long rt);
+    }
+
+    public interface RightTop {
+        public LeftBottom leftBottom(long lb);
+    }
+
+    public interface LeftBottom {
+        public RightBottom rightBottom(long rb);
+    }
+
+    public interface RightBottom {
+        public ModMatrix make();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+/**
+ * Mutable counterpart of {@link Matrix} for tight loops: multiplication overwrites a matrix in place, so
+ * repeated products allocate nothing.
+ */
+public class MutableMatrix {
+
+    private int leftTop; private int rightTop;
+
+    private int leftBottom; private int rightBottom;
+
+    public static MutableMatrix identity() {
+        return new MutableMatrix(1, 0, 0, 1);
+    }
+
+    public MutableMatrix(int leftTop, int rightTop, int leftBottom, int rightBottom) {
+        set(leftTop, rightTop, leftBottom, rightBottom);
+    }
+
+    public MutableMatrix(Matrix matrix) {
+        this(matrix.getLeftTop(), matrix.getRightTop(), matrix.getLeftBottom(), matrix.getRightBottom());
+    }
+
+    public MutableMatrix set(int leftTop, int rightTop, int leftBottom, int rightBottom) {
+        this.leftTop = leftTop;
+        this.rightTop = rightTop;
+        this.leftBottom = leftBottom;
+        this.rightBottom = rightBottom;
+        return this;
+    }
+
+    public MutableMatrix set(MutableMatrix o) {
+        return set(o.leftTop, o.rightTop, o.leftBottom, o.rightBottom);
+    }
+
+    // target = this * o. target may be this or o.
+    public MutableMatrix multiplyInto(MutableMatrix o, MutableMatrix target) {
+        return target.set(leftTop * o.leftTop + rightTop * o.leftBottom, leftTop * o.rightTop + rightTop * o.rightBottom,
+                leftBottom * o.leftTop + rightBottom * o.leftBottom, leftBottom * o.rightTop + rightBottom * o.rightBottom);
+    }
+
+    // this = this * o.
+    public MutableMatrix multiply(MutableMatrix o) {
+        return multiplyInto(o, this);
+    }
+
+    public MutableMatrix multiply(Matrix o) {
+        return set(leftTop * o.getLeftTop() + rightTop * o.getLeftBottom(),
+                leftTop * o.getRightTop() + rightTop * o.getRightBottom(),
+                leftBottom * o.getLeftTop() + rightBottom * o.getLeftBottom(),
+                leftBottom * o.getRightTop() + rightBottom * o.getRightBottom());
+    }
+
+    public int getDeterminant() {
+        return leftTop * rightBottom - leftBottom * rightTop;
+    }
+
+    public int getLeftTop() {
+        return leftTop;
+    }
+
+    public int getRightTop() {
+        return rightTop;
+    }
+
+    public int getLeftBottom() {
+        return leftBottom;
+    }
+
+    public int getRightBottom() {
+        return rightBottom;
+    }
+
+    public Matrix toMatrix() {
+        return Matrix.leftTop(leftTop).rightTop(rightTop).leftBottom(leftBottom).rightBottom(rightBottom).make();
+    }
+
+    @Override
+    public String toString() {
+        return "|" + String.format("%4d", leftTop) + " " + String.format("%4d", rightTop) + "|\n" +
+                "|" + String.format("%4d", leftBottom) + " " + String.format("%4d", rightBottom) + "|";
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * In-place prefix scans of an associative operator over primitive arrays. Elements of a fixed-size type such as
+ * a 2x2 matrix are packed into an {@code int[]} or {@code long[]} with a stride, so a scan allocates no
+ * objects per element; {@link #pack(Matrix...)} and {@link #MATRIX_MULTIPLY} do that for {@link Matrix}.
+ * Scans are inclusive, exclusive, or segmented by flags that restart the scan.
+ * <p>
+ * Large arrays on a pool with more than one thread use the two-pass algorithm of Blelloch on fork/join: the
+ * up-sweep reduces chunks and combines their sums in a tree, the down-sweep hands every chunk the sum of the
+ * chunks before it and scans the chunk from there, so the work stays about twice the sequential scan. Scans run
+ * in the pool of the calling task, or in the common pool.
+ */
+public final class ParallelScan {
+
+    static final int LEAF = 1 << 12;
+
+    private ParallelScan() {}
+
+    /**
+     * Writes {@code left op right} into target. Target may be either operand, so implementations read both
+     * operands before writing.
+     */
+    @FunctionalInterface
+    public interface IntCombiner {
+        public void combine(int[] left, int leftOffset, int[] right, int rightOffset, int[] target, int targetOffset);
+    }
+
+    @FunctionalInterface
+    public interface LongCombiner {
+        public void combine(long[] left, int leftOffset, long[] right, int rightOffset, long[] target, int targetOffset);
+    }
+
+    // 2x2 matrices packed as leftTop, rightTop, leftBottom, rightBottom; wraps like Matrix.multiply.
+    public static final IntCombiner MATRIX_MULTIPLY = (l, i, r, j, t, k) -> {
+        final int lt = l[i] * r[j] + l[i + 1] * r[j + 2];
+        final int rt = l[i] * r[j + 1] + l[i + 1] * r[j + 3];
+        final int lb = l[i + 2] * r[j] + l[i + 3] * r[j + 2];
+        final int rb = l[i + 2] * r[j + 1] + l[i + 3] * r[j + 3];
+        t[k] = lt;
+        t[k + 1] = rt;
+        t[k + 2] = lb;
+        t[k + 3] = rb;
+    };
+
+    public static final LongCombiner LONG_MATRIX_MULTIPLY = (l, i, r, j, t, k) -> {
+        final long lt = l[i] * r[j] + l[i + 1] * r[j + 2];
+        final long rt = l[i] * r[j + 1] + l[i + 1] * r[j + 3];
+        final long lb = l[i + 2] * r[j] + l[i + 3] * r[j + 2];
+        final long rb = l[i + 2] * r[j + 1] + l[i + 3] * r[j + 3];
+        t[k] = lt;
+        t[k + 1] = rt;
+        t[k + 2] = lb;
+        t[k + 3] = rb;
+    };
+
+    public static int[] pack(Matrix... matrices) {
+        final int[] packed = new int[matrices.length * 4];
+        for (int i = 0; i < matrices.length; i++) {
+            packed[4 * i] = matrices[i].getLeftTop();
+            packed[4 * i + 1] = matrices[i].getRightTop();
+            packed[4 * i + 2] = matrices[i].getLeftBottom();
+            packed[4 * i + 3] = matrices[i].getRightBottom();
+        }
+        return packed;
+    }
+
+    public static Matrix unpack(int[] packed, int index) {
+        return Matrix.leftTop(packed[4 * index]).rightTop(packed[4 * index + 1])
+                .leftBottom(packed[4 * index + 2]).rightBottom(packed[4 * index + 3]).make();
+    }
+
+    public static void inclusive(long[] values, LongBinaryOperator op) {
+        inclusive(values, 1, scalar(op));
+    }
+
+    public static void exclusive(long[] values, long identity, LongBinaryOperator op) {
+        exclusive(values, 1, new long[]{identity}, scalar(op));
+    }
+
+    public static void segmented(long[] values, boolean[] starts, LongBinaryOperator op) {
+        segmented(values, 1, starts, scalar(op));
+    }
+
+    public static void inclusive(int[] values, int stride, IntCombiner op) {
+        scan(new IntSlots(values, stride, op), null);
+    }
+
+    public static void inclusive(long[] values, int stride, LongCombiner op) {
+        scan(new LongSlots(values, stride, op), null);
+    }
+
+    // element i becomes the combination of elements before it; element 0 becomes the identity.
+    public static void exclusive(int[] values, int stride, int[] identity, IntCombiner op) {
+        checkIdentity(identity.length, stride);
+        scan(new IntSlots(values, stride, op), null);
+        shift(values, stride, identity, null);
+    }
+
+    public static void exclusive(long[] values, int stride, long[] identity, LongCombiner op) {
+        checkIdentity(identity.length, stride);
+        scan(new LongSlots(values, stride, op), null);
+        shift(values, stride, identity, null);
+    }
+
+    // starts[i] restarts the scan at element i, as if the elements before it were not there.
+    public static void segmented(int[] values, int stride, boolean[] starts, IntCombiner op) {
+        scan(new IntSlots(values, stride, op), starts);
+    }
+
+    public static void segmented(long[] values, int stride, boolean[] starts, LongCombiner op) {
+        scan(new LongSlots(values, stride, op), starts);
+    }
+
+    public static void segmentedExclusive(int[] values, int stride, boolean[] starts, int[] identity, IntCombiner op) {
+        checkIdentity(identity.length, stride);
+        scan(new IntSlots(values, stride, op), starts);
+        shift(values, stride, identity, starts);
+    }
+
+    public static void segmentedExclusive(long[] values, int stride, boolean[] starts, long[] identity, LongCombiner op) {
+        checkIdentity(identity.length, stride);
+        scan(new LongSlots(values, stride, op), starts);
+        shift(values, stride, identity, starts);
+    }
+
+    private static LongCombiner scalar(LongBinaryOperator op) {
+        return (l, i, r, j, t, k) -> t[k] = op.applyAsLong(l[i], r[j]);
+    }
+
+    private static void checkIdentity(int length, int stride) {
+        if (length != stride) {
+            throw new IllegalArgumentException("identity should have " + stride + " values[" + length + "].");
+        }
+    }
+
+    // turns an inclusive scan into an exclusive one by moving every element one place to the right.
+    private static void shift(int[] values, int stride, int[] identity, boolean[] starts) {
+        final int size = values.length / stride;
+        if (size == 0) return;
+        System.arraycopy(values, 0, values, stride, values.length - stride);
+        System.arraycopy(identity, 0, values, 0, stride);
+        for (int i = 1; starts != null && i < size; i++) {
+            if (starts[i]) System.arraycopy(identity, 0, values, i * stride, stride);
+        }
+    }
+
+    private static void shift(long[] values, int stride, long[] identity, boolean[] starts) {
+        final int size = values.length / stride;
+        if (size == 0) return;
+        System.arraycopy(values, 0, values, stride, values.length - stride);
+        System.arraycopy(identity, 0, values, 0, stride);
+        for (int i = 1; starts != null && i < size; i++) {
+            if (starts[i]) System.arraycopy(identity, 0, values, i * stride, stride);
+        }
+    }
+
+    private static void scan(Slots slots, boolean[] starts) {
+        if (starts != null && starts.length != slots.size) {
+            throw new IllegalArgumentException("starts should have " + slots.size + " flags[" + starts.length + "].");
+        }
+        final ForkJoinPool pool = ForkJoinTask.inForkJoinPool()? ForkJoinTask.getPool():ForkJoinPool.commonPool();
+        if (slots.size < 2 * LEAF || pool.getParallelism() < 2) {
+            scanChunk(slots, starts, 0, slots.size, -1);
+            return;
+        }
+        final Node root = new Node(0, slots.size, slots);
+        slots.allocate();
+        final Blelloch task = new Blelloch(root, slots, starts);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    // inclusive scan of [from, to) starting from the prefix slot, or from nothing when it is -1.
+    private static void scanChunk(Slots slots, boolean[] starts, int from, int to, int prefix) {
+        if (prefix >= 0 && (starts == null || !starts[from])) {
+            slots.combine(prefix, from, from);
+        }
+        for (int i = from + 1; i < to; i++) {
+            if (starts == null || !starts[i]) {
+                slots.combine(i - 1, i, i);
+            }
+        }
+    }
+
+    // the chunks form the leaves; every node holds the sum of its range and the prefix handed to its right child.
+    private static final class Node {
+        final int from;
+        final int to;
+        final Node left;
+        final Node right;
+        final int sum;
+        final int rightPrefix;
+        boolean restarts;
+
+        Node(int from, int to, Slots slots) {
+            this.from = from;
+            this.to = to;
+            this.sum = slots.reserve();
+            if (to - from <= LEAF) {
+                this.left = null;
+                this.right = null;
+                this.rightPrefix = -1;
+            } else {
+                final int middle = (from + to) >>> 1;
+                this.left = new Node(from, middle, slots);
+                this.right = new Node(middle, to, slots);
+                this.rightPrefix = slots.reserve();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Blelloch extends RecursiveAction {
+        private final Node root;
+        private final Slots slots;
+        private final boolean[] starts;
+
+        Blelloch(Node root, Slots slots, boolean[] starts) {
+            this.root = root;
+            this.slots = slots;
+            this.starts = starts;
+        }
+
+        @Override
+        protected void compute() {
+            new UpSweep(root, slots, starts).compute();
+            new DownSweep(root, -1, slots, starts).compute();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class UpSweep extends RecursiveAction {
+        private final Node node;
+        private final Slots slots;
+        private final boolean[] starts;
+
+        UpSweep(Node node, Slots slots, boolean[] starts) {
+            this.node = node;
+            this.slots = slots;
+            this.starts = starts;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                slots.copy(node.from, node.sum);
+                node.restarts = starts != null && starts[node.from];
+                for (int i = node.from + 1; i < node.to; i++) {
+                    if (starts != null && starts[i]) {
+                        slots.copy(i, node.sum);
+                        node.restarts = true;
+                    } else {
+                        slots.combine(node.sum, i, node.sum);
+                    }
+                }
+                return;
+            }
+            invokeAll(new UpSweep(node.left, slots, starts), new UpSweep(node.right, slots, starts));
+            if (node.right.restarts) {
+                slots.copy(node.right.sum, node.sum);
+            } else {
+                slots.combine(node.left.sum, node.right.sum, node.sum);
+            }
+            node.restarts = node.left.restarts || node.right.restarts;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class DownSweep extends RecursiveAction {
+        private final Node node;
+        private final int prefix;
+        private final Slots slots;
+        private final boolean[] starts;
+
+        DownSweep(Node node, int prefix, Slots slots, boolean[] starts) {
+            this.node = node;
+            this.prefix = prefix;
+            this.slots = slots;
+            this.starts = starts;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                scanChunk(slots, starts, node.from, node.to, prefix);
+                return;
+            }
+            if (prefix < 0 || node.left.restarts) {
+                slots.copy(node.left.sum, node.rightPrefix);
+            } else {
+                slots.combine(prefix, node.left.sum, node.rightPrefix);
+            }
+            invokeAll(new DownSweep(node.left, prefix, slots, starts),
+                    new DownSweep(node.right, node.rightPrefix, slots, starts));
+        }
+    }
+
+    // element i is slot i; the sums of the tree live in scratch slots from size on.
+    private abstract static class Slots {
+        final int size;
+        int reserved;
+
+        Slots(int length, int stride) {
+            if (stride < 1 || length % stride != 0) {
+                throw new IllegalArgumentException("length " + length + " should be a multiple of stride " + stride + ".");
+            }
+            this.size = length / stride;
+            this.reserved = size;
+        }
+
+        int reserve() {
+            return reserved++;
+        }
+
+        abstract void allocate();
+
+        abstract void combine(int left, int right, int target);
+
+        abstract void copy(int from, int to);
+    }
+
+    private static final class IntSlots extends Slots {
+        private final int[] values;
+        private final int stride;
+        private final IntCombiner op;
+        private int[] scratch;
+
+        IntSlots(int[] values, int stride, IntCombiner op) {
+            super(values.length, stride);
+            this.values = values;
+            this.stride = stride;
+            this.op = op;
+        }
+
+        @Override
+        void allocate() {
+            scratch = new int[(reserved - size) * stride];
+        }
+
+        private int[] array(int slot) {
+            return slot < size? values:scratch;
+        }
+
+        private int offset(int slot) {
+            return (slot < size? slot:slot - size) * stride;
+        }
+
+        @Override
+        void combine(int left, int right, int target) {
+            op.combine(array(left), offset(left), array(right), offset(right), array(target), offset(target));
+        }
+
+        @Override
+        void copy(int from, int to) {
+            System.arraycopy(array(from), offset(from), array(to), offset(to), stride);
+        }
+    }
+
+    private static final class LongSlots extends Slots {
+        private final long[] values;
+        private final int stride;
+        private final LongCombiner op;
+        private long[] scratch;
+
+        LongSlots(long[] values, int stride, LongCombiner op) {
+            super(values.length, stride);
+            this.values = values;
+            this.stride = stride;
+            this.op = op;
+        }
+
+        @Override
+        void allocate() {
+            scratch = new long[(reserved - size) * stride];
+        }
+
+        private long[] array(int slot) {
+            return slot < size? values:scratch;
+        }
+
+        private int offset(int slot) {
+            return (slot < size? slot:slot - size) * stride;
+        }
+
+        @Override
+        void combine(int left, int right, int target) {
+            op.combine(array(left), offset(left), array(right), offset(right), array(target), offset(target));
+        }
+
+        @Override
+        void copy(int from, int to) {
+            System.arraycopy(array(from), offset(from), array(to), offset(to), stride);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.Arrays;
+
+/**
+ * Power iteration over a sparse matrix: repeats {@code x <- A x}, normalized, until successive vectors differ by
+ * less than the tolerance. Every step is one parallel sparse product into a reused buffer, so the loop allocates
+ * nothing. {@link #pageRank(CsrMatrix, double, double, int)} runs the damped iteration of PageRank on a link
+ * matrix.
+ */
+public final class PowerIteration {
+
+    private final double[] vector;
+    private final double eigenvalue;
+    private final int iterations;
+    private final boolean converged;
+
+    private PowerIteration(double[] vector, double eigenvalue, int iterations, boolean converged) {
+        this.vector = vector;
+        this.eigenvalue = eigenvalue;
+        this.iterations = iterations;
+        this.converged = converged;
+    }
+
+    // the eigenvector of largest magnitude, with unit euclidean norm, and its Rayleigh quotient.
+    public static PowerIteration dominant(CsrMatrix matrix, double tolerance, int maxIterations) {
+        final int n = checkSquare(matrix);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        Arrays.fill(x, 1 / Math.sqrt(n));
+        double eigenvalue = 0;
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            matrix.multiply(x, y);
+            double dot = 0;
+            double norm = 0;
+            for (int i = 0; i < n; i++) {
+                dot += x[i] * y[i];
+                norm += y[i] * y[i];
+            }
+            eigenvalue = dot;
+            if (norm == 0) {
+                return new PowerIteration(y, 0, iteration, true);
+            }
+            // a negative eigenvalue flips the sign every step; comparing against the flipped vector converges.
+            final double scale = (dot < 0? -1:1) / Math.sqrt(norm);
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                y[i] *= scale;
+                change += (y[i] - x[i]) * (y[i] - x[i]);
+            }
+            final double[] swap = x;
+            x = y;
+            y = swap;
+            if (Math.sqrt(change) < tolerance) {
+                return new PowerIteration(x, eigenvalue, iteration, true);
+            }
+        }
+        return new PowerIteration(x, eigenvalue, maxIterations, false);
+    }
+
+    /**
+     * Ranks of the nodes of a link matrix, where row i holds the weights of the links from node i. Each step
+     * keeps {@code damping} of every rank on the links, in proportion to their weights, and spreads the rest and
+     * the ranks of nodes without links evenly. Ranks sum to 1; the tolerance bounds the change in L1 norm.
+     */
+    public static PowerIteration pageRank(CsrMatrix links, double damping, double tolerance, int maxIterations) {
+        if (damping < 0 || damping > 1) {
+            throw new IllegalArgumentException("damping should be in [0, 1][" + damping + "].");
+        }
+        final int n = checkSquare(links);
+        final double[] out = new double[n];
+        final Compressed rows = links.rows;
+        for (int i = 0; i < n; i++) {
+            for (int k = rows.pointers[i]; k < rows.pointers[i + 1]; k++) {
+                out[i] += rows.values[k];
+            }
+        }
+        // links^T by column gathers in parallel, where links^T by row would scatter.
+        final CscMatrix incoming = links.toCsc();
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        final double[] share = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            double dangling = 0;
+            for (int i = 0; i < n; i++) {
+                if (out[i] == 0) {
+                    dangling += rank[i];
+                    share[i] = 0;
+                } else {
+                    share[i] = rank[i] / out[i];
+                }
+            }
+            incoming.transposeMultiply(share, next);
+            final double base = (1 - damping + damping * dangling) / n;
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                next[i] = damping * next[i] + base;
+                change += Math.abs(next[i] - rank[i]);
+            }
+            final double[] swap = rank;
+            rank = next;
+            next = swap;
+            if (change < tolerance) {
+                return new PowerIteration(rank, 1, iteration, true);
+            }
+        }
+        return new PowerIteration(rank, 1, maxIterations, false);
+    }
+
+    private static int checkSquare(CsrMatrix matrix) {
+        if (matrix.rows() != matrix.columns()) {
+            throw new IllegalArgumentException("matrix should be square[" + matrix.rows() + "x" + matrix.columns() + "].");
+        }
+        return matrix.rows();
+    }
+
+    public double[] vector() {
+        return vector.clone();
+    }
+
+    public double eigenvalue() {
+        return eigenvalue;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public boolean converged() {
+        return converged;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+/**
+ * {@code A = Q R} of an m &times; n double matrix with m &ge; n by Householder reflections. The reflection
+ * vectors stay below the diagonal of one row-major array and the diagonal of R is kept apart, so Q is only built
+ * when asked for. {@link #solve(double[])} gives the least squares solution of {@code A x = b}.
+ * Obtained from {@link DenseDoubleMatrix#qr()}, which caches it.
+ */
+public final class QrDecomposition {
+
+    private final int rows;
+    private final int columns;
+    private final double[] qr;
+    private final double[] diagonal;
+
+    private QrDecomposition(int rows, int columns, double[] qr, double[] diagonal) {
+        this.rows = rows;
+        this.columns = columns;
+        this.qr = qr;
+        this.diagonal = diagonal;
+    }
+
+    static QrDecomposition of(int rows, int columns, double[] values) {
+        final double[] a = values.clone();
+        final double[] diagonal = new double[columns];
+        for (int k = 0; k < columns; k++) {
+            double norm = 0;
+            for (int i = k; i < rows; i++) {
+                norm = Math.hypot(norm, a[i * columns + k]);
+            }
+            if (norm != 0) {
+                if (a[k * columns + k] < 0) norm = -norm;
+                for (int i = k; i < rows; i++) {
+                    a[i * columns + k] /= norm;
+                }
+                a[k * columns + k] += 1;
+                // reflect the remaining columns, row by row so the inner loops walk memory sequentially.
+                final double[] dots = new double[columns];
+                for (int i = k; i < rows; i++) {
+                    final double v = a[i * columns + k];
+                    for (int j = k + 1; j < columns; j++) {
+                        dots[j] += v * a[i * columns + j];
+                    }
+                }
+                final double pivot = a[k * columns + k];
+                for (int j = k + 1; j < columns; j++) {
+                    dots[j] = -dots[j] / pivot;
+                }
+                for (int i = k; i < rows; i++) {
+                    final double v = a[i * columns + k];
+                    for (int j = k + 1; j < columns; j++) {
+                        a[i * columns + j] += dots[j] * v;
+                    }
+                }
+            }
+            diagonal[k] = -norm;
+        }
+        return new QrDecomposition(rows, columns, a, diagonal);
+    }
+
+    public boolean isFullRank() {
+        for (double d : diagonal) {
+            if (d == 0) return false;
+        }
+        return true;
+    }
+
+    public DenseDoubleMatrix getR() {
+        final double[] r = new double[columns * columns];
+        for (int i = 0; i < columns; i++) {
+            r[i * columns + i] = diagonal[i];
+            System.arraycopy(qr, i * columns + i + 1, r, i * columns + i + 1, columns - i - 1);
+        }
+        return DenseDoubleMatrix.wrap(columns, columns, r);
+    }
+
+    // the first n columns of Q, applying the reflections to the identity from the last one back.
+    public DenseDoubleMatrix getQ() {
+        final double[] q = new double[rows * columns];
+        for (int k = columns - 1; k >= 0; k--) {
+            q[k * columns + k] = 1;
+            final double pivot = qr[k * columns + k];
+            if (pivot == 0) continue;
+            for (int j = k; j < columns; j++) {
+                double dot = 0;
+                for (int i = k; i < rows; i++) {
+                    dot += qr[i * columns + k] * q[i * columns + j];
+                }
+                dot = -dot / pivot;
+                for (int i = k; i < rows; i++) {
+                    q[i * columns + j] += dot * qr[i * columns + k];
+                }
+            }
+        }
+        return DenseDoubleMatrix.wrap(rows, columns, q);
+    }
+
+    // x minimizing |A x - b|: b is reflected into Q^T b, then R x = (Q^T b)[0, n) is solved backwards.
+    public double[] solve(double[] b) {
+        if (b.length != rows) {
+            throw new IllegalArgumentException("right hand side should have " + rows + " values[" + b.length + "].");
+        } else if (!isFullRank()) {
+            throw new ArithmeticException("matrix is rank deficient.");
+        }
+        final double[] y = b.clone();
+        for (int k = 0; k < columns; k++) {
+            double dot = 0;
+            for (int i = k; i < rows; i++) {
+                dot += qr[i * columns + k] * y[i];
+            }
+            dot = -dot / qr[k * columns + k];
+            for (int i = k; i < rows; i++) {
+                y[i] += dot * qr[i * columns + k];
+            }
+        }
+        final double[] x = new double[columns];
+        for (int i = columns - 1; i >= 0; i--) {
+            double sum = y[i];
+            for (int j = i + 1; j < columns; j++) {
+                sum -= qr[i * columns + j] * x[j];
+            }
+            x[i] = sum / diagonal[i];
+        }
+        return x;
+    }
+}
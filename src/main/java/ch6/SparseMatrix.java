@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import java.util.Arrays;
+
+/**
+ * Entry point for sparse matrices. The builder collects non-zeros as coordinates (COO), in any order, then
+ * compresses them: {@code SparseMatrix.rows(n).columns(m).add(i, j, v).add(..).toCsr()} or {@code .toCsc()}.
+ * Entries added twice at one position are summed, and entries that sum to zero are dropped.
+ */
+public final class SparseMatrix {
+
+    private SparseMatrix() {}
+
+    public static Columns rows(int rows) {
+        return columns -> new CooBuilder(rows, columns);
+    }
+
+    private static class CooBuilder implements Entries {
+
+        private final int rows;
+        private final int columns;
+        private int[] rowIndices = new int[16];
+        private int[] columnIndices = new int[16];
+        private double[] values = new double[16];
+        private int size;
+
+        private CooBuilder(int rows, int columns) {
+            if (rows < 1 || columns < 1) {
+                throw new IllegalArgumentException("size should be positive[" + rows + "x" + columns + "].");
+            }
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        @Override
+        public Entries add(int row, int column, double value) {
+            if (row < 0 || row >= rows || column < 0 || column >= columns) {
+                throw new IndexOutOfBoundsException("[" + row + ", " + column + "] is out of " + rows + "x" + columns + ".");
+            }
+            if (size == values.length) {
+                final int capacity = size + (size >>> 1);
+                rowIndices = Arrays.copyOf(rowIndices, capacity);
+                columnIndices = Arrays.copyOf(columnIndices, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            rowIndices[size] = row;
+            columnIndices[size] = column;
+            values[size++] = value;
+            return this;
+        }
+
+        @Override
+        public CsrMatrix toCsr() {
+            return new CsrMatrix(Compressed.of(rows, columns, rowIndices, columnIndices, values, size));
+        }
+
+        @Override
+        public CscMatrix toCsc() {
+            return new CscMatrix(Compressed.of(columns, rows, columnIndices, rowIndices, values, size));
+        }
+    }
+
+    public interface Columns {
+        public Entries columns(int columns);
+    }
+
+    public interface Entries {
+        public Entries add(int row, int column, double value);
+
+        public CsrMatrix toCsr();
+
+        public CscMatrix toCsc();
+    }
+}
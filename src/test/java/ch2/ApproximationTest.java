@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(Enclosed.class)
+public class ApproximationTest {
+
+    private static final Fraction PI = new Fraction(3141592653589793L, 1000000000000000L);
+
+    private static Fraction distance(Fraction left, Fraction right) {
+        Fraction difference = left.minus(right);
+        return difference.compareTo(0) < 0? difference.toNegative():difference;
+    }
+
+    // the closest distance to value among all fractions with denominator up to max.
+    private static Fraction bruteForce(Fraction value, int max) {
+        Fraction best = null;
+        for (int q = 1; q <= max; q++) {
+            Fraction scaled = value.multiply(q);
+            long floor = Math.floorDiv(scaled.longNumerator(), scaled.longDenominator());
+            for (long p = floor; p <= floor + 1; p++) {
+                Fraction d = distance(value, new Fraction(p, (long) q));
+                if (best == null || d.compareTo(best) < 0) {
+                    best = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    public static class ApproximateTest {
+        @Test
+        public void knownApproximationsOfPi() {
+            assertThat(PI.approximate(10), is(new Fraction(22, 7)));
+            assertThat(PI.approximate(1000), is(new Fraction(355, 113)));
+            assertThat(PI.approximate(1), is(new Fraction(3)));
+            assertThat(PI.toNegative().approximate(100), is(new Fraction(-311, 99)));
+        }
+
+        @Test
+        public void withinBoundIsUnchanged() {
+            Fraction value = new Fraction(5, 7);
+            assertThat(value.approximate(7), is(sameInstance(value)));
+        }
+
+        @Test
+        public void matchesBruteForce() {
+            Random random = new Random(16);
+            for (int i = 0; i < 300; i++) {
+                Fraction value = Fraction.of(random.nextInt(1 << 20) - (1 << 19), random.nextInt(1 << 20) + 1);
+                int max = random.nextInt(60) + 1;
+                Fraction approximation = value.approximate(max);
+                assertTrue(approximation.longDenominator() <= max);
+                assertThat(value + " / " + max, distance(value, approximation), is(bruteForce(value, max)));
+            }
+        }
+
+        @Test
+        public void bigTier() {
+            BigInteger ten = BigInteger.TEN;
+            Fraction value = new Fraction(ten.pow(40).multiply(BigInteger.valueOf(314159265)), ten.pow(48));
+            assertThat(value.approximate(1000), is(new Fraction(355, 113)));
+            Fraction huge = new Fraction(ten.pow(30).add(BigInteger.ONE), BigInteger.valueOf(3));
+            assertThat(huge.approximate(3), is(sameInstance(huge)));
+            assertThat(huge.approximate(1), is(new Fraction(ten.pow(30).divide(BigInteger.valueOf(3)).add(BigInteger.ONE), BigInteger.ONE)));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void nonPositiveBound() {
+            PI.approximate(0);
+        }
+    }
+
+    public static class ContextTest {
+        @Test
+        public void exactContextDoesNotRound() {
+            FractionContext context = FractionContext.exact();
+            assertThat(context.plus(new Fraction(1, 3), new Fraction(1, 7)), is(new Fraction(10, 21)));
+            assertThat(context.errorBound(), is(new Fraction(0)));
+        }
+
+        @Test
+        public void resultsSnapWithinErrorBound() {
+            FractionContext context = FractionContext.bounded(100);
+            Fraction left = new Fraction(1, 97);
+            Fraction right = new Fraction(1, 89);
+            Fraction[] results = {context.plus(left, right), context.minus(left, right),
+                    context.multiply(left, right), context.divide(left, right)};
+            Fraction[] exacts = {left.plus(right), left.minus(right), left.multiply(right), left.divide(right)};
+            for (int i = 0; i < results.length; i++) {
+                assertTrue(results[i].longDenominator() <= 100);
+                assertTrue(distance(results[i], exacts[i]).compareTo(context.errorBound()) <= 0);
+                assertThat(results[i], is(exacts[i].approximate(100)));
+            }
+        }
+
+        @Test
+        public void harmonicSumStaysBounded() {
+            FractionContext context = FractionContext.bounded(1 << 20);
+            Fraction sum = Fraction.valueOf(0);
+            Fraction exact = Fraction.valueOf(0);
+            for (int i = 1; i <= 60; i++) {
+                sum = context.plus(sum, new Fraction(1, i));
+                exact = exact.plus(new Fraction(1, i));
+            }
+            assertTrue(sum.longDenominator() <= 1 << 20);
+            assertTrue(distance(sum, exact).compareTo(context.errorBound().multiply(60)) <= 0);
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void divideByZero() {
+            FractionContext.bounded(10).divide(new Fraction(1), new Fraction(0));
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        // logistic map x -> r x (1 - x), whose exact denominators square every step.
+        private static Fraction logistic(FractionContext context, int steps) {
+            Fraction r = new Fraction(7, 2);
+            Fraction x = new Fraction(1, 3);
+            for (int i = 0; i < steps; i++) {
+                x = context.multiply(context.multiply(r, x), context.minus(Fraction.valueOf(1), x));
+            }
+            return x;
+        }
+
+        @Test
+        public void exactAgainstBounded() {
+            long start = System.nanoTime();
+            Fraction exact = logistic(FractionContext.exact(), 14);
+            long exactTime = System.nanoTime() - start;
+
+            FractionContext bounded = FractionContext.bounded(1L << 30);
+            logistic(bounded, 10_000);
+            start = System.nanoTime();
+            Fraction approximate = logistic(bounded, 100_000);
+            long boundedTime = System.nanoTime() - start;
+            LOG.info(String.format("exact %d steps %.1f us/step (%d bits), bounded %.3f us/step (%s)",
+                    14, exactTime / 14 / 1e3, exact.bigDenominator().bitLength(), boundedTime / 100_000 / 1e3, approximate));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionAccumulatorTest {
+
+    static Stream<Fraction> halves(int count) {
+        return Stream.iterate(new Fraction(1), f -> f.multiply(new Fraction(1, 2))).limit(count);
+    }
+
+    static Stream<Fraction> mixed(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new Fraction(i % 7 - 3, i % 12 + 1));
+    }
+
+    public static class SumTest {
+        @Test
+        public void sameAsReduce() {
+            Fraction expected = mixed(1000).reduce(new Fraction(0), Fraction::plus);
+            assertThat(mixed(1000).collect(FractionAccumulator.summing()), is(expected));
+        }
+
+        @Test
+        public void geometricSeries() {
+            Fraction sum = halves(10).collect(FractionAccumulator.summing());
+            assertThat(sum, is(new Fraction(2).minus(new Fraction(1, 2).power(9))));
+        }
+
+        @Test
+        public void beyondLongRange() {
+            Fraction sum = halves(200).collect(FractionAccumulator.summing());
+            assertThat(sum, is(new Fraction(2).minus(new Fraction(1, 2).power(199))));
+        }
+
+        @Test
+        public void parallelStream() {
+            Fraction expected = mixed(10000).reduce(new Fraction(0), Fraction::plus);
+            assertThat(mixed(10000).parallel().collect(FractionAccumulator.summing()), is(expected));
+        }
+
+        @Test
+        public void emptyIsZero() {
+            assertThat(Stream.<Fraction>empty().collect(FractionAccumulator.summing()), is(new Fraction(0)));
+        }
+
+        @Test
+        public void unrelatedDenominatorsOverflowIntoBigInteger() {
+            Fraction expected = IntStream.rangeClosed(1, 60)
+                    .mapToObj(i -> new Fraction(1, i))
+                    .reduce(new Fraction(0), Fraction::plus);
+            FractionAccumulator accumulator = new FractionAccumulator();
+            IntStream.rangeClosed(1, 60).forEach(i -> accumulator.add(new Fraction(1, i)));
+            assertThat(accumulator.get(), is(expected));
+            assertThat(accumulator.count(), is(60L));
+        }
+    }
+
+    public static class ProductTest {
+        @Test
+        public void sameAsReduce() {
+            Fraction expected = IntStream.rangeClosed(1, 40)
+                    .mapToObj(i -> new Fraction(i + 1, i))
+                    .reduce(new Fraction(1), Fraction::multiply);
+            Fraction product = IntStream.rangeClosed(1, 40)
+                    .mapToObj(i -> new Fraction(i + 1, i))
+                    .parallel()
+                    .collect(FractionAccumulator.multiplying());
+            assertThat(product, is(expected));
+            assertThat(product, is(new Fraction(41)));
+        }
+
+        @Test
+        public void beyondLongRange() {
+            Fraction product = halves(30).collect(FractionAccumulator.multiplying());
+            assertThat(product, is(new Fraction(1, 2).power(435)));
+        }
+
+        @Test
+        public void emptyIsOne() {
+            assertThat(Stream.<Fraction>empty().collect(FractionAccumulator.multiplying()), is(new Fraction(1)));
+        }
+    }
+
+    public static class AverageTest {
+        @Test
+        public void averageOfThirds() {
+            Fraction average = Stream.of(new Fraction(1, 3), new Fraction(2, 3), new Fraction(1))
+                    .collect(FractionAccumulator.averaging());
+            assertThat(average, is(new Fraction(2, 3)));
+        }
+
+        @Test
+        public void emptyIsZero() {
+            assertThat(Stream.<Fraction>empty().collect(FractionAccumulator.averaging()), is(new Fraction(0)));
+        }
+    }
+
+    public static class BenchmarkTest {
+
+        private static final Logger LOG = Logger.getLogger(BenchmarkTest.class.getName());
+
+        private static final int SIZE = 1_000_000;
+
+        private static long millis(Supplier<Fraction> operation, Fraction expected) {
+            long start = System.nanoTime();
+            Fraction result = operation.get();
+            long elapsed = System.nanoTime() - start;
+            assertThat(result, is(expected));
+            return elapsed / 1_000_000;
+        }
+
+        @Test
+        public void sumOfMillionFractions() {
+            Fraction expected = mixed(SIZE).reduce(new Fraction(0), Fraction::plus);
+            for (int i = 0; i < 3; i++) {
+                long reduce = millis(() -> mixed(SIZE).reduce(new Fraction(0), Fraction::plus), expected);
+                long collect = millis(() -> mixed(SIZE).collect(FractionAccumulator.summing()), expected);
+                LOG.info(String.format("sum of %d fractions: reduce %d ms, accumulator %d ms", SIZE, reduce, collect));
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+
+@RunWith(Enclosed.class)
+public class FractionAdderTest {
+
+    private static final int OPERATIONS = 1 << 15;
+
+    static Fraction term(int index) {
+        return new Fraction(1, index % 12 + 1);
+    }
+
+    static Fraction expected(int operations) {
+        return IntStream.range(0, operations).mapToObj(FractionAdderTest::term)
+                .collect(FractionAccumulator.summing());
+    }
+
+    static long runConcurrently(ExecutorService exe, int threads, Consumer<Fraction> adder)
+            throws ExecutionException, InterruptedException {
+        final int perThread = OPERATIONS / threads;
+        long start = System.nanoTime();
+        CompletableFuture.allOf(IntStream.range(0, threads)
+                .mapToObj(t -> CompletableFuture.runAsync(() -> {
+                    for (int i = t * perThread; i < (t + 1) * perThread; i++) {
+                        adder.accept(term(i));
+                    }
+                }, exe))
+                .toArray(CompletableFuture[]::new)).get();
+        return System.nanoTime() - start;
+    }
+
+    public static class SingleThreadTest {
+        @Test
+        public void sumOfAddedFractions() {
+            FractionAdder adder = new FractionAdder();
+            adder.add(new Fraction(1, 2));
+            adder.add(new Fraction(1, 3));
+            adder.add(1);
+            assertThat(adder.sum(), is(new Fraction(11, 6)));
+        }
+
+        @Test
+        public void sumThenReset() {
+            FractionAdder adder = new FractionAdder();
+            adder.add(new Fraction(-3, 4));
+            assertThat(adder.sumThenReset(), is(new Fraction(-3, 4)));
+            assertThat(adder.sum(), is(new Fraction(0)));
+        }
+    }
+
+    public static class ContentionTest {
+
+        private final static ExecutorService EXE = Executors.newFixedThreadPool(64);
+
+        private final static Logger LOG = Logger.getLogger(ContentionTest.class.getName());
+
+        @AfterClass
+        public static void shutdown() {
+            EXE.shutdown();
+        }
+
+        // eight cells from the start, so threads land on different cells even where there are few CPUs.
+        @Test
+        public void sumIsExactUnderContention() throws ExecutionException, InterruptedException {
+            FractionAdder adder = new FractionAdder(8, 8);
+            runConcurrently(EXE, 16, adder::add);
+            assertThat(adder.cellCount(), is(8));
+            assertThat(adder.sum(), is(expected(OPERATIONS)));
+        }
+
+        @Test
+        public void sumDuringWrites() throws ExecutionException, InterruptedException {
+            FractionAdder adder = new FractionAdder(8, 8);
+            CompletableFuture<Void> writers = CompletableFuture.runAsync(() -> {
+                try {
+                    runConcurrently(EXE, 8, adder::add);
+                } catch (ExecutionException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Fraction last = new Fraction(0);
+            while (!writers.isDone()) {
+                // every term is positive, so a consistent read never goes backwards.
+                Fraction current = adder.sum();
+                assertThat(current.compareTo(last) >= 0, is(true));
+                last = current;
+            }
+            writers.get();
+            assertThat(adder.sum(), is(expected(OPERATIONS)));
+        }
+
+        // the cell table grows under a private flag, so holding the adder's monitor stalls nobody. Growth needs
+        // collisions, which are rare with one CPU, so rounds repeat until the table grew; if it never does, the test
+        // claims nothing.
+        @Test
+        public void outsideLockDoesNotStallGrowth() throws ExecutionException, InterruptedException {
+            FractionAdder adder = new FractionAdder(1, 64);
+            int rounds = 0;
+            synchronized (adder) {
+                while (adder.cellCount() == 1 && rounds < 50) {
+                    runConcurrently(EXE, 64, adder::add);
+                    rounds++;
+                }
+            }
+            assertThat(adder.sum(), is(expected(OPERATIONS).multiply(rounds)));
+            assumeThat(adder.cellCount() > 1, is(true));
+        }
+
+        @Test
+        public void compareWithCompareAndSetLoop() throws ExecutionException, InterruptedException {
+            Fraction expected = expected(OPERATIONS);
+            for (int threads = 1; threads <= 64; threads <<= 1) {
+                AtomicReference<Fraction> reference = new AtomicReference<>(new Fraction(0));
+                long cas = runConcurrently(EXE, threads, f -> reference.accumulateAndGet(f, Fraction::plus));
+                // one cell per thread from the start; growth alone rarely spreads threads on a machine with one CPU.
+                FractionAdder adder = new FractionAdder(threads, 64);
+                long striped = runConcurrently(EXE, threads, adder::add);
+                assertThat(reference.get(), is(expected));
+                assertThat(adder.sum(), is(expected));
+                LOG.info(String.format("%2d threads: CAS loop %6d us, FractionAdder %6d us (%d cells)",
+                        threads, cas / 1000, striped / 1000, adder.cellCount()));
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionArrayTest {
+
+    static Stream<Fraction> randomFractions(long seed, int count, int bound) {
+        Random random = new Random(seed);
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Fraction(random.nextInt(bound * 2 + 1) - bound, random.nextInt(bound) + 1));
+    }
+
+    public static class ConversionTest {
+        @Test
+        public void roundTripThroughStream() {
+            List<Fraction> values = randomFractions(1, 100, 50).collect(Collectors.toList());
+            FractionArray array = FractionArray.from(values.stream());
+            assertThat(array.length(), is(100));
+            assertThat(array.stream().collect(Collectors.toList()), is(values));
+        }
+
+        @Test
+        public void newArrayIsFilledWithZero() {
+            FractionArray array = new FractionArray(3);
+            assertThat(array.get(2), is(new Fraction(0)));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void bigFractionCannotBeStored() {
+            new FractionArray(1).set(0, new Fraction(1, 3).power(50));
+        }
+    }
+
+    public static class ElementWiseTest {
+        @Test
+        public void plusAndMultiplyWithArray() {
+            List<Fraction> left = randomFractions(2, 200, 1000).collect(Collectors.toList());
+            List<Fraction> right = randomFractions(3, 200, 1000).collect(Collectors.toList());
+            FractionArray l = FractionArray.from(left.stream());
+            FractionArray r = FractionArray.from(right.stream());
+            FractionArray sum = l.plus(r);
+            FractionArray product = l.multiply(r);
+            for (int i = 0; i < 200; i++) {
+                assertThat(sum.get(i), is(left.get(i).plus(right.get(i))));
+                assertThat(product.get(i), is(left.get(i).multiply(right.get(i))));
+            }
+        }
+
+        @Test
+        public void largeValuesTakeExactPath() {
+            List<Fraction> left = randomFractions(4, 100, Integer.MAX_VALUE / 2).collect(Collectors.toList());
+            List<Fraction> right = randomFractions(5, 100, Integer.MAX_VALUE / 2).collect(Collectors.toList());
+            FractionArray sum = FractionArray.from(left.stream()).plus(FractionArray.from(right.stream()));
+            for (int i = 0; i < 100; i++) {
+                assertThat(sum.get(i), is(left.get(i).plus(right.get(i))));
+            }
+        }
+
+        @Test
+        public void withScalar() {
+            FractionArray array = FractionArray.of(new Fraction(1, 2), new Fraction(-1, 3));
+            assertThat(array.plus(new Fraction(1, 6)), is(FractionArray.of(new Fraction(2, 3), new Fraction(-1, 6))));
+            assertThat(array.multiply(new Fraction(3, 2)), is(FractionArray.of(new Fraction(3, 4), new Fraction(-1, 2))));
+            assertThat(array.divide(new Fraction(-1, 2)), is(FractionArray.of(new Fraction(-1), new Fraction(2, 3))));
+        }
+
+        @Test
+        public void divideByArray() {
+            FractionArray left = FractionArray.of(new Fraction(2, 3), new Fraction(5));
+            FractionArray right = FractionArray.of(new Fraction(-4, 3), new Fraction(5, 7));
+            assertThat(left.divide(right), is(FractionArray.of(new Fraction(-1, 2), new Fraction(7))));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void overflowIsReported() {
+            FractionArray array = FractionArray.of(new Fraction(1, Long.MAX_VALUE));
+            array.plus(FractionArray.of(new Fraction(1, Long.MAX_VALUE - 1)));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void lengthShouldMatch() {
+            new FractionArray(2).plus(new FractionArray(3));
+        }
+    }
+
+    public static class AggregationTest {
+        @Test
+        public void sumIsSameAsReduce() {
+            FractionArray array = FractionArray.from(randomFractions(6, 1000, 30));
+            Fraction expected = randomFractions(6, 1000, 30).reduce(new Fraction(0), Fraction::plus);
+            assertThat(array.sum(), is(expected));
+        }
+
+        @Test
+        public void minAndMax() {
+            FractionArray array = FractionArray.of(new Fraction(1, 3), new Fraction(-5, 2), new Fraction(7, 4));
+            assertThat(array.min(), is(new Fraction(-5, 2)));
+            assertThat(array.max(), is(new Fraction(7, 4)));
+        }
+
+        @Test
+        public void sortIsSameAsSortedStream() {
+            FractionArray array = FractionArray.from(randomFractions(7, 5000, 100));
+            array.sort();
+            List<Fraction> expected = randomFractions(7, 5000, 100).sorted().collect(Collectors.toList());
+            assertThat(array.stream().collect(Collectors.toList()), is(expected));
+        }
+    }
+
+    public static class BenchmarkTest {
+
+        private static final Logger LOG = Logger.getLogger(BenchmarkTest.class.getName());
+
+        @Test
+        public void elementWiseAgainstFractionObjects() {
+            List<Fraction> left = randomFractions(8, 1 << 18, 1 << 12).collect(Collectors.toList());
+            List<Fraction> right = randomFractions(9, 1 << 18, 1 << 12).collect(Collectors.toList());
+            FractionArray l = FractionArray.from(left.stream());
+            FractionArray r = FractionArray.from(right.stream());
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                List<Fraction> objects = IntStream.range(0, left.size())
+                        .mapToObj(i -> left.get(i).multiply(right.get(i)).plus(left.get(i)))
+                        .collect(Collectors.toList());
+                long middle = System.nanoTime();
+                FractionArray columns = l.multiply(r).plus(l);
+                long end = System.nanoTime();
+                assertThat(columns.get(objects.size() - 1), is(objects.get(objects.size() - 1)));
+                LOG.info(String.format("%d elements: Fraction objects %d ms, FractionArray %d ms",
+                        left.size(), (middle - start) / 1000000, (end - middle) / 1000000));
+            }
+        }
+    }
+}
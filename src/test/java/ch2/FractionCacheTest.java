@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionCacheTest {
+
+    public static class FactoryTest {
+        @Test
+        public void valueOfReturnsCanonicalInstance() {
+            assertThat(Fraction.valueOf(1000), is(sameInstance(Fraction.valueOf(1000))));
+            assertThat(Fraction.valueOf(-3), is(new Fraction(-3)));
+        }
+
+        @Test
+        public void valueOfOutOfRangeIsStillCorrect() {
+            assertThat(Fraction.valueOf(1 << 20), is(new Fraction(1 << 20)));
+        }
+
+        @Test
+        public void ofReturnsCanonicalInstanceForSmallFractions() {
+            assertThat(Fraction.of(1, 2), is(sameInstance(Fraction.of(1, 2))));
+            assertThat(Fraction.of(2, 4), is(sameInstance(Fraction.of(1, 2))));
+            assertThat(Fraction.of(4, 2), is(sameInstance(Fraction.valueOf(2))));
+            assertThat(Fraction.of(-2, -3), is(sameInstance(Fraction.of(2, 3))));
+        }
+
+        @Test
+        public void ofReducesAndKeepsSign() {
+            assertThat(Fraction.of(6, -9), is(new Fraction(-2, 3)));
+            assertThat(Fraction.of(300, 1000), is(new Fraction(3, 10)));
+            assertThat(Fraction.of(0, -7), is(sameInstance(Fraction.valueOf(0))));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void zeroDenominator() {
+            Fraction.of(1, 0);
+        }
+
+        @Test
+        public void arithmeticReturnsCanonicalInstances() {
+            assertThat(Fraction.of(1, 6).plus(Fraction.of(1, 3)), is(sameInstance(Fraction.of(1, 2))));
+            assertThat(Fraction.of(2, 3).multiply(3), is(sameInstance(Fraction.valueOf(2))));
+        }
+    }
+
+    public static class InterningTest {
+        @Test
+        public void secondLookupHits() {
+            FractionCache cache = new FractionCache(64);
+            Fraction first = cache.get(355, 113);
+            Fraction second = cache.get(355, 113);
+            assertThat(second, is(sameInstance(first)));
+            assertThat(cache.hits(), is(1L));
+            assertThat(cache.misses(), is(1L));
+        }
+
+        @Test
+        public void valuesAreReduced() {
+            FractionCache cache = new FractionCache(64);
+            assertThat(cache.get(710, -226), is(new Fraction(-355, 113)));
+        }
+
+        @Test
+        public void capacityIsBounded() {
+            FractionCache cache = new FractionCache(100);
+            assertThat(cache.capacity(), is(128));
+            for (int i = 1; i <= 10000; i++) {
+                cache.get(i, 10001);
+            }
+            assertThat(cache.misses(), is(10000L));
+            cache.resetCounters();
+            assertThat(cache.hits() + cache.misses(), is(0L));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void capacityShouldBePositive() {
+            new FractionCache(0);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionCodecTest {
+
+    public static class ParseTest {
+        private final FractionCodec codec = new FractionCodec();
+
+        @Test
+        public void fraction() {
+            assertThat(codec.parse("-3/4").toFraction(), is(new Fraction(-3, 4)));
+            assertThat(codec.parse("6/-8").toFraction(), is(new Fraction(-3, 4)));
+            assertThat(codec.parse("+10/4").toFraction(), is(new Fraction(5, 2)));
+        }
+
+        @Test
+        public void integer() {
+            assertThat(codec.parse("12").numerator(), is(12L));
+            assertThat(codec.parse("12").denominator(), is(1L));
+            assertThat(codec.parse("-0").toFraction(), is(Fraction.valueOf(0)));
+        }
+
+        @Test
+        public void decimalIsExact() {
+            assertThat(codec.parse("0.375").toFraction(), is(new Fraction(3, 8)));
+            assertThat(codec.parse("-.5").toFraction(), is(new Fraction(-1, 2)));
+            assertThat(codec.parse("12.").toFraction(), is(new Fraction(12)));
+            assertThat(codec.parse("0.1").toFraction(), is(new Fraction(1, 10)));
+        }
+
+        @Test
+        public void trailingZerosNeedNoScale() {
+            assertThat(codec.parse("0.5000000000000000000").toFraction(), is(new Fraction(1, 2)));
+            assertThat(codec.parse("1.2500000000000000000000").toFraction(), is(new Fraction(5, 4)));
+            assertThat(codec.parse("-3.00000000000000000000000000000").toFraction(), is(new Fraction(-3)));
+            assertThat(codec.parse("0.000000000000000001000").toFraction(), is(new Fraction(1, 1_000_000_000_000_000_000L)));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void scaleOverflow() {
+            codec.parse("0.0000000000000000000100");
+        }
+
+        @Test
+        public void surroundingSpacesAreIgnored() {
+            assertThat(codec.parse("  7/21 ").toFraction(), is(new Fraction(1, 3)));
+        }
+
+        @Test
+        public void range() {
+            char[] chars = "[5/10]".toCharArray();
+            assertThat(codec.parse(chars, 1, 5).toFraction(), is(new Fraction(1, 2)));
+            ByteBuffer bytes = ByteBuffer.wrap("x,-9/3,y".getBytes(StandardCharsets.US_ASCII));
+            assertThat(codec.parse(bytes, 2, 6).toFraction(), is(new Fraction(-3)));
+            assertThat(bytes.position(), is(0));
+        }
+
+        @Test
+        public void store() {
+            long[] nums = new long[2];
+            long[] dens = new long[2];
+            codec.parse("4/6").store(nums, dens, 1);
+            assertThat(nums[1], is(2L));
+            assertThat(dens[1], is(3L));
+        }
+
+        @Test(expected = NumberFormatException.class)
+        public void empty() {
+            codec.parse(" ");
+        }
+
+        @Test(expected = NumberFormatException.class)
+        public void missingDenominator() {
+            codec.parse("3/");
+        }
+
+        @Test(expected = NumberFormatException.class)
+        public void decimalFraction() {
+            codec.parse("1.5/2");
+        }
+
+        @Test(expected = NumberFormatException.class)
+        public void innerSpace() {
+            codec.parse("1 2");
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void zeroDenominator() {
+            codec.parse("1/0");
+        }
+
+        @Test
+        public void longBoundaries() {
+            assertThat(codec.parse("-9223372036854775808").numerator(), is(Long.MIN_VALUE));
+            assertThat(codec.parse("-9223372036854775808").toFraction(), is(new Fraction(Long.MIN_VALUE, 1L)));
+            assertThat(codec.parse("9223372036854775807").numerator(), is(Long.MAX_VALUE));
+            assertThat(codec.parse("9223372036854775808/-1").numerator(), is(Long.MIN_VALUE));
+            assertThat(codec.parse("-9223372036854775808/4").numerator(), is(Long.MIN_VALUE / 4));
+            assertThat(codec.parse("-922337203685477580.8").denominator(), is(5L));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void positiveMinValueOverflows() {
+            codec.parse("9223372036854775808");
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void overflow() {
+            codec.parse("92233720368547758070");
+        }
+    }
+
+    public static class ParseAllTest {
+        @Test
+        public void delimitedText() {
+            long[] nums = new long[8];
+            long[] dens = new long[8];
+            int count = new FractionCodec().parseAll("1/2, 0.25,,3\r\n-4/6\n", ',', nums, dens);
+            assertThat(count, is(4));
+            assertThat(Fraction.of(nums[3], dens[3]), is(new Fraction(-2, 3)));
+            assertThat(Fraction.of(nums[1], dens[1]), is(new Fraction(1, 4)));
+        }
+
+        @Test
+        public void delimitedBytes() {
+            long[] nums = new long[8];
+            long[] dens = new long[8];
+            ByteBuffer bytes = ByteBuffer.wrap("1/3;2/3;5".getBytes(StandardCharsets.US_ASCII));
+            assertThat(new FractionCodec().parseAll(bytes, ';', nums, dens), is(3));
+            assertThat(nums[2], is(5L));
+        }
+    }
+
+    public static class FormatTest {
+        @Test
+        public void formatToStringBuilder() {
+            assertThat(FractionCodec.format(new Fraction(-6, 8), new StringBuilder("x=")).toString(), is("x=-3/4"));
+            assertThat(new Fraction(3).toString(), is("3/1"));
+        }
+
+        @Test
+        public void formatToByteBuffer() {
+            ByteBuffer out = ByteBuffer.allocate(64);
+            FractionCodec.format(Long.MIN_VALUE, 7L, out);
+            FractionCodec.format(new Fraction(0), out);
+            assertThat(new String(out.array(), 0, out.position(), StandardCharsets.US_ASCII),
+                    is(Long.MIN_VALUE + "/70/1"));
+        }
+
+        @Test
+        public void bigValues() {
+            Fraction big = new Fraction(BigInteger.ONE.shiftLeft(100).negate(), BigInteger.valueOf(3));
+            ByteBuffer out = ByteBuffer.allocate(64);
+            FractionCodec.format(big, out);
+            assertThat(new String(out.array(), 0, out.position(), StandardCharsets.US_ASCII), is(big.toString()));
+        }
+
+        @Test
+        public void roundTrip() {
+            FractionCodec codec = new FractionCodec();
+            Random random = new Random(11);
+            ByteBuffer out = ByteBuffer.allocate(64);
+            for (int i = 0; i < 10_000; i++) {
+                Fraction value = Fraction.of(random.nextLong() >> random.nextInt(63), (random.nextLong() >>> 1 >> random.nextInt(62)) + 1);
+                out.clear();
+                FractionCodec.format(value, out);
+                assertThat(codec.parse(out, 0, out.position()).toFraction(), is(value));
+            }
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        private static final int SIZE = 1 << 18;
+
+        @Test
+        public void throughput() {
+            Random random = new Random(3);
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < SIZE; i++) {
+                FractionCodec.format(random.nextInt() >> random.nextInt(31), random.nextInt(1 << 20) + 1, text).append('\n');
+            }
+            String source = text.toString();
+            ByteBuffer bytes = ByteBuffer.wrap(source.getBytes(StandardCharsets.US_ASCII));
+            double megaBytes = bytes.capacity() / 1e6;
+            long[] nums = new long[SIZE];
+            long[] dens = new long[SIZE];
+            FractionCodec codec = new FractionCodec();
+
+            for (int warm = 0; warm < 3; warm++) {
+                codec.parseAll(bytes, ',', nums, dens);
+            }
+            long start = System.nanoTime();
+            int count = codec.parseAll(bytes, ',', nums, dens);
+            long parse = System.nanoTime() - start;
+            assertThat(count, is(SIZE));
+
+            start = System.nanoTime();
+            String[] lines = source.split("\n");
+            for (int i = 0; i < lines.length; i++) {
+                String[] parts = lines[i].split("/");
+                Fraction value = new Fraction(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                nums[i] = value.longNumerator();
+                dens[i] = value.longDenominator();
+            }
+            long naive = System.nanoTime() - start;
+
+            ByteBuffer out = ByteBuffer.allocate(bytes.capacity());
+            start = System.nanoTime();
+            for (int i = 0; i < SIZE; i++) {
+                FractionCodec.format(nums[i], dens[i], out).put((byte) '\n');
+            }
+            long format = System.nanoTime() - start;
+
+            LOG.info(String.format("parse %.1f MB/s, split+parseLong %.1f MB/s, format %.1f MB/s",
+                    megaBytes / (parse / 1e9), megaBytes / (naive / 1e9), megaBytes / (format / 1e9)));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionConversionTest {
+
+    private static final MathContext REFERENCE = new MathContext(1200);
+
+    private static double reference(Fraction value) {
+        return value.toBigDecimal(REFERENCE).doubleValue();
+    }
+
+    public static class DoubleTest {
+        @Test
+        public void smallValuesAreExactDivision() {
+            assertThat(new Fraction(1, 3).doubleValue(), is(1.0 / 3));
+            assertThat(new Fraction(-7, 8).doubleValue(), is(-0.875));
+            assertThat(Fraction.valueOf(0).doubleValue(), is(0.0));
+        }
+
+        @Test
+        public void largeLongsAreCorrectlyRounded() {
+            Fraction value = new Fraction(Long.MAX_VALUE, Long.MAX_VALUE - 2);
+            assertThat(value.doubleValue(), is(reference(value)));
+            Fraction odd = new Fraction((1L << 53) + 1, 3L);
+            assertThat(odd.doubleValue(), is(reference(odd)));
+            assertThat(new Fraction(-((1L << 60) + 1), 1L << 40).doubleValue(), is(-0x1p20));
+        }
+
+        @Test
+        public void randomLongs() {
+            Random random = new Random(12);
+            for (int i = 0; i < 5_000; i++) {
+                Fraction value = Fraction.of(random.nextLong() >> random.nextInt(40), (random.nextLong() >>> 1 >> random.nextInt(40)) + 1);
+                assertThat(value.toString(), value.doubleValue(), is(reference(value)));
+            }
+        }
+
+        @Test
+        public void randomBig() {
+            Random random = new Random(13);
+            for (int i = 0; i < 500; i++) {
+                Fraction value = new Fraction(new BigInteger(80 + random.nextInt(200), random).negate(),
+                        new BigInteger(80 + random.nextInt(200), random).add(BigInteger.ONE));
+                assertThat(value.toString(), value.doubleValue(), is(reference(value)));
+            }
+        }
+
+        @Test
+        public void subnormalAndOverflow() {
+            BigInteger two = BigInteger.valueOf(2);
+            assertThat(new Fraction(BigInteger.ONE, two.pow(1074)).doubleValue(), is(Double.MIN_VALUE));
+            assertThat(new Fraction(BigInteger.ONE, two.pow(1075)).doubleValue(), is(0.0));
+            assertThat(new Fraction(BigInteger.valueOf(3), two.pow(1076)).doubleValue(), is(Double.MIN_VALUE));
+            assertThat(new Fraction(BigInteger.valueOf(3), two.pow(1075)).doubleValue(), is(2 * Double.MIN_VALUE));
+            assertThat(new Fraction(two.pow(1024), BigInteger.ONE).doubleValue(), is(Double.POSITIVE_INFINITY));
+        }
+    }
+
+    public static class FloatTest {
+        @Test
+        public void roundsOnceFromTheExactValue() {
+            assertThat(new Fraction(16777217, 1).floatValue(), is(16777216f));
+            assertThat(new Fraction(1, 3).floatValue(), is(1f / 3));
+            Random random = new Random(14);
+            for (int i = 0; i < 2_000; i++) {
+                Fraction value = Fraction.of(random.nextLong() >> random.nextInt(40), (random.nextLong() >>> 1 >> random.nextInt(40)) + 1);
+                assertThat(value.toString(), value.floatValue(), is(value.toBigDecimal(REFERENCE).floatValue()));
+            }
+        }
+
+        @Test
+        public void tinyBigValues() {
+            assertThat(new Fraction(BigInteger.ONE, BigInteger.ONE.shiftLeft(149)).floatValue(), is(Float.MIN_VALUE));
+            assertThat(new Fraction(BigInteger.ONE, BigInteger.ONE.shiftLeft(200)).floatValue(), is(0f));
+        }
+    }
+
+    public static class BigDecimalTest {
+        @Test
+        public void terminating() {
+            assertThat(new Fraction(3, 8).toBigDecimal(MathContext.UNLIMITED), is(new BigDecimal("0.375")));
+            assertThat(new Fraction(-12).toBigDecimal(MathContext.DECIMAL64), is(new BigDecimal(-12)));
+        }
+
+        @Test
+        public void rounded() {
+            assertThat(new Fraction(2, 3).toBigDecimal(new MathContext(5)), is(new BigDecimal("0.66667")));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void nonTerminatingUnlimited() {
+            new Fraction(1, 3).toBigDecimal(MathContext.UNLIMITED);
+        }
+    }
+
+    public static class ArrayTest {
+        @Test
+        public void fillsDoubles() {
+            FractionArray array = FractionArray.of(new Fraction(1, 4), new Fraction(-1, 3), new Fraction(Long.MAX_VALUE, 3L));
+            double[] values = array.toDoubleArray();
+            assertThat(values[0], is(0.25));
+            assertThat(values[1], is(-1.0 / 3));
+            assertThat(values[2], is(reference(array.get(2))));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void lengthDiffers() {
+            FractionArray.of(new Fraction(1)).toDoubleArray(new double[2]);
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        private static final int SIZE = 1 << 18;
+
+        @Test
+        public void againstBigDecimal() {
+            Random random = new Random(15);
+            FractionArray array = new FractionArray(SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                array.set(i, Fraction.of(random.nextInt(), random.nextInt(1 << 30) + 1));
+            }
+            double[] target = new double[SIZE];
+            for (int warm = 0; warm < 5; warm++) {
+                array.toDoubleArray(target);
+            }
+            long start = System.nanoTime();
+            array.toDoubleArray(target);
+            long bulk = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double check = 0;
+            for (int i = 0; i < SIZE; i++) {
+                check += array.get(i).toBigDecimal(MathContext.DECIMAL64).doubleValue();
+            }
+            long decimal = System.nanoTime() - start;
+            LOG.info(String.format("toDoubleArray %.1f ns/value, BigDecimal %.1f ns/value (%s)",
+                    (double) bulk / SIZE, (double) decimal / SIZE, check));
+        }
+    }
+}
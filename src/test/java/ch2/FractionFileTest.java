@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FractionFileTest {
+
+    private static final Logger LOG = Logger.getLogger(FractionFileTest.class.getName());
+
+    private Path path;
+
+    @Before
+    public void createFile() throws IOException {
+        path = Files.createTempFile("fractions", ".bin");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    static List<Fraction> mixedValues() {
+        Random random = new Random(7);
+        return IntStream.range(0, 3000).mapToObj(i -> {
+            switch (i % 3) {
+                case 0: return new Fraction(random.nextInt(), random.nextInt(Integer.MAX_VALUE) + 1);
+                case 1: return new Fraction(random.nextLong(), random.nextLong() >>> 1 | 1);
+                default: return new Fraction(1, 3).power(40 + random.nextInt(40)).multiply(random.nextInt() | 1);
+            }
+        }).collect(Collectors.toList());
+    }
+
+    private void write(Stream<Fraction> values) throws IOException {
+        try (FractionWriter writer = new FractionWriter(path)) {
+            for (Fraction value : (Iterable<Fraction>) values::iterator) {
+                writer.write(value);
+            }
+        }
+    }
+
+    @Test
+    public void readWhatIsWritten() throws IOException {
+        List<Fraction> values = mixedValues();
+        write(values.stream());
+        try (FractionReader reader = new FractionReader(path)) {
+            assertThat(reader.count(), is(3000L));
+            assertThat(reader.stream().collect(Collectors.toList()), is(values));
+        }
+    }
+
+    @Test
+    public void recordsCrossingSmallWindows() throws IOException {
+        List<Fraction> values = mixedValues();
+        write(values.stream());
+        try (FractionReader reader = new FractionReader(path, 64)) {
+            assertThat(reader.stream().collect(Collectors.toList()), is(values));
+        }
+    }
+
+    @Test
+    public void intRecordsAreCompact() throws IOException {
+        write(IntStream.range(1, 101).mapToObj(i -> new Fraction(1, i)));
+        assertThat(Files.size(path), is((long) FractionFormat.HEADER_SIZE + 100 * FractionFormat.INT_RECORD_SIZE));
+    }
+
+    @Test
+    public void sumWithoutMaterializing() throws IOException {
+        List<Fraction> values = mixedValues().subList(0, 300);
+        write(values.stream());
+        try (FractionReader reader = new FractionReader(path, 1024)) {
+            assertThat(reader.sum(), is(values.stream().collect(FractionAccumulator.summing())));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAFractionFile() throws IOException {
+        Files.write(path, "1/2, 3/4, 5/6, 7/8".getBytes(StandardCharsets.UTF_8));
+        new FractionReader(path).close();
+    }
+
+    // each record is valid in shape but not a fraction the writer could have written.
+    @Test
+    public void corruptRecords() throws IOException {
+        ByteBuffer[] records = {
+                ByteBuffer.allocate(9).put(FractionFormat.INT).putInt(1).putInt(0),
+                ByteBuffer.allocate(9).put(FractionFormat.INT).putInt(1).putInt(-2),
+                ByteBuffer.allocate(17).put(FractionFormat.LONG).putLong(Long.MIN_VALUE).putLong(1),
+                ByteBuffer.allocate(12).put(FractionFormat.BIG).putInt(-5).putInt(1).put((byte) 0).put((byte) 0).put((byte) 0),
+                ByteBuffer.allocate(12).put(FractionFormat.BIG).putInt(1000).put((byte) 1).putInt(1).put((byte) 1).put((byte) 1),
+                ByteBuffer.allocate(11).put(FractionFormat.BIG).putInt(1).put((byte) 1).putInt(1).put((byte) 0),
+        };
+        for (ByteBuffer record : records) {
+            ByteBuffer file = ByteBuffer.allocate(FractionFormat.HEADER_SIZE + record.capacity()).order(FractionFormat.ORDER);
+            file.putInt(FractionFormat.MAGIC).putInt(FractionFormat.VERSION).putLong(1L).put(record.array());
+            Files.write(path, file.array());
+            try (FractionReader reader = new FractionReader(path)) {
+                reader.forEach(value -> fail("read " + value));
+                fail("no IOException");
+            } catch (IOException expected) {
+                assertThat(expected.getMessage().startsWith("record at 16 "), is(true));
+            }
+        }
+    }
+
+    @Test
+    public void verifyFindsUnreducedRecords() throws IOException {
+        write(mixedValues().stream());
+        try (FractionReader reader = new FractionReader(path)) {
+            reader.verify();
+        }
+        ByteBuffer file = ByteBuffer.allocate(FractionFormat.HEADER_SIZE + 9).order(FractionFormat.ORDER);
+        file.putInt(FractionFormat.MAGIC).putInt(FractionFormat.VERSION).putLong(1L)
+                .put(FractionFormat.INT).putInt(2).putInt(4);
+        Files.write(path, file.array());
+        try (FractionReader reader = new FractionReader(path)) {
+            reader.verify();
+            fail("no IOException");
+        } catch (IOException expected) {
+            assertThat(expected.getMessage(), is("record at 16 is not a reduced fraction[2/4]."));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void verifyCountsRecords() throws IOException {
+        write(IntStream.range(1, 4).mapToObj(i -> new Fraction(1, i)));
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).order(FractionFormat.ORDER).putLong(FractionFormat.COUNT_OFFSET, 4L);
+        Files.write(path, bytes);
+        try (FractionReader reader = new FractionReader(path)) {
+            reader.verify();
+        }
+    }
+
+    @Test
+    public void binaryScanAgainstText() throws IOException {
+        int size = 1 << 19;
+        write(IntStream.range(0, size).mapToObj(i -> new Fraction(i % 1000 - 500, i % 12 + 1)));
+        Path text = Files.createTempFile("fractions", ".txt");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(text)) {
+                for (int i = 0; i < size; i++) {
+                    writer.write(new Fraction(i % 1000 - 500, i % 12 + 1).toString());
+                    writer.newLine();
+                }
+            }
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                Fraction textSum;
+                try (Stream<String> lines = Files.lines(text)) {
+                    textSum = lines.map(line -> line.split("/"))
+                            .map(parts -> new Fraction(Long.parseLong(parts[0]), Long.parseLong(parts[1])))
+                            .collect(FractionAccumulator.summing());
+                }
+                long middle = System.nanoTime();
+                Fraction binarySum;
+                try (FractionReader reader = new FractionReader(path)) {
+                    binarySum = reader.sum();
+                }
+                long end = System.nanoTime();
+                assertThat(binarySum, is(textSum));
+                LOG.info(String.format("%d records: text %d ms (%d bytes), mapped binary %d ms (%d bytes)",
+                        size, (middle - start) / 1000000, Files.size(text), (end - middle) / 1000000, Files.size(path)));
+            }
+        } finally {
+            Files.deleteIfExists(text);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionMapTest {
+
+    private static final Fraction BIG = new Fraction(BigInteger.ONE.shiftLeft(80), BigInteger.valueOf(3));
+
+    private static Fraction[] randomFractions(int size, int range, long seed) {
+        Random random = new Random(seed);
+        Fraction[] values = new Fraction[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = Fraction.of(random.nextInt(2 * range) - range, random.nextInt(range) + 1);
+        }
+        return values;
+    }
+
+    public static class LongMapTest {
+        @Test
+        public void putAndGet() {
+            FractionToLongMap map = new FractionToLongMap();
+            assertThat(map.put(new Fraction(1, 2), 5L), is(0L));
+            assertThat(map.put(new Fraction(2, 4), 7L), is(5L));
+            assertThat(map.get(new Fraction(-1, -2)), is(7L));
+            assertThat(map.containsKey(new Fraction(-1, 2)), is(false));
+            assertThat(map.getOrDefault(new Fraction(-1, 2), -1L), is(-1L));
+            assertThat(map.size(), is(1));
+        }
+
+        @Test
+        public void signIsPartOfTheKey() {
+            FractionToLongMap map = new FractionToLongMap();
+            map.addTo(new Fraction(3, 7), 1L);
+            map.addTo(new Fraction(-3, 7), 2L);
+            assertThat(map.get(new Fraction(3, 7)), is(1L));
+            assertThat(map.get(new Fraction(-3, 7)), is(2L));
+        }
+
+        @Test
+        public void bigKeys() {
+            FractionToLongMap map = new FractionToLongMap();
+            map.addTo(BIG, 3L);
+            map.addTo(BIG, 4L);
+            map.addTo(Fraction.valueOf(0), 1L);
+            assertThat(map.get(BIG), is(7L));
+            assertThat(map.size(), is(2));
+            assertThat(map.toMap().get(BIG), is(7L));
+        }
+
+        @Test
+        public void growsAndMatchesHashMap() {
+            Fraction[] values = randomFractions(50_000, 300, 20);
+            FractionToLongMap map = new FractionToLongMap();
+            Map<Fraction, Long> expected = new HashMap<>();
+            for (Fraction value : values) {
+                map.addTo(value, 1L);
+                expected.merge(value, 1L, Long::sum);
+            }
+            assertThat(map.size(), is(expected.size()));
+            assertThat(map.toMap(), is(expected));
+        }
+
+        @Test
+        public void addAllAndClear() {
+            FractionToLongMap left = Stream.of(new Fraction(1, 3), BIG).collect(FractionToLongMap.counting());
+            FractionToLongMap right = Stream.of(new Fraction(1, 3), new Fraction(2)).collect(FractionToLongMap.counting());
+            left.addAll(right);
+            assertThat(left.get(new Fraction(1, 3)), is(2L));
+            assertThat(left.size(), is(3));
+            left.clear();
+            assertThat(left.isEmpty(), is(true));
+            left.addTo(new Fraction(1, 3), 1L);
+            assertThat(left.get(new Fraction(1, 3)), is(1L));
+        }
+
+        @Test
+        public void parallelCollectorMatchesGroupingBy() {
+            Fraction[] values = randomFractions(20_000, 50, 21);
+            Map<Fraction, Long> expected = Arrays.stream(values)
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            assertThat(Arrays.stream(values).parallel().collect(FractionToLongMap.counting()).toMap(), is(expected));
+        }
+
+        @Test
+        public void summingByKey() {
+            FractionToLongMap map = Stream.of("1/2", "2/4", "3/4")
+                    .collect(FractionToLongMap.summing(s -> new FractionCodec().parse(s).toFraction(), String::length));
+            assertThat(map.get(new Fraction(1, 2)), is(6L));
+            assertThat(map.get(new Fraction(3, 4)), is(3L));
+        }
+    }
+
+    public static class IntMapTest {
+        @Test
+        public void countingMatchesGroupingBy() {
+            Fraction[] values = randomFractions(30_000, 100, 22);
+            Map<Fraction, Integer> expected = Arrays.stream(values)
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.summingInt(f -> 1)));
+            FractionToIntMap map = Arrays.stream(values).collect(FractionToIntMap.counting());
+            assertThat(map.toMap(), is(expected));
+        }
+
+        @Test
+        public void putAndAdd() {
+            FractionToIntMap map = new FractionToIntMap(4);
+            assertThat(map.put(BIG, 2), is(0));
+            assertThat(map.addTo(BIG, 3), is(5));
+            assertThat(map.addTo(new Fraction(5, 9), -1), is(-1));
+            assertThat(map.get(new Fraction(10, 18)), is(-1));
+            assertThat(map.size(), is(2));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void negativeExpectedSize() {
+            new FractionToIntMap(-1);
+        }
+    }
+
+    public static class HashTest {
+        @Test
+        public void capacity() {
+            assertThat(FractionHashTable.capacityFor(0), is(16));
+            assertThat(FractionHashTable.capacityFor(8), is(16));
+            assertThat(FractionHashTable.capacityFor(9), is(32));
+            assertThat(FractionHashTable.capacityFor(1000), is(2048));
+        }
+
+        // integers and unit fractions are the keys Fraction.hashCode spreads worst.
+        @Test
+        public void structuredKeysSpreadEvenly() {
+            int buckets = 1 << 12;
+            int[] counts = new int[buckets];
+            for (int i = 1; i <= buckets; i++) {
+                counts[FractionHashTable.hash(i, 1L) & (buckets - 1)]++;
+                counts[FractionHashTable.hash(1L, i) & (buckets - 1)]++;
+            }
+            assertThat(Arrays.stream(counts).max().getAsInt() <= 12, is(true));
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        private static final int SIZE = 1 << 19;
+
+        @Test
+        public void histogramAgainstHashMap() {
+            Fraction[] values = randomFractions(SIZE, 1 << 10, 23);
+            for (int warm = 0; warm < 2; warm++) {
+                Arrays.stream(values).collect(FractionToLongMap.counting());
+                Arrays.stream(values).collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            }
+            long start = System.nanoTime();
+            FractionToLongMap map = Arrays.stream(values).collect(FractionToLongMap.counting());
+            long primitive = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Map<Fraction, Long> boxed = Arrays.stream(values)
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            long hashMap = System.nanoTime() - start;
+            assertThat(map.size(), is(boxed.size()));
+            LOG.info(String.format("%d values, %d keys: FractionToLongMap %d ms, HashMap<Fraction, Long> %d ms",
+                    SIZE, map.size(), primitive / 1_000_000, hashMap / 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import ch6.Matrix;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionMatrixTest {
+
+    private static Fraction f(int numerator, int denominator) {
+        return new Fraction(numerator, denominator);
+    }
+
+    private static Fraction f(int value) {
+        return Fraction.valueOf(value);
+    }
+
+    static FractionMatrix random(int size, long seed) {
+        Random random = new Random(seed);
+        Fraction[][] rows = new Fraction[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                rows[row][column] = Fraction.of(random.nextInt(19) - 9, random.nextInt(4) + 1);
+            }
+        }
+        return FractionMatrix.of(rows);
+    }
+
+    public static class DeterminantTest {
+        @Test
+        public void smallMatrices() {
+            assertThat(FractionMatrix.of(new Fraction[][]{{f(1, 2), f(1, 3)}, {f(1, 4), f(1, 5)}}).determinant(),
+                    is(f(1, 60)));
+            assertThat(FractionMatrix.of(new Fraction[][]{{f(2), f(0), f(1)}, {f(1), f(3), f(2)}, {f(1), f(1), f(2)}})
+                    .determinant(), is(f(6)));
+            assertThat(FractionMatrix.identity(5).determinant(), is(f(1)));
+        }
+
+        @Test
+        public void rowSwapChangesSign() {
+            assertThat(FractionMatrix.of(new Fraction[][]{{f(0), f(1)}, {f(1), f(0)}}).determinant(), is(f(-1)));
+        }
+
+        @Test
+        public void singular() {
+            FractionMatrix singular = FractionMatrix.of(new Fraction[][]{{f(1, 2), f(1)}, {f(1, 4), f(1, 2)}});
+            assertThat(singular.determinant(), is(f(0)));
+        }
+
+        @Test
+        public void productOfDeterminants() {
+            FractionMatrix left = random(6, 30);
+            FractionMatrix right = random(6, 31);
+            assertThat(left.multiply(right).determinant(), is(left.determinant().multiply(right.determinant())));
+        }
+
+        @Test
+        public void parallelSizeMatchesTriangularProduct() {
+            int size = 70;
+            Fraction[][] rows = new Fraction[size][size];
+            Fraction expected = f(1);
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    rows[row][column] = column < row? f(0):f(row % 5 + 1, column % 3 + 1);
+                }
+                expected = expected.multiply(rows[row][row]);
+            }
+            // mixing the rows keeps the determinant but makes the elimination do real work.
+            for (int column = 0; column < size; column++) {
+                for (int row = 1; row < size; row++) {
+                    rows[row][column] = rows[row][column].plus(rows[row - 1][column]);
+                }
+            }
+            assertThat(FractionMatrix.of(rows).determinant(), is(expected));
+        }
+    }
+
+    public static class InverseTest {
+        @Test
+        public void inverseTimesMatrixIsIdentity() {
+            FractionMatrix matrix = random(7, 32);
+            assertThat(matrix.multiply(matrix.inverse()), is(FractionMatrix.identity(7)));
+            assertThat(matrix.inverse().multiply(matrix), is(FractionMatrix.identity(7)));
+        }
+
+        @Test
+        public void hilbertMatrix() {
+            int size = 6;
+            Fraction[][] rows = new Fraction[size][size];
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    rows[row][column] = f(1, row + column + 1);
+                }
+            }
+            FractionMatrix inverse = FractionMatrix.of(rows).inverse();
+            assertThat(inverse.get(0, 0), is(f(36)));
+            assertThat(inverse.get(5, 5), is(f(698544)));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void singular() {
+            FractionMatrix.of(new Fraction[][]{{f(1), f(2)}, {f(2), f(4)}}).inverse();
+        }
+    }
+
+    public static class SolveTest {
+        @Test
+        public void solvesExactly() {
+            FractionMatrix matrix = FractionMatrix.of(new Fraction[][]{{f(2), f(1)}, {f(1), f(3)}});
+            Fraction[] x = matrix.solve(new Fraction[]{f(1), f(2)});
+            assertThat(x[0], is(f(1, 5)));
+            assertThat(x[1], is(f(3, 5)));
+        }
+
+        @Test
+        public void randomSystem() {
+            FractionMatrix matrix = random(9, 33);
+            Fraction[] b = new Fraction[9];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = f(i * 3 - 7, i + 2);
+            }
+            Fraction[] x = matrix.solve(b);
+            Fraction[] back = matrix.multiply(x);
+            for (int i = 0; i < b.length; i++) {
+                assertThat(back[i], is(b[i]));
+            }
+        }
+
+        @Test
+        public void bigEntries() {
+            Fraction big = new Fraction(BigInteger.ONE.shiftLeft(100), BigInteger.valueOf(7));
+            FractionMatrix matrix = FractionMatrix.of(new Fraction[][]{{big, f(1)}, {f(1), f(0)}});
+            assertThat(matrix.get(0, 0), is(big));
+            assertThat(matrix.solve(new Fraction[]{big, f(1)})[0], is(f(1)));
+            assertThat(matrix.determinant(), is(f(-1)));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void sizeDiffers() {
+            FractionMatrix.identity(2).solve(new Fraction[]{f(1)});
+        }
+    }
+
+    public static class InteropTest {
+        @Test
+        public void fromAndToMatrix() {
+            Matrix fibonacci = Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+            FractionMatrix matrix = FractionMatrix.of(fibonacci);
+            assertThat(matrix.determinant(), is(f(fibonacci.getDeterminant())));
+            Matrix square = matrix.multiply(matrix).toMatrix();
+            assertThat(square.getLeftTop(), is(2));
+            assertThat(square.getRightBottom(), is(1));
+        }
+
+        @Test
+        public void inverseOfUnimodularMatrixIsIntegral() {
+            Matrix fibonacci = Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+            Matrix inverse = FractionMatrix.of(fibonacci).inverse().toMatrix();
+            assertThat(inverse.multiply(fibonacci).getLeftTop(), is(1));
+            assertThat(inverse.getRightBottom(), is(-1));
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void notTwoByTwo() {
+            FractionMatrix.identity(3).toMatrix();
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void nonIntegralEntries() {
+            FractionMatrix.of(new Fraction[][]{{f(1, 2), f(0)}, {f(0), f(1)}}).toMatrix();
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        // -Dch2.FractionMatrixTest.maxSize=512 runs the larger sizes, which take minutes.
+        private static final int MAX_SIZE = Integer.getInteger("ch2.FractionMatrixTest.maxSize", 64);
+
+        @Test
+        public void sizes() {
+            random(8, 1).inverse();
+            for (int size = 8; size <= MAX_SIZE; size <<= 1) {
+                FractionMatrix matrix = random(size, size);
+                long start = System.nanoTime();
+                Fraction determinant = matrix.determinant();
+                long determinantTime = System.nanoTime() - start;
+                Fraction[] b = new Fraction[size];
+                for (int i = 0; i < size; i++) {
+                    b[i] = f(i + 1);
+                }
+                start = System.nanoTime();
+                matrix.solve(b);
+                long solveTime = System.nanoTime() - start;
+                LOG.info(String.format("%3d x %-3d determinant %8.2f ms (%d bits), solve %8.2f ms", size, size,
+                        determinantTime / 1e6, determinant.bigNumerator().bitLength(), solveTime / 1e6));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionSeriesTest {
+
+    static Fraction linear(Stream<Fraction> terms) {
+        return terms.reduce(new Fraction(0), Fraction::plus);
+    }
+
+    public static class GeometricTest {
+        private final FractionSeries halves = FractionSeries.geometric(new Fraction(1), new Fraction(1, 2));
+
+        @Test
+        public void sameAsStreamReductionTest() {
+            assertThat(halves.sum(10), is(new Fraction(2).minus(new Fraction(1, 2).power(9))));
+        }
+
+        @Test
+        public void sumIsSameAsLinearReduce() {
+            FractionSeries series = FractionSeries.geometric(new Fraction(-3, 5), new Fraction(-2, 7));
+            for (int count = 0; count < 40; count++) {
+                assertThat(series.sum(count), is(linear(series.stream().limit(count))));
+            }
+        }
+
+        @Test
+        public void ratioOne() {
+            FractionSeries series = FractionSeries.geometric(new Fraction(2, 3), new Fraction(1));
+            assertThat(series.sum(6), is(new Fraction(4)));
+        }
+
+        @Test
+        public void termIsSameAsIteration() {
+            assertThat(halves.term(70), is(halves.stream().skip(70).findFirst().get()));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void negativeCount() {
+            halves.sum(-1);
+        }
+    }
+
+    public static class ArithmeticTest {
+        @Test
+        public void sameAsFilterIntCalculation() {
+            FractionSeries thirds = FractionSeries.arithmetic(new Fraction(1, 3), new Fraction(2, 3));
+            assertThat(thirds.sum(30), is(linear(thirds.stream().limit(30))));
+            assertThat(thirds.term(29), is(new Fraction(59, 3)));
+        }
+
+        @Test
+        public void largeCount() {
+            FractionSeries series = FractionSeries.arithmetic(new Fraction(1), new Fraction(1));
+            assertThat(series.sum(1000000), is(new Fraction(500000500000L, 1L)));
+        }
+    }
+
+    public static class TreeSumTest {
+        @Test
+        public void sameAsLinearReduce() {
+            Fraction[] terms = IntStream.rangeClosed(1, 3000).mapToObj(i -> new Fraction(1, i)).toArray(Fraction[]::new);
+            assertThat(FractionSeries.treeSum(terms), is(linear(Stream.of(terms))));
+        }
+
+        @Test
+        public void emptyIsZero() {
+            assertThat(FractionSeries.treeSum(new Fraction[0]), is(new Fraction(0)));
+        }
+    }
+
+    public static class BenchmarkTest {
+
+        private static final Logger LOG = Logger.getLogger(BenchmarkTest.class.getName());
+
+        private static long millis(Supplier<Fraction> operation, Fraction expected) {
+            long start = System.nanoTime();
+            assertThat(operation.get(), is(expected));
+            return (System.nanoTime() - start) / 1000000;
+        }
+
+        @Test
+        public void harmonicSeries() {
+            int count = 2000;
+            Fraction expected = FractionSeries.treeSum(IntStream.rangeClosed(1, count).mapToObj(i -> new Fraction(1, i)));
+            for (int round = 0; round < 2; round++) {
+                long linear = millis(() -> linear(IntStream.rangeClosed(1, count).mapToObj(i -> new Fraction(1, i))), expected);
+                long tree = millis(() -> FractionSeries.treeSum(IntStream.rangeClosed(1, count).mapToObj(i -> new Fraction(1, i))), expected);
+                LOG.info(String.format("harmonic %d terms: reduce %d ms, tree %d ms", count, linear, tree));
+            }
+        }
+
+        @Test
+        public void geometricSeries() {
+            int count = 1500;
+            FractionSeries series = FractionSeries.geometric(new Fraction(1), new Fraction(2, 3));
+            Fraction expected = series.sum(count);
+            for (int round = 0; round < 2; round++) {
+                long linear = millis(() -> linear(series.stream().limit(count)), expected);
+                long tree = millis(() -> FractionSeries.treeSum(series.stream().limit(count)), expected);
+                long closed = millis(() -> series.sum(count), expected);
+                LOG.info(String.format("geometric %d terms: reduce %d ms, tree %d ms, closed form %d ms",
+                        count, linear, tree, closed));
+            }
+        }
+    }
+}
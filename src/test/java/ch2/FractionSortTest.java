@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class FractionSortTest {
+
+    static Fraction[] randomFractions(long seed, int count) {
+        Random random = new Random(seed);
+        return IntStream.range(0, count).mapToObj(i -> {
+            switch (i % 4) {
+                case 0: return new Fraction(random.nextInt(2001) - 1000, random.nextInt(1000) + 1);
+                case 1: return new Fraction(random.nextLong(), random.nextLong() >>> 1 | 1);
+                case 2: {
+                    long den = (random.nextLong() >>> 2) + 2;
+                    return new Fraction(den - 1, den);
+                }
+                default: return new Fraction(1, 3).power(40 + random.nextInt(5)).multiply(random.nextInt());
+            }
+        }).toArray(Fraction[]::new);
+    }
+
+    public static class CompareTest {
+        @Test
+        public void crossProductsBeyondLong() {
+            Fraction left = new Fraction(Long.MAX_VALUE - 1, Long.MAX_VALUE);
+            Fraction right = new Fraction(Long.MAX_VALUE - 2, Long.MAX_VALUE - 1);
+            assertThat(left.compareTo(right) > 0, is(true));
+            assertThat(right.compareTo(left) < 0, is(true));
+        }
+
+        @Test
+        public void negativeValues() {
+            Fraction left = new Fraction(-(Long.MAX_VALUE - 1), Long.MAX_VALUE);
+            Fraction right = new Fraction(-(Long.MAX_VALUE - 2), Long.MAX_VALUE - 1);
+            assertThat(left.compareTo(right) < 0, is(true));
+        }
+
+        @Test
+        public void compareWithInt() {
+            assertThat(new Fraction(Long.MAX_VALUE, 3L).compareTo(Integer.MAX_VALUE) > 0, is(true));
+            assertThat(new Fraction(-7, 2).compareTo(-3) < 0, is(true));
+            assertThat(new Fraction(6, 2).compareTo(3), is(0));
+        }
+
+        @Test
+        public void multiplyHighOfExtremes() {
+            assertThat(Fraction.multiplyHigh(Long.MAX_VALUE, Long.MAX_VALUE), is(Long.MAX_VALUE >>> 1));
+            assertThat(Fraction.multiplyHigh(Long.MIN_VALUE, Long.MIN_VALUE), is(1L << 62));
+            assertThat(Fraction.multiplyHigh(-1L, 1L), is(-1L));
+        }
+    }
+
+    public static class ParallelSortTest {
+        @Test
+        public void sameAsNaturalOrder() {
+            Fraction[] expected = randomFractions(1, 50000);
+            Fraction[] actual = expected.clone();
+            Arrays.sort(expected);
+            FractionSort.parallelSort(actual);
+            assertThat(Arrays.equals(actual, expected), is(true));
+        }
+
+        @Test
+        public void nearlyEqualValuesAreOrderedExactly() {
+            Fraction[] values = IntStream.range(0, 1000)
+                    .mapToObj(i -> new Fraction(Long.MAX_VALUE - 1000 + i, Long.MAX_VALUE - 999 + i))
+                    .toArray(Fraction[]::new);
+            Fraction[] expected = values.clone();
+            Collections.reverse(Arrays.asList(values));
+            FractionSort.parallelSort(values);
+            assertThat(Arrays.equals(values, expected), is(true));
+        }
+
+        @Test
+        public void emptyArray() {
+            FractionSort.parallelSort(new Fraction[0]);
+        }
+    }
+
+    public static class BenchmarkTest {
+
+        private static final Logger LOG = Logger.getLogger(BenchmarkTest.class.getName());
+
+        @Test
+        public void againstArraysParallelSort() {
+            Fraction[] values = randomFractions(2, 1 << 17);
+            for (int round = 0; round < 3; round++) {
+                Fraction[] natural = values.clone();
+                Fraction[] keyed = values.clone();
+                long start = System.nanoTime();
+                Arrays.parallelSort(natural);
+                long middle = System.nanoTime();
+                FractionSort.parallelSort(keyed);
+                long end = System.nanoTime();
+                assertThat(Arrays.equals(natural, keyed), is(true));
+                LOG.info(String.format("%d fractions: Arrays.parallelSort %d ms, FractionSort %d ms",
+                        values.length, (middle - start) / 1000000, (end - middle) / 1000000));
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch2;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class GcdTest {
+
+    static int euclid(int left, int right) {
+        return right == 0? left:euclid(right, left % right);
+    }
+
+    static long euclid(long left, long right) {
+        return right == 0? left:euclid(right, left % right);
+    }
+
+    public static class BinaryTest {
+        @Test
+        public void gcdOf12And18Is6() {
+            assertThat(Gcd.of(12, 18), is(6));
+            assertThat(Gcd.of(12L, 18L), is(6L));
+        }
+
+        @Test
+        public void gcdWithZeroIsTheOther() {
+            assertThat(Gcd.of(0, 7), is(7));
+            assertThat(Gcd.of(7L, 0L), is(7L));
+        }
+
+        @Test
+        public void gcdIgnoresSign() {
+            assertThat(Gcd.of(-144, 84), is(12));
+            assertThat(Gcd.of(144L, -84L), is(12L));
+        }
+
+        @Test
+        public void unsignedMagnitudeOf2To63() {
+            assertThat(Gcd.binary(Long.MIN_VALUE, 3L << 40), is(1L << 40));
+        }
+
+        @Test
+        public void sameAsEuclid() {
+            Random random = new Random(46);
+            for (int i = 0; i < 10000; i++) {
+                long left = random.nextLong() >>> 1;
+                long right = random.nextLong() >>> (1 + random.nextInt(62));
+                assertThat(Gcd.of(left, right), is(euclid(left, right)));
+                int small = (int) left >>> 1;
+                int smaller = (int) right >>> 1;
+                assertThat(Gcd.of(small, smaller), is(euclid(small, smaller)));
+            }
+        }
+    }
+
+    public static class LehmerTest {
+        @Test
+        public void sameAsBigIntegerGcd() {
+            Random random = new Random(84);
+            for (int bits : new int[]{64, 100, 256, 1024}) {
+                for (int i = 0; i < 200; i++) {
+                    BigInteger common = new BigInteger(bits / 2, random);
+                    BigInteger left = new BigInteger(bits, random).multiply(common);
+                    BigInteger right = new BigInteger(bits - random.nextInt(bits / 2), random).multiply(common);
+                    assertThat(Gcd.lehmer(left, right), is(left.gcd(right)));
+                    assertThat(Gcd.of(right, left.negate()), is(left.gcd(right)));
+                }
+            }
+        }
+
+        @Test
+        public void gcdWithZeroIsTheOther() {
+            BigInteger value = BigInteger.ONE.shiftLeft(200).add(BigInteger.ONE);
+            assertThat(Gcd.lehmer(value, BigInteger.ZERO), is(value));
+        }
+    }
+
+    public static class BenchmarkTest {
+
+        private static final Logger LOG = Logger.getLogger(BenchmarkTest.class.getName());
+
+        private static final int SIZE = 1 << 14;
+
+        private static final int ROUNDS = 20;
+
+        private static double nanosPerOperation(LongSupplier operation) {
+            long sink = 0;
+            for (int i = 0; i < 3; i++) {
+                sink += operation.getAsLong();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += operation.getAsLong();
+            }
+            long elapsed = System.nanoTime() - start;
+            assertThat(sink != 42, is(true));
+            return (double) elapsed / ROUNDS / SIZE;
+        }
+
+        @Test
+        public void intOperands() {
+            Random random = new Random(1);
+            int[] left = random.ints(SIZE, 1, Integer.MAX_VALUE).toArray();
+            int[] right = random.ints(SIZE, 1, Integer.MAX_VALUE).toArray();
+            double euclid = nanosPerOperation(() -> {
+                long sum = 0;
+                for (int i = 0; i < SIZE; i++) sum += euclid(left[i], right[i]);
+                return sum;
+            });
+            // Gcd.of(int, int) runs the binary algorithm on the widened magnitudes.
+            double binary = nanosPerOperation(() -> {
+                long sum = 0;
+                for (int i = 0; i < SIZE; i++) sum += Gcd.of(left[i], right[i]);
+                return sum;
+            });
+            LOG.info(String.format("int    : euclid %7.1f ns, Gcd.of binary %7.1f ns, x%.2f", euclid, binary, euclid / binary));
+        }
+
+        @Test
+        public void longOperands() {
+            Random random = new Random(2);
+            long[] left = random.longs(SIZE, 1, Long.MAX_VALUE).toArray();
+            long[] right = random.longs(SIZE, 1, Long.MAX_VALUE).toArray();
+            double euclid = nanosPerOperation(() -> {
+                long sum = 0;
+                for (int i = 0; i < SIZE; i++) sum += euclid(left[i], right[i]);
+                return sum;
+            });
+            double binary = nanosPerOperation(() -> {
+                long sum = 0;
+                for (int i = 0; i < SIZE; i++) sum += Gcd.binary(left[i], right[i]);
+                return sum;
+            });
+            LOG.info(String.format("long   : euclid %7.1f ns, binary %7.1f ns, x%.2f", euclid, binary, euclid / binary));
+        }
+
+        @Test
+        public void bigOperands() {
+            Random random = new Random(3);
+            for (int bits : new int[]{128, 512, 2048}) {
+                BigInteger[] left = new BigInteger[SIZE / 128];
+                BigInteger[] right = new BigInteger[SIZE / 128];
+                for (int i = 0; i < left.length; i++) {
+                    left[i] = new BigInteger(bits, random);
+                    right[i] = new BigInteger(bits, random);
+                }
+                double library = nanosPerOperation(() -> {
+                    long sum = 0;
+                    for (int i = 0; i < left.length; i++) sum += left[i].gcd(right[i]).bitLength();
+                    return sum;
+                }) * 128;
+                double lehmer = nanosPerOperation(() -> {
+                    long sum = 0;
+                    for (int i = 0; i < left.length; i++) sum += Gcd.lehmer(left[i], right[i]).bitLength();
+                    return sum;
+                }) * 128;
+                LOG.info(String.format("%4d bit: BigInteger.gcd %8.1f ns, lehmer %8.1f ns, x%.2f",
+                        bits, library, lehmer, library / lehmer));
+            }
+        }
+
+        @Test
+        public void fractionReduction() {
+            Random random = new Random(4);
+            long[] numerators = random.longs(SIZE, 1, 1L << 40).toArray();
+            long[] denominators = random.longs(SIZE, 1, 1L << 40).toArray();
+            double fraction = nanosPerOperation(() -> {
+                long sum = 0;
+                for (int i = 0; i < SIZE; i++) sum += new Fraction(numerators[i], denominators[i]).hashCode();
+                return sum;
+            });
+            LOG.info(String.format("Fraction(long, long): %7.1f ns", fraction));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -312,6 +313,51 @@ public class ReductionTest {
             Fraction powered = fraction.power(5);
             assertThat(powered.compareTo(0) < 0, is(true));
         }
+
+        @Test
+        public void power0IsOne() {
+            assertThat(new Fraction(-5, 7).power(0), is(new Fraction(1)));
+            assertThat(new Fraction(0).power(0), is(new Fraction(1)));
+        }
+
+        @Test
+        public void negativePowerIsPowerOfTranspose() {
+            assertThat(new Fraction(-2, 3).power(-3), is(new Fraction(-27, 8)));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void negativePowerOfZero() {
+            new Fraction(0).power(-1);
+        }
+
+        @Test
+        public void powerBeyondLongIsExact() {
+            Fraction powered = new Fraction(-2, 3).power(101);
+            assertThat(powered.toString(), is("-" + BigInteger.valueOf(2).pow(101) + "/" + BigInteger.valueOf(3).pow(101)));
+            assertThat(powered.power(2), is(new Fraction(4, 9).power(101)));
+        }
+
+        @Test
+        public void innerPowerBySquaring() {
+            assertThat(power(3, 19), is(1162261467));
+            assertThat(power(-2, 31), is(Integer.MIN_VALUE));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void innerPowerOverflows() {
+            power(2, 31);
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void innerPowerOfNegativeInt() {
+            power(1, -1);
+        }
+
+        // 1 would come back after 64 squarings if the guard were missing.
+        @Test(expected = ArithmeticException.class)
+        public void innerPowerOfNegativeLong() {
+            power(1L, -1L);
+        }
     }
 
     public static class IntOperationTest {
@@ -335,6 +381,70 @@ public class ReductionTest {
         }
     }
 
+    public static class TierTest {
+        @Test
+        public void smallValuesStayInIntTier() {
+            Fraction fraction = new Fraction(1, 2).plus(new Fraction(1, 3));
+            assertThat(fraction.tier(), is(Fraction.Tier.INT));
+        }
+
+        @Test
+        public void denominatorsBeyondIntMoveUpToLongTier() {
+            Fraction fraction = new Fraction(1, 46349).plus(new Fraction(1, 46351));
+            assertThat(fraction, is(new Fraction(92700L, 46349L * 46351L)));
+            assertThat(fraction.tier(), is(Fraction.Tier.LONG));
+        }
+
+        @Test
+        public void denominatorsBeyondLongMoveUpToBigTier() {
+            Fraction sum = Stream
+                    .iterate(new Fraction(1), f -> f.multiply(new Fraction(1, 2)))
+                    .limit(101)
+                    .reduce(new Fraction(0), (s, f) -> s.plus(f));
+            BigInteger den = BigInteger.ONE.shiftLeft(100);
+            assertThat(sum.tier(), is(Fraction.Tier.BIG));
+            assertThat(sum.toString(), is(den.shiftLeft(1).subtract(BigInteger.ONE) + "/" + den));
+        }
+
+        @Test
+        public void reducedValueDropsBackToIntTier() {
+            Fraction big = new Fraction(1, 3).power(50);
+            assumeThat(big.tier(), is(Fraction.Tier.BIG));
+            Fraction one = big.multiply(big.transpose());
+            assertThat(one.tier(), is(Fraction.Tier.INT));
+            assertThat(one, is(new Fraction(1)));
+        }
+
+        @Test
+        public void longMinValueIsKeptExactly() {
+            Fraction fraction = new Fraction(Long.MIN_VALUE, 1L);
+            assertThat(fraction.tier(), is(Fraction.Tier.BIG));
+            assertThat(fraction.toString(), is(Long.MIN_VALUE + "/1"));
+            assertThat(new Fraction(Long.MIN_VALUE, 2L), is(new Fraction(-(1L << 62), 1L)));
+        }
+
+        @Test
+        public void comparisonDoesNotOverflow() {
+            Fraction big = new Fraction(Integer.MAX_VALUE, 2);
+            Fraction small = new Fraction(Integer.MAX_VALUE - 1, 3);
+            assertThat(big.compareTo(small) > 0, is(true));
+            assertThat(small.compareTo(big) < 0, is(true));
+        }
+
+        @Test
+        public void comparisonRespectsSign() {
+            assertThat(new Fraction(-1, 2).compareTo(new Fraction(1, 4)) < 0, is(true));
+            assertThat(new Fraction(-1, 2).compareTo(new Fraction(-1, 4)) < 0, is(true));
+            assertThat(new Fraction(0).compareTo(new Fraction(-1, 4)) > 0, is(true));
+        }
+
+        @Test
+        public void zeroIsNotNegative() {
+            assertThat(new Fraction(1, 2).multiply(0), is(new Fraction(0)));
+            assertThat(new Fraction(-1, 2).plus(new Fraction(1, 2)), is(new Fraction(0)));
+        }
+    }
+
     public static class StreamReductionTest {
         @Test
         public void plus() {
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static ch6.DenseMatrixTest.randomDouble;
+import static ch6.DenseMatrixTest.randomLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(Enclosed.class)
+public class DecompositionTest {
+
+    static void assertClose(DenseDoubleMatrix actual, DenseDoubleMatrix expected, double tolerance) {
+        assertThat(actual.rows(), is(expected.rows()));
+        assertThat(actual.columns(), is(expected.columns()));
+        for (int i = 0; i < actual.rows(); i++) {
+            for (int j = 0; j < actual.columns(); j++) {
+                assertTrue("[" + i + ", " + j + "] " + actual.get(i, j) + " vs " + expected.get(i, j),
+                        Math.abs(actual.get(i, j) - expected.get(i, j)) <= tolerance);
+            }
+        }
+    }
+
+    static DenseDoubleMatrix permuted(DenseDoubleMatrix matrix, int[] pivot) {
+        double[] values = new double[matrix.rows() * matrix.columns()];
+        for (int i = 0; i < pivot.length; i++) {
+            for (int j = 0; j < matrix.columns(); j++) {
+                values[i * matrix.columns() + j] = matrix.get(pivot[i], j);
+            }
+        }
+        return DenseDoubleMatrix.of(matrix.rows(), matrix.columns(), values);
+    }
+
+    public static class LuTest {
+        @Test
+        public void determinantOf3x3() {
+            DenseDoubleMatrix matrix = DenseDoubleMatrix.rows(3).columns(3)
+                    .row(2, -3, 1).row(2, 0, -1).row(1, 4, 5).make();
+            assertThat(Math.abs(matrix.getDeterminant() - 49) < 1e-12, is(true));
+        }
+
+        @Test
+        public void matchesMatrixFor2x2() {
+            Matrix matrix = Matrix.leftTop(3).rightTop(8).leftBottom(4).rightBottom(6).make();
+            assertThat(DenseDoubleMatrix.of(matrix).getDeterminant(), is((double) matrix.getDeterminant()));
+        }
+
+        @Test
+        public void rowSwapFlipsSign() {
+            DenseDoubleMatrix matrix = DenseDoubleMatrix.rows(2).columns(2).row(0, 1).row(1, 0).make();
+            assertThat(matrix.getDeterminant(), is(-1.0));
+            assertThat(matrix.lu().getPivot(), is(new int[]{1, 0}));
+        }
+
+        @Test
+        public void reconstructs() {
+            for (int size : new int[]{1, 5, 63, 64, 65, 200}) {
+                DenseDoubleMatrix matrix = randomDouble(size, size, size);
+                LuDecomposition lu = matrix.lu();
+                assertClose(lu.getL().multiply(lu.getU()), permuted(matrix, lu.getPivot()), 1e-9 * size);
+            }
+        }
+
+        @Test
+        public void inverseAndSolve() {
+            DenseDoubleMatrix matrix = randomDouble(150, 150, 25);
+            assertClose(matrix.inverse().multiply(matrix), DenseDoubleMatrix.identity(150), 1e-9);
+            double[] x = new double[150];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = i - 75;
+            }
+            double[] b = matrix.multiply(DenseDoubleMatrix.of(150, 1, x)).toArray();
+            assertClose(DenseDoubleMatrix.of(150, 1, matrix.lu().solve(b)), DenseDoubleMatrix.of(150, 1, x), 1e-8);
+        }
+
+        @Test
+        public void cached() {
+            DenseDoubleMatrix matrix = randomDouble(100, 100, 26);
+            assertThat(matrix.lu(), is(sameInstance(matrix.lu())));
+        }
+
+        @Test
+        public void singular() {
+            DenseDoubleMatrix matrix = DenseDoubleMatrix.rows(3).columns(3).row(1, 2, 3).row(2, 4, 6).row(1, 0, 1).make();
+            assertThat(matrix.lu().isSingular(), is(true));
+            assertThat(matrix.getDeterminant(), is(0.0));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void singularInverse() {
+            DenseDoubleMatrix.rows(2).columns(2).row(1, 2).row(2, 4).make().inverse();
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void notSquare() {
+            randomDouble(2, 3, 1).getDeterminant();
+        }
+    }
+
+    public static class QrTest {
+        @Test
+        public void reconstructs() {
+            for (int[] size : new int[][]{{1, 1}, {5, 5}, {80, 30}, {120, 120}}) {
+                DenseDoubleMatrix matrix = randomDouble(size[0], size[1], size[0] + size[1]);
+                QrDecomposition qr = matrix.qr();
+                DenseDoubleMatrix q = qr.getQ();
+                assertClose(q.multiply(qr.getR()), matrix, 1e-9 * size[0]);
+                assertClose(q.transpose().multiply(q), DenseDoubleMatrix.identity(size[1]), 1e-12 * size[0]);
+            }
+        }
+
+        @Test
+        public void leastSquares() {
+            // y = 2 + 3 t through four points off the line, fitted by the normal equations: intercept 1.7, slope 3.2.
+            DenseDoubleMatrix design = DenseDoubleMatrix.rows(4).columns(2).row(1, 0).row(1, 1).row(1, 2).row(1, 3).make();
+            double[] fit = design.qr().solve(new double[]{1, 6, 8, 11});
+            assertThat(Math.abs(fit[0] - 1.7) < 1e-12, is(true));
+            assertThat(Math.abs(fit[1] - 3.2) < 1e-12, is(true));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void rankDeficient() {
+            DenseDoubleMatrix.rows(3).columns(2).row(1, 2).row(2, 4).row(3, 6).make().qr().solve(new double[]{1, 2, 3});
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void wide() {
+            randomDouble(2, 3, 1).qr();
+        }
+    }
+
+    public static class BareissTest {
+        @Test
+        public void matchesMatrixFor2x2() {
+            Matrix matrix = Matrix.leftTop(7).rightTop(-2).leftBottom(5).rightBottom(3).make();
+            assertThat(DenseLongMatrix.of(matrix).getDeterminant(), is(BigInteger.valueOf(matrix.getDeterminant())));
+        }
+
+        @Test
+        public void matchesDoubleLu() {
+            for (int size : new int[]{1, 3, 6}) {
+                DenseLongMatrix matrix = randomLong(size, size, size);
+                double expected = DenseDoubleMatrix.of(size, size, toDouble(matrix.toArray())).getDeterminant();
+                double actual = matrix.getDeterminant().doubleValue();
+                assertThat(Math.abs(actual - expected) <= 1e-9 * Math.abs(expected), is(true));
+            }
+        }
+
+        @Test
+        public void zeroPivotSwapsRows() {
+            DenseLongMatrix matrix = DenseLongMatrix.rows(3).columns(3).row(0, 2, 1).row(3, 0, 0).row(0, 0, 4).make();
+            assertThat(matrix.getDeterminant(), is(BigInteger.valueOf(-24)));
+        }
+
+        @Test
+        public void singular() {
+            DenseLongMatrix matrix = DenseLongMatrix.rows(3).columns(3).row(1, 2, 3).row(4, 5, 6).row(7, 8, 9).make();
+            assertThat(matrix.getDeterminant(), is(BigInteger.ZERO));
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void longOverflowThrows() {
+            DenseLongMatrix.bareiss(randomLong(40, 40, 27).toArray(), 40);
+        }
+
+        // minors of a 40x40 matrix with entries up to 1000 leave long, and so does the product of 30 diagonal entries
+        // near 1e9; getDeterminant falls back to BigInteger for both and stays exact.
+        @Test
+        public void overflowFallsBackToBigInteger() {
+            DenseLongMatrix matrix = randomLong(40, 40, 27);
+            long[] values = matrix.toArray();
+            assertThat(matrix.getDeterminant(), is(DenseLongMatrix.bigBareiss(values, 40)));
+            long[] triangular = new long[30 * 30];
+            BigInteger expected = BigInteger.ONE;
+            for (int i = 0; i < 30; i++) {
+                for (int j = i; j < 30; j++) {
+                    triangular[i * 30 + j] = 1_000_000_007L + i + j;
+                }
+                expected = expected.multiply(BigInteger.valueOf(1_000_000_007L + 2 * i));
+            }
+            DenseLongMatrix upper = DenseLongMatrix.of(30, 30, triangular);
+            assertThat(upper.getDeterminant(), is(expected));
+            assertThat(upper.getDeterminant(), is(sameInstance(upper.getDeterminant())));
+        }
+
+        @Test
+        public void unimodularStaysInLong() {
+            // lower and upper unit triangular factors: the product has determinant 1 exactly.
+            DenseLongMatrix lower = DenseLongMatrix.rows(3).columns(3).row(1, 0, 0).row(5, 1, 0).row(-7, 3, 1).make();
+            DenseLongMatrix upper = lower.transpose();
+            assertThat(lower.multiply(upper).getDeterminant(), is(BigInteger.ONE));
+            assertThat(DenseLongMatrix.bareiss(lower.multiply(upper).toArray(), 3), is(1L));
+        }
+
+        private static double[] toDouble(long[] values) {
+            double[] result = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i];
+            }
+            return result;
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        // -Dch6.DecompositionTest.maxSize=2048 runs the larger sizes.
+        private static final int MAX_SIZE = Integer.getInteger("ch6.DecompositionTest.maxSize", 512);
+
+        @Test
+        public void luAndCachedDeterminant() {
+            for (int warm = 0; warm < 3; warm++) {
+                randomDouble(128, 128, warm).lu();
+            }
+            for (int size = 64; size <= MAX_SIZE; size <<= 1) {
+                DenseDoubleMatrix matrix = randomDouble(size, size, size);
+                long start = System.nanoTime();
+                double determinant = matrix.getDeterminant();
+                double factor = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                for (int i = 0; i < 1000; i++) {
+                    assertThat(matrix.getDeterminant(), is(determinant));
+                }
+                double cached = (System.nanoTime() - start) / 1e3 / 1000;
+                LOG.info(String.format("%4d x %-4d LU %9.3f ms, %.2f GFLOPS, cached determinant %.3f us", size, size,
+                        factor, 2.0 / 3 * size * size * size / factor / 1e6, cached));
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class DenseMatrixTest {
+
+    static DenseLongMatrix randomLong(int rows, int columns, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[rows * columns];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(2001) - 1000;
+        }
+        return DenseLongMatrix.of(rows, columns, values);
+    }
+
+    // small integers keep every double product and sum exact, so results compare with equals.
+    static DenseDoubleMatrix randomDouble(int rows, int columns, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[rows * columns];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(201) - 100;
+        }
+        return DenseDoubleMatrix.of(rows, columns, values);
+    }
+
+    public static class LongMatrixTest {
+        @Test
+        public void builder() {
+            DenseLongMatrix matrix = DenseLongMatrix.rows(2).columns(3).row(1, 2, 3).row(4, 5, 6).make();
+            assertThat(matrix.get(1, 2), is(6L));
+            assertThat(matrix.transpose().get(2, 1), is(6L));
+            assertThat(matrix.transpose().rows(), is(3));
+        }
+
+        @Test
+        public void matchesMatrixFor2x2() {
+            Matrix fibonacci = Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+            DenseLongMatrix dense = DenseLongMatrix.of(fibonacci);
+            assertThat(dense.multiply(dense).multiply(dense).get(0, 0), is((long) fibonacci.power(3).getLeftTop()));
+        }
+
+        @Test
+        public void blockedMatchesNaive() {
+            for (int size : new int[]{1, 3, 63, 64, 65, 130}) {
+                DenseLongMatrix left = randomLong(size, size + 7, size);
+                DenseLongMatrix right = randomLong(size + 7, size + 2, -size);
+                assertThat(left.multiply(right), is(left.naiveMultiply(right)));
+            }
+        }
+
+        @Test
+        public void parallelMatchesNaive() {
+            DenseLongMatrix left = randomLong(200, 150, 50);
+            DenseLongMatrix right = randomLong(150, 180, 51);
+            assertThat(left.multiply(right), is(left.naiveMultiply(right)));
+        }
+
+        @Test
+        public void identity() {
+            DenseLongMatrix matrix = randomLong(70, 70, 52);
+            assertThat(matrix.multiply(DenseLongMatrix.identity(70)), is(matrix));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void innerSizeDiffers() {
+            randomLong(2, 3, 1).multiply(randomLong(2, 3, 1));
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void missingRow() {
+            DenseLongMatrix.rows(2).columns(2).row(1, 2).make();
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void wrongRowLength() {
+            DenseLongMatrix.rows(2).columns(2).row(1, 2, 3);
+        }
+    }
+
+    public static class DoubleMatrixTest {
+        @Test
+        public void builderAndToString() {
+            DenseDoubleMatrix matrix = DenseDoubleMatrix.rows(2).columns(2).row(1.5, 2).row(3, 4).make();
+            assertThat(matrix.toString(), is("|   1.500    2.000|\n|   3.000    4.000|"));
+        }
+
+        @Test
+        public void blockedMatchesNaive() {
+            for (int size : new int[]{2, 17, 64, 100, 257}) {
+                DenseDoubleMatrix left = randomDouble(size, size, size);
+                DenseDoubleMatrix right = randomDouble(size, size, -size);
+                assertThat(left.multiply(right), is(left.naiveMultiply(right)));
+            }
+        }
+
+        @Test
+        public void fromMatrix() {
+            Matrix matrix = Matrix.leftTop(1).rightTop(2).leftBottom(3).rightBottom(4).make();
+            DenseDoubleMatrix dense = DenseDoubleMatrix.of(matrix);
+            assertThat(dense.multiply(dense).get(1, 1), is((double) matrix.multiply(matrix).getRightBottom()));
+        }
+    }
+
+    public static class StrassenTest {
+        @Test
+        public void longMatchesBlocked() {
+            for (int size : new int[]{1, 5, 16, 64, 100, 129}) {
+                DenseLongMatrix left = randomLong(size, size, size);
+                DenseLongMatrix right = randomLong(size, size, -size);
+                for (int cutoff : new int[]{1, 8, 33}) {
+                    assertThat(left.strassenMultiply(right, cutoff), is(left.multiply(right)));
+                }
+            }
+        }
+
+        @Test
+        public void overflowWrapsLikeBlocked() {
+            Random random = new Random(19);
+            long[] values = new long[48 * 48];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextLong();
+            }
+            DenseLongMatrix matrix = DenseLongMatrix.of(48, 48, values);
+            assertThat(matrix.strassenMultiply(matrix, 5), is(matrix.naiveMultiply(matrix)));
+        }
+
+        @Test
+        public void parallelTopLevel() {
+            DenseLongMatrix left = randomLong(600, 600, 60);
+            DenseLongMatrix right = randomLong(600, 600, 61);
+            assertThat(left.strassenMultiply(right, 64), is(left.multiply(right)));
+        }
+
+        @Test
+        public void doubleIsExactForSmallIntegers() {
+            DenseDoubleMatrix left = randomDouble(100, 100, 62);
+            DenseDoubleMatrix right = randomDouble(100, 100, 63);
+            assertThat(left.strassenMultiply(right, 16), is(left.multiply(right)));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void notSquare() {
+            randomLong(3, 4, 1).strassenMultiply(randomLong(4, 3, 1));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void cutoffNotPositive() {
+            randomLong(3, 3, 1).strassenMultiply(randomLong(3, 3, 1), 0);
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        // -Dch6.DenseMatrixTest.maxSize=2048 runs the larger sizes, which take minutes.
+        private static final int MAX_SIZE = Integer.getInteger("ch6.DenseMatrixTest.maxSize", 256);
+
+        private static final int NAIVE_MAX_SIZE = 512;
+
+        @Test
+        public void blockedAgainstNaive() {
+            for (int warm = 0; warm < 3; warm++) {
+                randomDouble(128, 128, 1).multiply(randomDouble(128, 128, 2));
+                randomDouble(128, 128, 1).naiveMultiply(randomDouble(128, 128, 2));
+            }
+            for (int size = 2; size <= MAX_SIZE; size <<= 1) {
+                DenseDoubleMatrix left = randomDouble(size, size, size);
+                DenseDoubleMatrix right = randomDouble(size, size, -size);
+                int repeat = Math.max(1, (1 << 21) / size / size / size);
+                long start = System.nanoTime();
+                for (int i = 0; i < repeat; i++) {
+                    left.multiply(right);
+                }
+                double blocked = (System.nanoTime() - start) / 1e6 / repeat;
+                double naive = Double.NaN;
+                if (size <= NAIVE_MAX_SIZE) {
+                    start = System.nanoTime();
+                    for (int i = 0; i < repeat; i++) {
+                        left.naiveMultiply(right);
+                    }
+                    naive = (System.nanoTime() - start) / 1e6 / repeat;
+                }
+                LOG.info(String.format("%4d x %-4d blocked %10.3f ms, naive %10.3f ms, %.2f GFLOPS", size, size,
+                        blocked, naive, 2.0 * size * size * size / blocked / 1e6));
+            }
+        }
+
+        // the fastest cutoff of each size is the crossover below which recursing further stops paying off.
+        @Test
+        public void strassenCrossover() {
+            for (int warm = 0; warm < 3; warm++) {
+                randomLong(128, 128, 1).strassenMultiply(randomLong(128, 128, 2), 16);
+            }
+            for (int size = 128; size <= Math.max(128, MAX_SIZE); size <<= 1) {
+                DenseLongMatrix left = randomLong(size, size, size);
+                DenseLongMatrix right = randomLong(size, size, -size);
+                int repeat = Math.max(1, (1 << 24) / size / size / size);
+                long start = System.nanoTime();
+                DenseLongMatrix expected = null;
+                for (int i = 0; i < repeat; i++) {
+                    expected = left.multiply(right);
+                }
+                double blocked = (System.nanoTime() - start) / 1e6 / repeat;
+                int best = size;
+                double bestTime = blocked;
+                StringBuilder line = new StringBuilder(String.format("%4d x %-4d blocked %9.3f ms", size, size, blocked));
+                for (int cutoff = 16; cutoff < size; cutoff <<= 1) {
+                    DenseLongMatrix actual = null;
+                    start = System.nanoTime();
+                    for (int i = 0; i < repeat; i++) {
+                        actual = left.strassenMultiply(right, cutoff);
+                    }
+                    double time = (System.nanoTime() - start) / 1e6 / repeat;
+                    assertThat(actual, is(expected));
+                    line.append(String.format(", cutoff %d %9.3f ms", cutoff, time));
+                    if (time < bestTime) {
+                        best = cutoff;
+                        bestTime = time;
+                    }
+                }
+                LOG.info(line.append(", best cutoff ").append(best).toString());
+            }
+        }
+    }
+}
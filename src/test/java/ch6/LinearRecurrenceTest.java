@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class LinearRecurrenceTest {
+
+    private static final LinearRecurrence FIBONACCI = LinearRecurrence.of(new long[]{1, 1}, new long[]{0, 1});
+
+    private static final LinearRecurrence TRIBONACCI = LinearRecurrence.of(new long[]{1, 1, 1}, new long[]{0, 0, 1});
+
+    private static final long PRIME = 1_000_000_007L;
+
+    private static final long MERSENNE = (1L << 61) - 1;
+
+    private static long[] naive(long[] coefficients, long[] initial, int count) {
+        long[] terms = Arrays.copyOf(initial, count);
+        for (int n = initial.length; n < count; n++) {
+            for (int i = 0; i < coefficients.length; i++) {
+                terms[n] += coefficients[i] * terms[n - 1 - i];
+            }
+        }
+        return terms;
+    }
+
+    public static class FastDoublingTest {
+        @Test
+        public void smallTerms() {
+            long[] expected = naive(new long[]{1, 1}, new long[]{0, 1}, 93);
+            for (int n = 0; n < 93; n++) {
+                assertThat(LinearRecurrence.fibonacci(n), is(expected[n]));
+                assertThat(LinearRecurrence.bigFibonacci(n), is(BigInteger.valueOf(expected[n])));
+                assertThat(LinearRecurrence.fibonacci(n, 1000), is(expected[n] % 1000));
+            }
+        }
+
+        @Test(expected = ArithmeticException.class)
+        public void overflow() {
+            LinearRecurrence.fibonacci(93);
+        }
+
+        @Test
+        public void pisanoPeriod() {
+            assertThat(LinearRecurrence.fibonacci(1_000_000_000_000_000_000L, 10), is(5L));
+        }
+
+        @Test
+        public void largeModulus() {
+            BigInteger expected = LinearRecurrence.bigFibonacci(5000).mod(BigInteger.valueOf(MERSENNE));
+            assertThat(LinearRecurrence.fibonacci(5000, MERSENNE), is(expected.longValue()));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void negativeIndex() {
+            LinearRecurrence.fibonacci(-1);
+        }
+    }
+
+    public static class KitamasaTest {
+        @Test
+        public void matchesNaive() {
+            long[] fibonacci = naive(new long[]{1, 1}, new long[]{0, 1}, 93);
+            long[] tribonacci = naive(new long[]{1, 1, 1}, new long[]{0, 0, 1}, 70);
+            for (int n = 0; n < 70; n++) {
+                assertThat(FIBONACCI.term(n), is(fibonacci[n]));
+                assertThat(TRIBONACCI.term(n), is(tribonacci[n]));
+                assertThat(TRIBONACCI.bigTerm(n), is(BigInteger.valueOf(tribonacci[n])));
+            }
+            assertThat(FIBONACCI.term(92), is(fibonacci[92]));
+        }
+
+        @Test
+        public void matchesFastDoubling() {
+            for (long n : new long[]{100, 12345, 1L << 40, Long.MAX_VALUE}) {
+                assertThat(FIBONACCI.term(n, PRIME), is(LinearRecurrence.fibonacci(n, PRIME)));
+                assertThat(FIBONACCI.term(n, MERSENNE), is(LinearRecurrence.fibonacci(n, MERSENNE)));
+            }
+            assertThat(FIBONACCI.bigTerm(3000), is(LinearRecurrence.bigFibonacci(3000)));
+        }
+
+        @Test
+        public void negativeCoefficientsModulo() {
+            // a(n) = 2 a(n - 1) - a(n - 2) from 3, 5 is 3 + 2n.
+            LinearRecurrence arithmetic = LinearRecurrence.of(new long[]{2, -1}, new long[]{3, 5});
+            assertThat(arithmetic.term(1_000_000), is(2_000_003L));
+            assertThat(arithmetic.term(1_000_000_000_000L, PRIME), is((3 + 2_000_000_000_000L) % PRIME));
+        }
+
+        @Test
+        public void firstOrder() {
+            LinearRecurrence powers = LinearRecurrence.of(new long[]{3}, new long[]{1});
+            assertThat(powers.term(39), is(4052555153018976267L));
+            assertThat(powers.bigTerm(100), is(BigInteger.valueOf(3).pow(100)));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void mismatchedInitialTerms() {
+            LinearRecurrence.of(new long[]{1, 1}, new long[]{1});
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        @Test
+        public void againstParallelPrefix() {
+            final Matrix q = Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+            int n = 1 << 20;
+            long start = System.nanoTime();
+            Matrix[] matrices = new Matrix[n];
+            Arrays.fill(matrices, q);
+            Arrays.parallelPrefix(matrices, Matrix::multiply);
+            long prefix = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Matrix power = q.power(n);
+            long squaring = System.nanoTime() - start;
+            assertThat(power.getLeftTop(), is(matrices[n - 1].getLeftTop()));
+
+            start = System.nanoTime();
+            long doubling = 0;
+            for (int i = 0; i < 1000; i++) {
+                doubling += LinearRecurrence.fibonacci(Long.MAX_VALUE - i, PRIME);
+            }
+            long doublingTime = (System.nanoTime() - start) / 1000;
+
+            start = System.nanoTime();
+            int bits = LinearRecurrence.bigFibonacci(1_000_000).bitLength();
+            long big = System.nanoTime() - start;
+            LOG.info(String.format("parallelPrefix F(2^20) %.1f ms, Matrix.power %.1f us, " +
+                            "fast doubling mod p at n=2^63 %.1f us, F(10^6) %.1f ms (%d bits, %d)",
+                    prefix / 1e6, squaring / 1e3, doublingTime / 1e3, big / 1e6, bits, doubling));
+        }
+    }
+}
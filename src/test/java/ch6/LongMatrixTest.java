@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LongMatrixTest {
+
+    private static final LongMatrix FIBONACCI = LongMatrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+
+    @Test
+    public void passesWhereMatrixOverflows() {
+        assertThat(FIBONACCI.power(47).getRightTop(), is(2971215073L));
+        assertThat(Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make().power(47).getRightTop() < 0, is(true));
+    }
+
+    @Test
+    public void lastFibonacciInLong() {
+        assertThat(FIBONACCI.power(91).getLeftTop(), is(LinearRecurrence.fibonacci(92)));
+        assertThat(FIBONACCI.power(0), is(LongMatrix.leftTop(1).rightTop(0).leftBottom(0).rightBottom(1).make()));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void overflowThrows() {
+        FIBONACCI.power(92);
+    }
+
+    @Test
+    public void determinantAndMatrix() {
+        LongMatrix matrix = LongMatrix.of(Matrix.leftTop(3).rightTop(1).leftBottom(4).rightBottom(2).make());
+        assertThat(matrix.getDeterminant(), is(2L));
+        assertThat(matrix.multiply(matrix).toString(), is("|  13    5|\n|  20    8|"));
+    }
+
+    @Test
+    public void mod() {
+        LongMatrix matrix = LongMatrix.leftTop(-1).rightTop(Long.MAX_VALUE).leftBottom(7).rightBottom(8).make();
+        assertThat(matrix.mod(7), is(ModMatrix.modulus(7).leftTop(6).rightTop(0).leftBottom(0).rightBottom(1).make()));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MappedMatrixTest {
+
+    private static final Logger LOG = Logger.getLogger(MappedMatrixTest.class.getName());
+
+    // -Dch6.MappedMatrixTest.size=16384 multiplies two 2 GiB files, which takes a long time.
+    private static final int BENCHMARK_SIZE = Integer.getInteger("ch6.MappedMatrixTest.size", 512);
+
+    private Path left;
+    private Path right;
+    private Path product;
+
+    @Before
+    public void createFiles() throws IOException {
+        left = Files.createTempFile("left", ".mtrx");
+        right = Files.createTempFile("right", ".mtrx");
+        product = Files.createTempFile("product", ".mtrx");
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(left);
+        Files.deleteIfExists(right);
+        Files.deleteIfExists(product);
+    }
+
+    @Test
+    public void roundTripWithEdgeTiles() throws IOException {
+        DenseDoubleMatrix dense = DenseMatrixTest.randomDouble(37, 23, 1);
+        try (MappedMatrix mapped = MappedMatrix.create(left, dense, 8)) {
+            assertThat(mapped.tileRows(), is(5));
+            assertThat(mapped.tileColumns(), is(3));
+            assertThat(mapped.toDense(), is(dense));
+        }
+        assertThat(Files.size(left), is(64L + 5 * 3 * 8 * 8 * 8));
+        try (MappedMatrix reopened = MappedMatrix.open(left)) {
+            assertThat(reopened.rows(), is(37));
+            assertThat(reopened.toDense(), is(dense));
+        }
+    }
+
+    @Test
+    public void tileIsAZeroCopyView() throws IOException {
+        try (MappedMatrix mapped = MappedMatrix.create(left, 10, 10, 4)) {
+            DoubleBuffer view = mapped.tile(1, 2);
+            mapped.set(5, 9, 2.5);
+            assertThat(view.get(4 + 1), is(2.5));
+            view.put(0, -1);
+            assertThat(mapped.get(4, 8), is(-1.0));
+            assertThat(view.capacity(), is(16));
+        }
+    }
+
+    @Test(expected = java.nio.ReadOnlyBufferException.class)
+    public void readOnlyTile() throws IOException {
+        MappedMatrix.create(left, 4, 4, 2).close();
+        try (MappedMatrix mapped = MappedMatrix.open(left)) {
+            mapped.tile(0, 0).put(0, 1);
+        }
+    }
+
+    @Test
+    public void multiplyMatchesDense() throws IOException {
+        DenseDoubleMatrix a = DenseMatrixTest.randomDouble(45, 30, 2);
+        DenseDoubleMatrix b = DenseMatrixTest.randomDouble(30, 52, 3);
+        try (MappedMatrix x = MappedMatrix.create(left, a, 8);
+             MappedMatrix y = MappedMatrix.create(right, b, 8);
+             MappedMatrix z = MappedMatrix.multiply(x, y, product, 2)) {
+            assertThat(z.toDense(), is(a.multiply(b)));
+        }
+        try (MappedMatrix z = MappedMatrix.open(product)) {
+            assertThat(z.columns(), is(52));
+            assertThat(z.toDense(), is(a.multiply(b)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAMatrixFile() throws IOException {
+        Files.write(left, new byte[100]);
+        MappedMatrix.open(left);
+    }
+
+    // a header with a zero tile, or a file shorter than its header says, fails before anything is mapped.
+    @Test
+    public void corruptHeader() throws IOException {
+        MappedMatrix.create(left, 10, 10, 4).close();
+        byte[] valid = Files.readAllBytes(left);
+        for (int offset : new int[]{8, 12, 16}) {
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).putInt(offset, offset == 16? 0:-3);
+            Files.write(left, bytes);
+            assertOpenFails(false);
+        }
+        Files.write(left, Arrays.copyOf(valid, valid.length - 8));
+        assertOpenFails(true);
+        assertThat(Files.size(left), is(valid.length - 8L));
+    }
+
+    private void assertOpenFails(boolean writable) {
+        try {
+            MappedMatrix.open(left, writable).close();
+            fail("opened " + left);
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void tileOutOfRange() throws IOException {
+        try (MappedMatrix mapped = MappedMatrix.create(left, 10, 10, 4)) {
+            for (int[] tile : new int[][]{{0, 3}, {3, 0}, {-1, 0}}) {
+                try {
+                    mapped.tile(tile[0], tile[1]);
+                    fail("tile " + tile[0] + ", " + tile[1]);
+                } catch (IndexOutOfBoundsException expected) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void zeroTimesInfinityLikeDense() throws IOException {
+        DenseDoubleMatrix a = DenseDoubleMatrix.rows(2).columns(2).row(0, 1).row(2, 3).make();
+        DenseDoubleMatrix b = DenseDoubleMatrix.rows(2).columns(2).row(Double.POSITIVE_INFINITY, 1).row(1, Double.NaN).make();
+        try (MappedMatrix x = MappedMatrix.create(left, a, 2);
+             MappedMatrix y = MappedMatrix.create(right, b, 2);
+             MappedMatrix z = MappedMatrix.multiply(x, y, product, 2)) {
+            assertThat(z.toDense(), is(a.multiply(b)));
+            assertThat(Double.isNaN(z.get(0, 0)), is(true));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tileSizesDiffer() throws IOException {
+        try (MappedMatrix x = MappedMatrix.create(left, 4, 4, 2); MappedMatrix y = MappedMatrix.create(right, 4, 4, 4)) {
+            MappedMatrix.multiply(x, y, product, 4);
+        }
+    }
+
+    @Test
+    public void outOfCoreBenchmark() throws IOException {
+        int size = BENCHMARK_SIZE;
+        int tile = 256;
+        try (MappedMatrix x = MappedMatrix.create(left, size, size, tile);
+             MappedMatrix y = MappedMatrix.create(right, size, size, tile)) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    x.set(i, j, (i + j) % 7 - 3);
+                    y.set(i, j, (i * j) % 5 - 2);
+                }
+            }
+            long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            long start = System.nanoTime();
+            try (MappedMatrix z = MappedMatrix.multiply(x, y, product, 2 + x.tileColumns())) {
+                double millis = (System.nanoTime() - start) / 1e6;
+                double expected = 0;
+                for (int k = 0; k < size; k++) {
+                    expected += x.get(size - 1, k) * y.get(k, 1);
+                }
+                assertThat(z.get(size - 1, 1), is(expected));
+                LOG.info(String.format("%d x %d out of core: %.0f ms, %.2f GFLOPS, %.0f MB per operand file, " +
+                                "heap before %.0f MB", size, size, millis, 2.0 * size * size * size / millis / 1e6,
+                        Files.size(left) / 1e6, heap / 1e6));
+            }
+        }
+    }
+}
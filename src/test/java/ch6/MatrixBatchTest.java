@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class MatrixBatchTest {
+
+    static Matrix[] randomMatrices(int size, long seed) {
+        Random random = new Random(seed);
+        Matrix[] matrices = new Matrix[size];
+        for (int i = 0; i < size; i++) {
+            matrices[i] = Matrix.leftTop(random.nextInt()).rightTop(random.nextInt(201) - 100)
+                    .leftBottom(random.nextInt(201) - 100).rightBottom(random.nextInt()).make();
+        }
+        return matrices;
+    }
+
+    public static class IntBatchTest {
+        // larger than the parallel threshold and not a multiple of the power block.
+        private static final int SIZE = 2 * MatrixBatch.PARALLEL_THRESHOLD + 123;
+
+        @Test
+        public void multiplyMatchesMatrix() {
+            Matrix[] left = randomMatrices(SIZE, 1);
+            Matrix[] right = randomMatrices(SIZE, 2);
+            MatrixBatch product = MatrixBatch.of(left).multiply(MatrixBatch.of(right));
+            for (int i = 0; i < SIZE; i += 97) {
+                assertThat(product.get(i).toString(), is(left[i].multiply(right[i]).toString()));
+            }
+        }
+
+        @Test
+        public void targetMayAliasOperands() {
+            Matrix[] matrices = randomMatrices(100, 3);
+            MatrixBatch batch = MatrixBatch.of(matrices);
+            batch.multiply(batch, batch);
+            assertThat(batch.get(42).toString(), is(matrices[42].multiply(matrices[42]).toString()));
+        }
+
+        @Test
+        public void powerMatchesMatrix() {
+            Matrix[] matrices = randomMatrices(SIZE, 4);
+            MatrixBatch batch = MatrixBatch.of(matrices);
+            for (long n : new long[]{0, 1, 46, 1001}) {
+                MatrixBatch power = batch.power(n);
+                for (int i = 0; i < SIZE; i += 101) {
+                    assertThat(power.get(i).toString(), is(matrices[i].power(n).toString()));
+                }
+            }
+        }
+
+        @Test
+        public void determinants() {
+            Matrix[] matrices = randomMatrices(1000, 5);
+            int[] determinants = MatrixBatch.of(matrices).determinants();
+            for (int i = 0; i < 1000; i++) {
+                assertThat(determinants[i], is(matrices[i].getDeterminant()));
+            }
+        }
+
+        @Test
+        public void wrapSharesArrays() {
+            int[] lt = {1, 2}, rt = {1, 0}, lb = {1, 0}, rb = {0, 2};
+            MatrixBatch.wrap(lt, rt, lb, rb).power(10, MatrixBatch.wrap(lt, rt, lb, rb));
+            assertThat(rt[0], is(55));
+            assertThat(lt[1], is(1024));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void sizesDiffer() {
+            new MatrixBatch(3).multiply(new MatrixBatch(4));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void arraysOfDifferentLength() {
+            MatrixBatch.wrap(new int[2], new int[2], new int[1], new int[2]);
+        }
+    }
+
+    public static class LongBatchTest {
+        @Test
+        public void fibonacci() {
+            LongMatrix fibonacci = LongMatrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+            LongMatrixBatch batch = LongMatrixBatch.of(fibonacci, fibonacci.power(2));
+            LongMatrixBatch power = batch.power(45);
+            assertThat(power.get(0), is(fibonacci.power(45)));
+            assertThat(power.get(1), is(fibonacci.power(90)));
+            assertThat(power.determinants()[1], is(1L));
+        }
+
+        @Test
+        public void multiplyMatchesLongMatrix() {
+            Random random = new Random(6);
+            LongMatrix[] left = new LongMatrix[500];
+            LongMatrix[] right = new LongMatrix[500];
+            for (int i = 0; i < 500; i++) {
+                left[i] = LongMatrix.leftTop(random.nextInt()).rightTop(random.nextInt()).leftBottom(random.nextInt()).rightBottom(random.nextInt()).make();
+                right[i] = LongMatrix.leftTop(random.nextInt()).rightTop(random.nextInt()).leftBottom(random.nextInt()).rightBottom(random.nextInt()).make();
+            }
+            LongMatrixBatch product = LongMatrixBatch.of(left).multiply(LongMatrixBatch.of(right));
+            for (int i = 0; i < 500; i++) {
+                assertThat(product.get(i), is(left[i].multiply(right[i])));
+            }
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        private static final int SIZE = 1 << 20;
+
+        // best of several runs, after the loops are compiled.
+        private static double best(Runnable run) {
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < 8; i++) {
+                long start = System.nanoTime();
+                run.run();
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            return best;
+        }
+
+        @Test
+        public void batchAgainstMatrixLoop() {
+            Matrix[] left = randomMatrices(SIZE, 7);
+            Matrix[] right = randomMatrices(SIZE, 8);
+            Matrix[] objects = new Matrix[SIZE];
+            MatrixBatch a = MatrixBatch.of(left);
+            MatrixBatch b = MatrixBatch.of(right);
+            MatrixBatch target = new MatrixBatch(SIZE);
+            int[] determinants = new int[SIZE];
+
+            double loop = best(() -> {
+                for (int i = 0; i < SIZE; i++) {
+                    objects[i] = left[i].multiply(right[i]);
+                }
+            });
+            double batch = best(() -> a.multiply(b, target));
+            assertThat(target.get(SIZE - 1).toString(), is(objects[SIZE - 1].toString()));
+
+            double powerLoop = best(() -> {
+                for (int i = 0; i < SIZE; i++) {
+                    objects[i] = left[i].power(30);
+                }
+            });
+            double powerBatch = best(() -> a.power(30, target));
+            assertThat(target.get(SIZE / 2).toString(), is(objects[SIZE / 2].toString()));
+
+            double determinantLoop = best(() -> {
+                for (int i = 0; i < SIZE; i++) {
+                    determinants[i] = left[i].getDeterminant();
+                }
+            });
+            double determinantBatch = best(() -> a.determinants(determinants));
+            LOG.info(String.format("%d pairs: multiply Matrix loop %.1f ms, batch %.1f ms (%.1fx); power(30) loop %.1f ms, " +
+                            "batch %.1f ms (%.1fx); determinant loop %.1f ms, batch %.1f ms (%.1fx)", SIZE, loop, batch,
+                    loop / batch, powerLoop, powerBatch, powerLoop / powerBatch, determinantLoop, determinantBatch,
+                    determinantLoop / determinantBatch));
+        }
+
+        // power again over a batch that stays in cache, where the lane loops are not waiting on memory.
+        @Test
+        public void powerInCache() {
+            final int size = 1 << 12;
+            Matrix[] matrices = randomMatrices(size, 9);
+            Matrix[] objects = new Matrix[size];
+            MatrixBatch batch = MatrixBatch.of(matrices);
+            MatrixBatch target = new MatrixBatch(size);
+            double loop = best(() -> {
+                for (int r = 0; r < 64; r++) {
+                    for (int i = 0; i < size; i++) {
+                        objects[i] = matrices[i].power(30);
+                    }
+                }
+            });
+            double lanes = best(() -> {
+                for (int r = 0; r < 64; r++) {
+                    batch.power(30, target);
+                }
+            });
+            assertThat(target.get(size - 1).toString(), is(objects[size - 1].toString()));
+            LOG.info(String.format("%d pairs x 64: power(30) Matrix loop %.1f ms, batch %.1f ms (%.1fx)",
+                    size, loop, lanes, loop / lanes));
+        }
+    }
+}
@@ -36,4 +36,25 @@ public class MatrixTest {
         System.out.println(fib6);
         assertThat(fib6.getLeftTop(), is(8));
     }
+
+    @Test
+    public void multiplyIsRowByColumn() {
+        final Matrix left = Matrix.leftTop(1).rightTop(2).leftBottom(3).rightBottom(4).make();
+        final Matrix right = Matrix.leftTop(5).rightTop(6).leftBottom(7).rightBottom(8).make();
+        final Matrix product = left.multiply(right);
+        assertThat(product.getLeftTop(), is(19));
+        assertThat(product.getRightTop(), is(22));
+        assertThat(product.getLeftBottom(), is(43));
+        assertThat(product.getRightBottom(), is(50));
+    }
+
+    @Test
+    public void powerMatchesParallelPrefix() {
+        final Matrix matrix = Matrix
+                .leftTop(1).rightTop(1)
+                .leftBottom(1).rightBottom(0).make();
+        assertThat(matrix.power(5).getLeftTop(), is(8));
+        assertThat(matrix.power(40).getRightTop(), is(102334155));
+        assertThat(matrix.power(0).getDeterminant(), is(1));
+    }
 }
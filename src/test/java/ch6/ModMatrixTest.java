@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class ModMatrixTest {
+
+    private static final long PRIME = 1_000_000_007L;
+
+    static ModMatrix fibonacci(long modulus) {
+        return ModMatrix.modulus(modulus).leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+    }
+
+    public static class ArithmeticTest {
+        @Test
+        public void builderReduces() {
+            ModMatrix matrix = ModMatrix.modulus(5).leftTop(-1).rightTop(7).leftBottom(10).rightBottom(4).make();
+            assertThat(matrix.toString(), is("|   4    2|\n|   0    4| mod 5"));
+            assertThat(matrix.getDeterminant(), is(1L));
+        }
+
+        @Test
+        public void fibonacciOfLargeIndex() {
+            long n = 1_000_000_000_000_000_000L;
+            assertThat(fibonacci(PRIME).power(n).getRightTop(), is(LinearRecurrence.fibonacci(n, PRIME)));
+            assertThat(fibonacci(1L << 30).power(n).getRightTop(), is(LinearRecurrence.fibonacci(n, 1L << 30)));
+        }
+
+        @Test
+        public void matchesExactPowers() {
+            assertThat(fibonacci(PRIME).power(91), is(LongMatrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make()
+                    .power(91).mod(PRIME)));
+        }
+
+        @Test
+        public void barrettMatchesRemainder() {
+            Random random = new Random(21);
+            for (long modulus : new long[]{1, 2, 3, 1L << 20, PRIME, Integer.MAX_VALUE}) {
+                for (int i = 0; i < 1000; i++) {
+                    long[] e = new long[8];
+                    for (int j = 0; j < 8; j++) {
+                        e[j] = i == 0? modulus - 1:(random.nextLong() >>> 1) % modulus;
+                    }
+                    ModMatrix left = ModMatrix.modulus(modulus).leftTop(e[0]).rightTop(e[1]).leftBottom(e[2]).rightBottom(e[3]).make();
+                    ModMatrix right = ModMatrix.modulus(modulus).leftTop(e[4]).rightTop(e[5]).leftBottom(e[6]).rightBottom(e[7]).make();
+                    BigInteger expected = BigInteger.valueOf(e[0]).multiply(BigInteger.valueOf(e[5]))
+                            .add(BigInteger.valueOf(e[1]).multiply(BigInteger.valueOf(e[7]))).mod(BigInteger.valueOf(modulus));
+                    assertThat(left.multiply(right).getRightTop(), is(expected.longValue()));
+                }
+            }
+        }
+
+        @Test
+        public void multiplyHigh() {
+            BigInteger x = new BigInteger("fedcba9876543210", 16);
+            BigInteger y = new BigInteger("8000000000000001", 16);
+            assertThat(ModMatrix.multiplyHigh(x.longValue(), y.longValue()), is(x.multiply(y).shiftRight(64).longValue()));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void moduliDiffer() {
+            fibonacci(7).multiply(fibonacci(11));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void modulusTooLarge() {
+            ModMatrix.modulus(1L << 31);
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        @Test
+        public void powerOfLargeIndex() {
+            ModMatrix matrix = fibonacci(PRIME);
+            long sink = 0;
+            for (int i = 0; i < 100_000; i++) {
+                sink += matrix.power(Long.MAX_VALUE - i).getRightTop();
+            }
+            int repeat = 100_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < repeat; i++) {
+                sink += matrix.power(1_000_000_000_000_000_000L + i).getRightTop();
+            }
+            double power = (System.nanoTime() - start) / 1e3 / repeat;
+            start = System.nanoTime();
+            for (int i = 0; i < repeat; i++) {
+                sink += LinearRecurrence.fibonacci(1_000_000_000_000_000_000L + i, PRIME);
+            }
+            double doubling = (System.nanoTime() - start) / 1e3 / repeat;
+            LOG.info(String.format("F(10^18) mod p: ModMatrix.power %.3f us, LinearRecurrence.fibonacci %.3f us (%d)",
+                    power, doubling, sink & 1));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class MutableMatrixTest {
+
+    private static final Matrix FIBONACCI = Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+
+    private static void assertSame(MutableMatrix actual, Matrix expected) {
+        assertThat(actual.getLeftTop(), is(expected.getLeftTop()));
+        assertThat(actual.getRightTop(), is(expected.getRightTop()));
+        assertThat(actual.getLeftBottom(), is(expected.getLeftBottom()));
+        assertThat(actual.getRightBottom(), is(expected.getRightBottom()));
+    }
+
+    public static class MultiplyTest {
+        @Test
+        public void matchesMatrix() {
+            Random random = new Random(40);
+            for (int i = 0; i < 100; i++) {
+                Matrix left = Matrix.leftTop(random.nextInt(100)).rightTop(random.nextInt(100))
+                        .leftBottom(random.nextInt(100)).rightBottom(random.nextInt(100)).make();
+                Matrix right = Matrix.leftTop(random.nextInt(100)).rightTop(random.nextInt(100))
+                        .leftBottom(random.nextInt(100)).rightBottom(random.nextInt(100)).make();
+                assertSame(new MutableMatrix(left).multiply(right), left.multiply(right));
+                assertSame(new MutableMatrix(left).multiply(new MutableMatrix(right)), left.multiply(right));
+            }
+        }
+
+        @Test
+        public void targetMayAliasOperands() {
+            MutableMatrix matrix = new MutableMatrix(FIBONACCI);
+            matrix.multiplyInto(matrix, matrix);
+            assertSame(matrix, FIBONACCI.multiply(FIBONACCI));
+            MutableMatrix other = new MutableMatrix(1, 2, 3, 4);
+            matrix.multiplyInto(other, other);
+            assertSame(other, FIBONACCI.multiply(FIBONACCI).multiply(Matrix.leftTop(1).rightTop(2).leftBottom(3).rightBottom(4).make()));
+        }
+
+        @Test
+        public void fibonacciBySquaring() {
+            MutableMatrix result = MutableMatrix.identity();
+            MutableMatrix base = new MutableMatrix(FIBONACCI);
+            for (int n = 40; n > 0; n >>>= 1) {
+                if ((n & 1) != 0) {
+                    result.multiply(base);
+                }
+                base.multiply(base);
+            }
+            assertThat(result.getRightTop(), is(102334155));
+            assertThat(result.toMatrix().getDeterminant(), is(1));
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        private static final int OPERATIONS = 1 << 22;
+
+        // bytes allocated by the current thread per call, or -1 when the JVM cannot tell.
+        private static double bytesPerOperation(IntSupplier operation) {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            long id = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(id);
+            int sink = operation.getAsInt();
+            long after = threads.getThreadAllocatedBytes(id);
+            return sink == Integer.MIN_VALUE? -1:(double) (after - before) / OPERATIONS;
+        }
+
+        private static int immutable() {
+            Matrix matrix = FIBONACCI;
+            for (int i = 0; i < OPERATIONS; i++) {
+                matrix = matrix.multiply(FIBONACCI);
+            }
+            return matrix.getLeftTop();
+        }
+
+        private static int inPlace() {
+            MutableMatrix matrix = new MutableMatrix(FIBONACCI);
+            MutableMatrix fibonacci = new MutableMatrix(FIBONACCI);
+            for (int i = 0; i < OPERATIONS; i++) {
+                matrix.multiplyInto(fibonacci, matrix);
+            }
+            return matrix.getLeftTop();
+        }
+
+        private static int parallelPrefix() {
+            Matrix[] matrices = new Matrix[OPERATIONS >>> 4];
+            Arrays.fill(matrices, FIBONACCI);
+            Arrays.parallelPrefix(matrices, Matrix::multiply);
+            return matrices[matrices.length - 1].getLeftTop();
+        }
+
+        @Test
+        public void allocationAndTime() {
+            for (int warm = 0; warm < 3; warm++) {
+                immutable();
+                inPlace();
+            }
+            long start = System.nanoTime();
+            double immutableBytes = bytesPerOperation(Benchmark::immutable);
+            long immutableTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            double inPlaceBytes = bytesPerOperation(Benchmark::inPlace);
+            long inPlaceTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            parallelPrefix();
+            long prefixTime = System.nanoTime() - start;
+            LOG.info(String.format("multiply %.2f ns/op %.1f B/op, multiplyInto %.2f ns/op %.1f B/op, parallelPrefix %.2f ns/op",
+                    (double) immutableTime / OPERATIONS, immutableBytes, (double) inPlaceTime / OPERATIONS, inPlaceBytes,
+                    (double) prefixTime / (OPERATIONS >>> 4)));
+            if (inPlaceBytes >= 0) {
+                assertThat(inPlaceBytes < 0.01, is(true));
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class ParallelScanTest {
+
+    static final Matrix FIBONACCI = Matrix.leftTop(1).rightTop(1).leftBottom(1).rightBottom(0).make();
+
+    // a pool of several threads takes the Blelloch path even on a single core.
+    static void inPool(Runnable scan) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.submit(scan).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static Matrix[] randomMatrices(int size, long seed) {
+        Random random = new Random(seed);
+        Matrix[] matrices = new Matrix[size];
+        for (int i = 0; i < size; i++) {
+            matrices[i] = Matrix.leftTop(random.nextInt(5) - 2).rightTop(random.nextInt(5) - 2)
+                    .leftBottom(random.nextInt(5) - 2).rightBottom(random.nextInt(5) - 2).make();
+        }
+        return matrices;
+    }
+
+    static long[] randomLongs(int size, long seed) {
+        return new Random(seed).longs(size, -1000, 1000).toArray();
+    }
+
+    static boolean[] randomStarts(int size, long seed) {
+        Random random = new Random(seed);
+        boolean[] starts = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = random.nextInt(5000) == 0;
+        }
+        return starts;
+    }
+
+    static long[] sequentialSegmented(long[] values, boolean[] starts) {
+        long[] expected = values.clone();
+        for (int i = 1; i < expected.length; i++) {
+            if (!starts[i]) expected[i] += expected[i - 1];
+        }
+        return expected;
+    }
+
+    public static class ScanTest {
+        @Test
+        public void inclusive() {
+            long[] values = {3, 1, 4, 1, 5};
+            ParallelScan.inclusive(values, Long::sum);
+            assertThat(values, is(new long[]{3, 4, 8, 9, 14}));
+        }
+
+        @Test
+        public void exclusive() {
+            long[] values = {3, 1, 4, 1, 5};
+            ParallelScan.exclusive(values, 0, Long::sum);
+            assertThat(values, is(new long[]{0, 3, 4, 8, 9}));
+        }
+
+        @Test
+        public void segmented() {
+            long[] values = {3, 1, 4, 1, 5, 9};
+            boolean[] starts = {false, false, true, false, true, false};
+            ParallelScan.segmented(values, starts, Long::sum);
+            assertThat(values, is(new long[]{3, 4, 4, 5, 5, 14}));
+        }
+
+        @Test
+        public void segmentedExclusive() {
+            long[] values = {3, 1, 4, 1, 5, 9};
+            boolean[] starts = {false, false, true, false, true, false};
+            ParallelScan.segmentedExclusive(values, 1, starts, new long[]{0}, (l, i, r, j, t, k) -> t[k] = l[i] + r[j]);
+            assertThat(values, is(new long[]{0, 3, 0, 4, 0, 5}));
+        }
+
+        @Test
+        public void packedMatricesMatchParallelPrefix() {
+            Matrix[] matrices = randomMatrices(1000, 1);
+            int[] packed = ParallelScan.pack(matrices);
+            ParallelScan.inclusive(packed, 4, ParallelScan.MATRIX_MULTIPLY);
+            Arrays.parallelPrefix(matrices, Matrix::multiply);
+            assertThat(Arrays.equals(packed, ParallelScan.pack(matrices)), is(true));
+        }
+
+        @Test
+        public void longMatrices() {
+            long[] packed = new long[4 * 90];
+            for (int i = 0; i < 90; i++) {
+                packed[4 * i] = packed[4 * i + 1] = packed[4 * i + 2] = 1;
+            }
+            ParallelScan.inclusive(packed, 4, ParallelScan.LONG_MATRIX_MULTIPLY);
+            assertThat(packed[4 * 89 + 1], is(LinearRecurrence.fibonacci(90)));
+        }
+
+        @Test
+        public void empty() {
+            long[] values = {};
+            ParallelScan.exclusive(values, 0, Long::sum);
+            assertThat(values.length, is(0));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void lengthNotMultipleOfStride() {
+            ParallelScan.inclusive(new int[6], 4, ParallelScan.MATRIX_MULTIPLY);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void startsOfWrongLength() {
+            ParallelScan.segmented(new long[3], new boolean[2], Long::sum);
+        }
+    }
+
+    public static class BlellochTest {
+        private static final int SIZE = 20 * ParallelScan.LEAF + 17;
+
+        @Test
+        public void inclusiveIsOrdered() {
+            Matrix[] matrices = randomMatrices(SIZE, 2);
+            int[] packed = ParallelScan.pack(matrices);
+            inPool(() -> ParallelScan.inclusive(packed, 4, ParallelScan.MATRIX_MULTIPLY));
+            Arrays.parallelPrefix(matrices, Matrix::multiply);
+            assertThat(Arrays.equals(packed, ParallelScan.pack(matrices)), is(true));
+        }
+
+        @Test
+        public void exclusive() {
+            long[] values = randomLongs(SIZE, 3);
+            long[] expected = new long[SIZE];
+            for (int i = 1; i < SIZE; i++) {
+                expected[i] = expected[i - 1] + values[i - 1];
+            }
+            inPool(() -> ParallelScan.exclusive(values, 0, Long::sum));
+            assertThat(values, is(expected));
+        }
+
+        @Test
+        public void segmented() {
+            long[] values = randomLongs(SIZE, 4);
+            boolean[] starts = randomStarts(SIZE, 5);
+            long[] expected = sequentialSegmented(values, starts);
+            inPool(() -> ParallelScan.segmented(values, starts, Long::sum));
+            assertThat(values, is(expected));
+        }
+
+        @Test
+        public void segmentedMatrices() {
+            Matrix[] matrices = randomMatrices(SIZE, 6);
+            boolean[] starts = randomStarts(SIZE, 7);
+            int[] packed = ParallelScan.pack(matrices);
+            inPool(() -> ParallelScan.segmented(packed, 4, starts, ParallelScan.MATRIX_MULTIPLY));
+            for (int i = 1; i < SIZE; i++) {
+                if (!starts[i]) matrices[i] = matrices[i - 1].multiply(matrices[i]);
+            }
+            assertThat(Arrays.equals(packed, ParallelScan.pack(matrices)), is(true));
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        // -Dch6.ParallelScanTest.maxSize=100000000 runs the larger sizes, which need a heap of several gigabytes.
+        private static final int MAX_SIZE = Integer.getInteger("ch6.ParallelScanTest.maxSize", 1_000_000);
+
+        @Test
+        public void packedAgainstParallelPrefix() {
+            for (int size = 1_000_000; size <= MAX_SIZE; size *= 10) {
+                Matrix[] matrices = new Matrix[size];
+                Arrays.fill(matrices, FIBONACCI);
+                int[] packed = ParallelScan.pack(matrices);
+                int[] copy = packed.clone();
+                for (int warm = 0; warm < 3 && size <= 1_000_000; warm++) {
+                    Arrays.parallelPrefix(matrices.clone(), Matrix::multiply);
+                    ParallelScan.inclusive(copy.clone(), 4, ParallelScan.MATRIX_MULTIPLY);
+                }
+                long start = System.nanoTime();
+                Arrays.parallelPrefix(matrices, Matrix::multiply);
+                double boxed = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                ParallelScan.inclusive(packed, 4, ParallelScan.MATRIX_MULTIPLY);
+                double scan = (System.nanoTime() - start) / 1e6;
+                int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                start = System.nanoTime();
+                pool.submit(() -> ParallelScan.inclusive(copy, 4, ParallelScan.MATRIX_MULTIPLY)).join();
+                double blelloch = (System.nanoTime() - start) / 1e6;
+                pool.shutdown();
+                assertThat(ParallelScan.unpack(packed, size - 1).toString(), is(matrices[size - 1].toString()));
+                assertThat(Arrays.equals(packed, copy), is(true));
+                LOG.info(String.format("%,11d matrices: parallelPrefix(Matrix[]) %8.1f ms, packed scan %8.1f ms, " +
+                        "Blelloch on %d threads %8.1f ms", size, boxed, scan, parallelism, blelloch));
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014Shinya Mochida
+ * <p>
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch6;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Enclosed.class)
+public class SparseMatrixTest {
+
+    // small integer values keep every product exact, so sparse and dense results compare with equals.
+    static SparseMatrix.Entries random(int rows, int columns, int nonZeros, long seed) {
+        Random random = new Random(seed);
+        SparseMatrix.Entries entries = SparseMatrix.rows(rows).columns(columns);
+        for (int i = 0; i < nonZeros; i++) {
+            entries.add(random.nextInt(rows), random.nextInt(columns), random.nextInt(19) - 9);
+        }
+        return entries;
+    }
+
+    static double[] randomVector(int size, long seed) {
+        Random random = new Random(seed);
+        double[] vector = new double[size];
+        for (int i = 0; i < size; i++) {
+            vector[i] = random.nextInt(19) - 9;
+        }
+        return vector;
+    }
+
+    static double[] denseMultiply(DenseDoubleMatrix matrix, double[] vector) {
+        return matrix.multiply(DenseDoubleMatrix.of(vector.length, 1, vector)).toArray();
+    }
+
+    public static class BuilderTest {
+        @Test
+        public void duplicatesAreSummedAndZerosDropped() {
+            CsrMatrix matrix = SparseMatrix.rows(2).columns(3)
+                    .add(1, 2, 4).add(0, 1, 1).add(1, 2, 1).add(1, 0, 3).add(1, 0, -3).toCsr();
+            assertThat(matrix.nonZeros(), is(2));
+            assertThat(matrix.get(1, 2), is(5.0));
+            assertThat(matrix.get(1, 0), is(0.0));
+            assertThat(matrix.toDense(), is(DenseDoubleMatrix.rows(2).columns(3).row(0, 1, 0).row(0, 0, 5).make()));
+        }
+
+        @Test
+        public void csrAndCscAgree() {
+            SparseMatrix.Entries entries = random(40, 30, 200, 1);
+            CsrMatrix csr = entries.toCsr();
+            CscMatrix csc = entries.toCsc();
+            assertThat(csc.toDense(), is(csr.toDense()));
+            assertThat(csr.toCsc().toDense(), is(csr.toDense()));
+            assertThat(csc.get(7, 3), is(csr.get(7, 3)));
+        }
+
+        @Test(expected = IndexOutOfBoundsException.class)
+        public void outOfBounds() {
+            SparseMatrix.rows(2).columns(2).add(2, 0, 1);
+        }
+    }
+
+    public static class ProductTest {
+        @Test
+        public void multiplyMatchesDense() {
+            for (int nonZeros : new int[]{50, 100_000}) {
+                SparseMatrix.Entries entries = random(900, 700, nonZeros, nonZeros);
+                CsrMatrix csr = entries.toCsr();
+                CscMatrix csc = entries.toCsc();
+                double[] x = randomVector(700, 2);
+                double[] expected = denseMultiply(csr.toDense(), x);
+                assertThat(csr.multiply(x), is(expected));
+                assertThat(csc.multiply(x), is(expected));
+            }
+        }
+
+        @Test
+        public void transposeMultiplyMatchesDense() {
+            SparseMatrix.Entries entries = random(900, 700, 100_000, 3);
+            CsrMatrix csr = entries.toCsr();
+            double[] x = randomVector(900, 4);
+            double[] expected = denseMultiply(csr.toDense().transpose(), x);
+            assertThat(csr.transposeMultiply(x), is(expected));
+            assertThat(entries.toCsc().transposeMultiply(x), is(expected));
+        }
+
+        @Test
+        public void sparseDenseMatchesDense() {
+            SparseMatrix.Entries entries = random(300, 200, 5000, 5);
+            DenseDoubleMatrix dense = DenseMatrixTest.randomDouble(200, 40, 6);
+            DenseDoubleMatrix expected = entries.toCsr().toDense().multiply(dense);
+            assertThat(entries.toCsr().multiply(dense), is(expected));
+            assertThat(entries.toCsc().multiply(dense), is(expected));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void vectorOfWrongLength() {
+            random(3, 4, 5, 7).toCsr().multiply(new double[3]);
+        }
+    }
+
+    public static class PowerIterationTest {
+        @Test
+        public void dominantEigenvector() {
+            // eigenvalues 3 and 1, eigenvector of 3 is (1, 1) / sqrt 2.
+            CsrMatrix matrix = SparseMatrix.rows(2).columns(2).add(0, 0, 2).add(0, 1, 1).add(1, 0, 1).add(1, 1, 2).toCsr();
+            PowerIteration result = PowerIteration.dominant(matrix, 1e-12, 1000);
+            assertThat(result.converged(), is(true));
+            assertThat(Math.abs(result.eigenvalue() - 3) < 1e-9, is(true));
+            assertThat(Math.abs(result.vector()[0] - Math.sqrt(0.5)) < 1e-9, is(true));
+        }
+
+        @Test
+        public void negativeDominantEigenvalue() {
+            CsrMatrix matrix = SparseMatrix.rows(2).columns(2).add(0, 0, -4).add(1, 1, 1).toCsr();
+            PowerIteration result = PowerIteration.dominant(matrix, 1e-12, 1000);
+            assertThat(result.converged(), is(true));
+            assertThat(Math.abs(result.eigenvalue() + 4) < 1e-9, is(true));
+        }
+
+        @Test
+        public void pageRankOfCycleIsUniform() {
+            CsrMatrix cycle = SparseMatrix.rows(4).columns(4).add(0, 1, 1).add(1, 2, 1).add(2, 3, 1).add(3, 0, 1).toCsr();
+            PowerIteration result = PowerIteration.pageRank(cycle, 0.85, 1e-12, 100);
+            assertThat(result.converged(), is(true));
+            assertThat(result.vector(), is(new double[]{0.25, 0.25, 0.25, 0.25}));
+        }
+
+        @Test
+        public void pageRankWithDanglingNode() {
+            // 0 -> 1, 0 -> 2, 1 -> 2, and 2 links nowhere; ranks stay a distribution and 2 ranks first.
+            CsrMatrix links = SparseMatrix.rows(3).columns(3).add(0, 1, 1).add(0, 2, 1).add(1, 2, 1).toCsr();
+            double[] rank = PowerIteration.pageRank(links, 0.85, 1e-12, 1000).vector();
+            assertThat(Math.abs(rank[0] + rank[1] + rank[2] - 1) < 1e-9, is(true));
+            assertThat(rank[2] > rank[1] && rank[1] > rank[0], is(true));
+        }
+    }
+
+    public static class Benchmark {
+        private static final Logger LOG = Logger.getLogger(Benchmark.class.getName());
+
+        // -Dch6.SparseMatrixTest.nonZeros=10000000 runs the PageRank-sized graph.
+        private static final int NON_ZEROS = Integer.getInteger("ch6.SparseMatrixTest.nonZeros", 1_000_000);
+
+        @Test
+        public void pageRank() {
+            int nodes = NON_ZEROS / 10;
+            Random random = new Random(8);
+            long start = System.nanoTime();
+            SparseMatrix.Entries entries = SparseMatrix.rows(nodes).columns(nodes);
+            for (int i = 0; i < NON_ZEROS; i++) {
+                // links favour low numbered nodes, like the skewed in-degrees of a web graph.
+                int target = (int) (nodes * Math.pow(random.nextDouble(), 3));
+                entries.add(random.nextInt(nodes), target, 1);
+            }
+            CsrMatrix links = entries.toCsr();
+            double build = (System.nanoTime() - start) / 1e6;
+
+            double[] x = new double[nodes];
+            double[] y = new double[nodes];
+            Arrays.fill(x, 1);
+            for (int warm = 0; warm < 5; warm++) {
+                links.multiply(x, y);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                links.multiply(x, y);
+            }
+            double spmv = (System.nanoTime() - start) / 1e6 / 10;
+
+            start = System.nanoTime();
+            PowerIteration result = PowerIteration.pageRank(links, 0.85, 1e-9, 200);
+            double rank = (System.nanoTime() - start) / 1e6;
+            assertThat(result.converged(), is(true));
+            LOG.info(String.format("%,d non-zeros: build %.0f ms, SpMV %.2f ms (%.0f MFLOPS), PageRank %d iterations %.0f ms",
+                    links.nonZeros(), build, spmv, 2.0 * links.nonZeros() / spmv / 1e3, result.iterations(), rank));
+        }
+    }
+}